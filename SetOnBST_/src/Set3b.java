@@ -0,0 +1,356 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a binary search tree of linked nodes with
+ * implementations of primary methods.
+ *
+ * <p>
+ * Unlike {@code Set3a}, which takes its {@code BinaryTree} apart and puts it
+ * back together at every level, the kernel methods here walk down the nodes
+ * with a loop: {@code contains} allocates nothing, {@code add} allocates the
+ * one new node, and {@code remove} and {@code removeAny} allocate nothing.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]
+ * </pre>
+ * @convention <pre>
+ * [the nodes reachable from $this.root by left and right form a binary tree
+ *  of exactly $this.size nodes, whose labels are not null]  and
+ * IS_BST([the binary tree of the labels of those nodes])
+ * </pre>
+ * @correspondence this = [labels of the nodes reachable from $this.root]
+ *
+ * @author Yoora Choi
+ *
+ */
+public class Set3b<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the binary search tree.
+     *
+     * @param <T>
+     *            type of the label
+     */
+    private static final class Node<T> {
+
+        /**
+         * Label of this node.
+         */
+        private T label;
+
+        /**
+         * Root of the left subtree, or null if it is empty.
+         */
+        private Node<T> left;
+
+        /**
+         * Root of the right subtree, or null if it is empty.
+         */
+        private Node<T> right;
+
+    }
+
+    /**
+     * Root of the tree, or null if {@code this} is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Number of nodes in the tree.
+     */
+    private int size;
+
+    /**
+     * Removes {@code node} from the tree, keeping the rest a binary search
+     * tree.
+     *
+     * @param parent
+     *            the parent of {@code node}, or null if {@code node} is the
+     *            root
+     * @param node
+     *            the node to remove
+     * @return the label of {@code node}
+     * @updates this
+     * @requires <pre>
+     * node is in the tree  and
+     * (if parent = null then node = $this.root
+     *  else node = parent.left or node = parent.right)
+     * </pre>
+     * @ensures <pre>
+     * removeNode = [label of node]  and
+     * this = #this \ {removeNode}
+     * </pre>
+     */
+    private T removeNode(Node<T> parent, Node<T> node) {
+        T label = node.label;
+        Node<T> top = node;
+        Node<T> topParent = parent;
+
+        /*
+         * A node with two children keeps its place and takes the label of its
+         * successor, which has no left child and is spliced out instead
+         */
+        if (node.left != null && node.right != null) {
+            topParent = node;
+            top = node.right;
+            while (top.left != null) {
+                topParent = top;
+                top = top.left;
+            }
+            node.label = top.label;
+        }
+
+        // Now top has at most one child, which takes its place
+        Node<T> child = top.left;
+        if (child == null) {
+            child = top.right;
+        }
+        if (topParent == null) {
+            this.root = child;
+        } else if (topParent.left == top) {
+            topParent.left = child;
+        } else {
+            topParent.right = child;
+        }
+        this.size--;
+
+        return label;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+        this.size = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set3b() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set3b<?>
+                : "" + "Violation of: source is of dynamic type Set3b<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set3b<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set3b<T> localSource = (Set3b<T>) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        Node<T> node = new Node<>();
+        node.label = x;
+
+        if (this.root == null) {
+            this.root = node;
+        } else {
+            // Walk down to the empty subtree where x belongs and hang it there
+            Node<T> parent = this.root;
+            boolean placed = false;
+            while (!placed) {
+                if (x.compareTo(parent.label) < 0) {
+                    if (parent.left == null) {
+                        parent.left = node;
+                        placed = true;
+                    } else {
+                        parent = parent.left;
+                    }
+                } else {
+                    if (parent.right == null) {
+                        parent.right = node;
+                        placed = true;
+                    } else {
+                        parent = parent.right;
+                    }
+                }
+            }
+        }
+        this.size++;
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        Node<T> parent = null;
+        Node<T> node = this.root;
+        int comp = x.compareTo(node.label);
+        while (comp != 0) {
+            parent = node;
+            if (comp < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+            comp = x.compareTo(node.label);
+        }
+
+        return this.removeNode(parent, node);
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        return this.removeNode(null, this.root);
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        boolean found = false;
+        Node<T> node = this.root;
+        while (node != null && !found) {
+            int comp = x.compareTo(node.label);
+            if (comp == 0) {
+                found = true;
+            } else if (comp < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set3bIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set3b}, visiting
+     * the labels in increasing order.
+     */
+    private final class Set3bIterator implements Iterator<T> {
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited, the
+         * next one on top.
+         */
+        private final Deque<Node<T>> pending;
+
+        /**
+         * No-argument constructor.
+         */
+        private Set3bIterator() {
+            this.pending = new ArrayDeque<>();
+            this.pushLeftSpine(Set3b.this.root);
+        }
+
+        /**
+         * Pushes {@code node} and its chain of left descendants.
+         *
+         * @param node
+         *            the root of the subtree to start, or null
+         */
+        private void pushLeftSpine(Node<T> node) {
+            Node<T> n = node;
+            while (n != null) {
+                this.pending.push(n);
+                n = n.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.pending.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node<T> node = this.pending.pop();
+            this.pushLeftSpine(node.right);
+            return node.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
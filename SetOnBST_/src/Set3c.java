@@ -0,0 +1,495 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as an AVL tree (a binary search tree kept height
+ * balanced) of linked nodes with implementations of primary methods.
+ *
+ * <p>
+ * {@code Set3a} and {@code Set3b} take the shape their insertion order gives
+ * them, so keys added in sorted order make a tree that is one long path. Here
+ * {@code add}, {@code remove}, and {@code removeAny} restore the balance with
+ * rotations on the way back up, so the height stays below 1.45 log(n+2) and
+ * every kernel method takes O(log n) time whatever the order of the keys.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]
+ *
+ * IS_AVL(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [for every subtree of tree, the heights of its left and right subtrees
+ *   differ by at most 1]
+ * </pre>
+ * @convention <pre>
+ * [the nodes reachable from $this.root by left and right form a binary tree
+ *  of exactly $this.size nodes, whose labels are not null]  and
+ * IS_BST([the binary tree of the labels of those nodes])  and
+ * IS_AVL([the binary tree of the labels of those nodes])  and
+ * [the height of each of those nodes is the height of the subtree rooted
+ *  at it]
+ * </pre>
+ * @correspondence this = [labels of the nodes reachable from $this.root]
+ *
+ * @author Yoora Choi
+ *
+ */
+public class Set3c<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the AVL tree.
+     *
+     * @param <T>
+     *            type of the label
+     */
+    private static final class Node<T> {
+
+        /**
+         * Label of this node.
+         */
+        private T label;
+
+        /**
+         * Root of the left subtree, or null if it is empty.
+         */
+        private Node<T> left;
+
+        /**
+         * Root of the right subtree, or null if it is empty.
+         */
+        private Node<T> right;
+
+        /**
+         * Height of the subtree rooted at this node: 1 for a leaf.
+         */
+        private int height;
+
+    }
+
+    /**
+     * Root of the tree, or null if {@code this} is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Number of nodes in the tree.
+     */
+    private int size;
+
+    /**
+     * Label removed by the last call to {@link #removeFromTree}.
+     */
+    private T removed;
+
+    /**
+     * Returns the height of the subtree rooted at {@code node}.
+     *
+     * @param node
+     *            the root of the subtree, or null
+     * @return the height, 0 for an empty subtree
+     */
+    private int height(Node<T> node) {
+        int height = 0;
+        if (node != null) {
+            height = node.height;
+        }
+        return height;
+    }
+
+    /**
+     * Recomputes the height of {@code node} from those of its children.
+     *
+     * @param node
+     *            the node to update
+     * @updates node.height
+     * @requires [the heights of the children of node are correct]
+     * @ensures [node.height is correct]
+     */
+    private void updateHeight(Node<T> node) {
+        node.height = 1 + Math.max(this.height(node.left), this.height(node.right));
+    }
+
+    /**
+     * Rotates the subtree rooted at {@code node} to the right, so its left
+     * child becomes its root.
+     *
+     * @param node
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @requires node.left /= null
+     * @ensures [rotateRight is the root of a BST with the labels of the subtree
+     *          rooted at node, whose heights are correct]
+     */
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> top = node.left;
+        node.left = top.right;
+        top.right = node;
+        this.updateHeight(node);
+        this.updateHeight(top);
+        return top;
+    }
+
+    /**
+     * Rotates the subtree rooted at {@code node} to the left, so its right
+     * child becomes its root.
+     *
+     * @param node
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @requires node.right /= null
+     * @ensures [rotateLeft is the root of a BST with the labels of the subtree
+     *          rooted at node, whose heights are correct]
+     */
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> top = node.right;
+        node.right = top.left;
+        top.left = node;
+        this.updateHeight(node);
+        this.updateHeight(top);
+        return top;
+    }
+
+    /**
+     * Restores the balance at {@code node} after one of its subtrees changed
+     * height by one.
+     *
+     * @param node
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @requires <pre>
+     * [both subtrees of node satisfy IS_AVL, with correct heights, and their
+     *  heights differ by at most 2]
+     * </pre>
+     * @ensures <pre>
+     * [balance is the root of a BST with the labels of the subtree rooted at
+     *  node that satisfies IS_AVL, with correct heights]
+     * </pre>
+     */
+    private Node<T> balance(Node<T> node) {
+        Node<T> top = node;
+        int skew = this.height(node.left) - this.height(node.right);
+        if (skew > 1) {
+            if (this.height(node.left.left) < this.height(node.left.right)) {
+                node.left = this.rotateLeft(node.left);
+            }
+            top = this.rotateRight(node);
+        } else if (skew < -1) {
+            if (this.height(node.right.right) < this.height(node.right.left)) {
+                node.right = this.rotateRight(node.right);
+            }
+            top = this.rotateLeft(node);
+        } else {
+            this.updateHeight(node);
+        }
+        return top;
+    }
+
+    /**
+     * Inserts {@code x} in the subtree rooted at {@code node}.
+     *
+     * @param node
+     *            the root of the subtree, or null
+     * @param x
+     *            the label to be inserted
+     * @return the new root of the subtree
+     * @aliases reference {@code x}
+     * @requires [subtree rooted at node satisfies IS_BST and IS_AVL] and x is
+     *           not in [its labels]
+     * @ensures <pre>
+     * [insertInTree is the root of a subtree that satisfies IS_BST and IS_AVL,
+     *  with the labels of #node's subtree union {x}]
+     * </pre>
+     */
+    private Node<T> insertInTree(Node<T> node, T x) {
+        Node<T> top;
+        if (node == null) {
+            top = new Node<>();
+            top.label = x;
+            top.height = 1;
+        } else {
+            if (x.compareTo(node.label) < 0) {
+                node.left = this.insertInTree(node.left, x);
+            } else {
+                node.right = this.insertInTree(node.right, x);
+            }
+            top = this.balance(node);
+        }
+        return top;
+    }
+
+    /**
+     * Removes the smallest (left-most) node of the subtree rooted at
+     * {@code node}, and stores its label in {@code this.removed}.
+     *
+     * @param node
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @requires node /= null and [subtree rooted at node satisfies IS_BST and
+     *           IS_AVL]
+     * @ensures <pre>
+     * this.removed = [the smallest label in #node's subtree]  and
+     * [removeSmallest is the root of a subtree that satisfies IS_BST and
+     *  IS_AVL, with the labels of #node's subtree \ {this.removed}]
+     * </pre>
+     */
+    private Node<T> removeSmallest(Node<T> node) {
+        Node<T> top;
+        if (node.left == null) {
+            this.removed = node.label;
+            top = node.right;
+        } else {
+            node.left = this.removeSmallest(node.left);
+            top = this.balance(node);
+        }
+        return top;
+    }
+
+    /**
+     * Removes {@code x} from the subtree rooted at {@code node}, and stores the
+     * removed label in {@code this.removed}.
+     *
+     * @param node
+     *            the root of the subtree
+     * @param x
+     *            the label to be removed
+     * @return the new root of the subtree
+     * @requires [subtree rooted at node satisfies IS_BST and IS_AVL] and x is
+     *           in [its labels]
+     * @ensures <pre>
+     * this.removed = x  and
+     * [removeFromTree is the root of a subtree that satisfies IS_BST and
+     *  IS_AVL, with the labels of #node's subtree \ {x}]
+     * </pre>
+     */
+    private Node<T> removeFromTree(Node<T> node, T x) {
+        Node<T> top;
+        int comp = x.compareTo(node.label);
+        if (comp < 0) {
+            node.left = this.removeFromTree(node.left, x);
+            top = this.balance(node);
+        } else if (comp > 0) {
+            node.right = this.removeFromTree(node.right, x);
+            top = this.balance(node);
+        } else {
+            T label = node.label;
+            if (node.left == null) {
+                top = node.right;
+            } else if (node.right == null) {
+                top = node.left;
+            } else {
+                // The smallest label on the right takes the place of x
+                node.right = this.removeSmallest(node.right);
+                node.label = this.removed;
+                top = this.balance(node);
+            }
+            this.removed = label;
+        }
+        return top;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+        this.size = 0;
+        this.removed = null;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set3c() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set3c<?>
+                : "" + "Violation of: source is of dynamic type Set3c<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set3c<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set3c<T> localSource = (Set3c<T>) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        this.root = this.insertInTree(this.root, x);
+        this.size++;
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        this.root = this.removeFromTree(this.root, x);
+        this.size--;
+        T result = this.removed;
+        this.removed = null;
+        return result;
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        this.root = this.removeSmallest(this.root);
+        this.size--;
+        T result = this.removed;
+        this.removed = null;
+        return result;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        boolean found = false;
+        Node<T> node = this.root;
+        while (node != null && !found) {
+            int comp = x.compareTo(node.label);
+            if (comp == 0) {
+                found = true;
+            } else if (comp < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set3cIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set3c}, visiting
+     * the labels in increasing order.
+     */
+    private final class Set3cIterator implements Iterator<T> {
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited, the
+         * next one on top.
+         */
+        private final Deque<Node<T>> pending;
+
+        /**
+         * No-argument constructor.
+         */
+        private Set3cIterator() {
+            this.pending = new ArrayDeque<>();
+            this.pushLeftSpine(Set3c.this.root);
+        }
+
+        /**
+         * Pushes {@code node} and its chain of left descendants.
+         *
+         * @param node
+         *            the root of the subtree to start, or null
+         */
+        private void pushLeftSpine(Node<T> node) {
+            Node<T> n = node;
+            while (n != null) {
+                this.pending.push(n);
+                n = n.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.pending.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node<T> node = this.pending.pop();
+            this.pushLeftSpine(node.right);
+            return node.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
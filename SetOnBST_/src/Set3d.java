@@ -0,0 +1,659 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a left-leaning red-black tree (a binary search
+ * tree kept balanced as the image of a 2-3 tree) of linked nodes with
+ * implementations of primary methods, and of {@code fromSorted}, which builds
+ * a set from labels that are already in increasing order in linear time.
+ *
+ * <p>
+ * Each node is red or black; a red node is glued to its parent, which is
+ * black, to make one 3-node of the 2-3 tree. {@code add}, {@code remove}, and
+ * {@code removeAny} keep every path from the root to an empty subtree through
+ * the same number of black nodes with rotations and color flips, so the height
+ * stays below 2 log(n+1) and every kernel method takes O(log n) time.
+ * {@code fromSorted} lays the labels out directly in a tree of the least
+ * possible height, with every path through at most one red node.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]
+ *
+ * IS_LLRB(
+ *   tree: binary tree of (T, boolean)
+ *  ): boolean satisfies
+ *  [the root of tree is black (its boolean is false), no red node is a right
+ *   child, no red node has a red child, and every path from the root to an
+ *   empty subtree passes through the same number of black nodes]
+ * </pre>
+ * @convention <pre>
+ * [the nodes reachable from $this.root by left and right form a binary tree
+ *  of exactly $this.size nodes, whose labels are not null]  and
+ * IS_BST([the binary tree of the labels of those nodes])  and
+ * IS_LLRB([the binary tree of the labels and red flags of those nodes])
+ * </pre>
+ * @correspondence this = [labels of the nodes reachable from $this.root]
+ *
+ * @author Yoora Choi
+ *
+ */
+public class Set3d<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the red-black tree.
+     *
+     * @param <T>
+     *            type of the label
+     */
+    private static final class Node<T> {
+
+        /**
+         * Label of this node.
+         */
+        private T label;
+
+        /**
+         * Root of the left subtree, or null if it is empty.
+         */
+        private Node<T> left;
+
+        /**
+         * Root of the right subtree, or null if it is empty.
+         */
+        private Node<T> right;
+
+        /**
+         * Whether this node is red, i.e., part of a 3-node with its parent.
+         */
+        private boolean red;
+
+    }
+
+    /**
+     * Root of the tree, or null if {@code this} is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Number of nodes in the tree.
+     */
+    private int size;
+
+    /**
+     * Label removed by the last call to {@link #removeFromTree} or
+     * {@link #removeSmallest}.
+     */
+    private T removed;
+
+    /**
+     * Returns whether {@code node} is red.
+     *
+     * @param node
+     *            the node, or null
+     * @return true if node is not null and is red, false otherwise
+     */
+    private boolean isRed(Node<T> node) {
+        return node != null && node.red;
+    }
+
+    /**
+     * Rotates the subtree rooted at {@code node} to the left, so its (red)
+     * right child becomes its root with the color {@code node} had.
+     *
+     * @param node
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @requires node.right /= null
+     * @ensures [rotateLeft is the root of a BST with the labels of the subtree
+     *          rooted at node, and is colored as node was; node is red]
+     */
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> top = node.right;
+        node.right = top.left;
+        top.left = node;
+        top.red = node.red;
+        node.red = true;
+        return top;
+    }
+
+    /**
+     * Rotates the subtree rooted at {@code node} to the right, so its (red)
+     * left child becomes its root with the color {@code node} had.
+     *
+     * @param node
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @requires node.left /= null
+     * @ensures [rotateRight is the root of a BST with the labels of the subtree
+     *          rooted at node, and is colored as node was; node is red]
+     */
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> top = node.left;
+        node.left = top.right;
+        top.right = node;
+        top.red = node.red;
+        node.red = true;
+        return top;
+    }
+
+    /**
+     * Flips the colors of {@code node} and of both its children, splitting a
+     * temporary 4-node or, on the way down in a removal, forming one.
+     *
+     * @param node
+     *            the node
+     * @updates node.red, node.left.red, node.right.red
+     * @requires node.left /= null and node.right /= null
+     * @ensures [node and both its children have the opposite colors]
+     */
+    private void flipColors(Node<T> node) {
+        node.red = !node.red;
+        node.left.red = !node.left.red;
+        node.right.red = !node.right.red;
+    }
+
+    /**
+     * Restores the left-leaning shape on the way back up from an insertion or
+     * removal: leans a red right link to the left, then splits a 4-node.
+     *
+     * @param node
+     *            the root of the subtree
+     * @return the new root of the subtree
+     */
+    private Node<T> fixUp(Node<T> node) {
+        Node<T> top = node;
+        if (this.isRed(top.right) && !this.isRed(top.left)) {
+            top = this.rotateLeft(top);
+        }
+        if (this.isRed(top.left) && this.isRed(top.left.left)) {
+            top = this.rotateRight(top);
+        }
+        if (this.isRed(top.left) && this.isRed(top.right)) {
+            this.flipColors(top);
+        }
+        return top;
+    }
+
+    /**
+     * Makes {@code node.left} or one of its children red, borrowing from the
+     * right sibling if it can, so a removal can go down to the left.
+     *
+     * @param node
+     *            the red root of the subtree
+     * @return the new root of the subtree
+     * @requires node is red and node.left and node.left.left are black
+     * @ensures [node.left or one of its children is red]
+     */
+    private Node<T> moveRedLeft(Node<T> node) {
+        Node<T> top = node;
+        this.flipColors(top);
+        if (this.isRed(top.right.left)) {
+            top.right = this.rotateRight(top.right);
+            top = this.rotateLeft(top);
+            this.flipColors(top);
+        }
+        return top;
+    }
+
+    /**
+     * Makes {@code node.right} or one of its children red, borrowing from the
+     * left sibling if it can, so a removal can go down to the right.
+     *
+     * @param node
+     *            the red root of the subtree
+     * @return the new root of the subtree
+     * @requires node is red and node.right and node.right.left are black
+     * @ensures [node.right or one of its children is red]
+     */
+    private Node<T> moveRedRight(Node<T> node) {
+        Node<T> top = node;
+        this.flipColors(top);
+        if (this.isRed(top.left.left)) {
+            top = this.rotateRight(top);
+            this.flipColors(top);
+        }
+        return top;
+    }
+
+    /**
+     * Inserts {@code x} in the subtree rooted at {@code node}.
+     *
+     * @param node
+     *            the root of the subtree, or null
+     * @param x
+     *            the label to be inserted
+     * @return the new root of the subtree
+     * @aliases reference {@code x}
+     * @requires [subtree rooted at node satisfies IS_BST] and x is not in [its
+     *           labels]
+     * @ensures <pre>
+     * [insertInTree is the root of a subtree that satisfies IS_BST, with the
+     *  labels of #node's subtree union {x}, and that satisfies IS_LLRB but for
+     *  the color of its root]
+     * </pre>
+     */
+    private Node<T> insertInTree(Node<T> node, T x) {
+        Node<T> top;
+        if (node == null) {
+            top = new Node<>();
+            top.label = x;
+            top.red = true;
+        } else {
+            if (x.compareTo(node.label) < 0) {
+                node.left = this.insertInTree(node.left, x);
+            } else {
+                node.right = this.insertInTree(node.right, x);
+            }
+            top = this.fixUp(node);
+        }
+        return top;
+    }
+
+    /**
+     * Removes the smallest (left-most) node of the subtree rooted at
+     * {@code node}, and stores its label in {@code this.removed}.
+     *
+     * @param node
+     *            the root of the subtree
+     * @return the new root of the subtree
+     * @requires node /= null and (node is red or node.left is red)
+     * @ensures <pre>
+     * this.removed = [the smallest label in #node's subtree]  and
+     * [removeSmallest is the root of a subtree that satisfies IS_BST, with the
+     *  labels of #node's subtree \ {this.removed}, and that satisfies IS_LLRB
+     *  but for the color of its root]
+     * </pre>
+     */
+    private Node<T> removeSmallest(Node<T> node) {
+        Node<T> top = node;
+        if (top.left == null) {
+            this.removed = top.label;
+            top = null;
+        } else {
+            if (!this.isRed(top.left) && !this.isRed(top.left.left)) {
+                top = this.moveRedLeft(top);
+            }
+            top.left = this.removeSmallest(top.left);
+            top = this.fixUp(top);
+        }
+        return top;
+    }
+
+    /**
+     * Removes {@code x} from the subtree rooted at {@code node}, and stores the
+     * removed label in {@code this.removed}.
+     *
+     * @param node
+     *            the root of the subtree
+     * @param x
+     *            the label to be removed
+     * @return the new root of the subtree
+     * @requires <pre>
+     * [subtree rooted at node satisfies IS_BST] and x is in [its labels]  and
+     * (node is red or node.left is red)
+     * </pre>
+     * @ensures <pre>
+     * this.removed = x  and
+     * [removeFromTree is the root of a subtree that satisfies IS_BST, with the
+     *  labels of #node's subtree \ {x}, and that satisfies IS_LLRB but for the
+     *  color of its root]
+     * </pre>
+     */
+    private Node<T> removeFromTree(Node<T> node, T x) {
+        Node<T> top = node;
+        if (x.compareTo(top.label) < 0) {
+            if (!this.isRed(top.left) && !this.isRed(top.left.left)) {
+                top = this.moveRedLeft(top);
+            }
+            top.left = this.removeFromTree(top.left, x);
+            top = this.fixUp(top);
+        } else {
+            if (this.isRed(top.left)) {
+                top = this.rotateRight(top);
+            }
+            if (top.right == null) {
+                // Now x is the label of top, which is a leaf
+                this.removed = top.label;
+                top = null;
+            } else {
+                if (!this.isRed(top.right) && !this.isRed(top.right.left)) {
+                    top = this.moveRedRight(top);
+                }
+                if (x.compareTo(top.label) == 0) {
+                    // The smallest label on the right takes the place of x
+                    T label = top.label;
+                    top.right = this.removeSmallest(top.right);
+                    top.label = this.removed;
+                    this.removed = label;
+                } else {
+                    top.right = this.removeFromTree(top.right, x);
+                }
+                top = this.fixUp(top);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Builds a tree of black height {@code blackHeight} from the next
+     * {@code n} labels of {@code labels}, in which every path from the root to
+     * an empty subtree passes through at most one red node.
+     *
+     * @param labels
+     *            the labels, in increasing order
+     * @param n
+     *            the number of labels to take
+     * @param blackHeight
+     *            the number of black nodes on every path
+     * @return the root of the tree, which is black, or null if n = 0
+     * @updates labels
+     * @requires <pre>
+     * 2^blackHeight - 1 <= n <= 2^(blackHeight+1) - 2  and
+     * |labels.unseen| >= n
+     * </pre>
+     * @ensures <pre>
+     * [buildTree is the root of a tree that satisfies IS_BST and IS_LLRB, whose
+     *  labels are the first n entries of #labels.unseen, and whose height is at
+     *  most blackHeight + 1]  and
+     * labels.unseen = [#labels.unseen without its first n entries]
+     * </pre>
+     */
+    private Node<T> buildTree(Iterator<T> labels, int n, int blackHeight) {
+        Node<T> top = null;
+        if (n > 0) {
+            int childMax = (1 << blackHeight) - 2;
+            top = new Node<>();
+            if (n - 1 <= 2 * childMax) {
+                /*
+                 * A 2-node: the labels left over split between two subtrees
+                 * one black node shorter, the larger half on the left
+                 */
+                int rightSize = (n - 1) / 2;
+                top.left = this.buildTree(labels, n - 1 - rightSize, blackHeight - 1);
+                top.label = labels.next();
+                top.right = this.buildTree(labels, rightSize, blackHeight - 1);
+            } else {
+                /*
+                 * A 3-node, only when n is as large as it can be: a red left
+                 * child with two perfect subtrees below it, and a right subtree
+                 * as large as it can be
+                 */
+                int perfectSize = (1 << (blackHeight - 1)) - 1;
+                Node<T> redChild = new Node<>();
+                redChild.red = true;
+                redChild.left = this.buildTree(labels, perfectSize, blackHeight - 1);
+                redChild.label = labels.next();
+                redChild.right = this.buildTree(labels, perfectSize, blackHeight - 1);
+                top.left = redChild;
+                top.label = labels.next();
+                top.right = this.buildTree(labels, childMax, blackHeight - 1);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+        this.size = 0;
+        this.removed = null;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set3d() {
+
+        this.createNewRep();
+
+    }
+
+    /**
+     * Returns a new {@code Set3d} of the labels of {@code items}, which are
+     * already in increasing order, built in linear time as a tree of the least
+     * possible height. The result is indistinguishable from a set to which the
+     * same labels were added one at a time.
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param items
+     *            the labels, in increasing order
+     * @return the set of the labels
+     * @updates items
+     * @requires <pre>
+     * [the entries of items.unseen are not null and are in strictly increasing
+     *  order, as reported by compareTo for T]
+     * </pre>
+     * @ensures <pre>
+     * fromSorted = [entries of #items.unseen]  and
+     * items.unseen = <>
+     * </pre>
+     */
+    public static <T extends Comparable<T>> Set3d<T> fromSorted(Iterator<T> items) {
+        assert items != null : "Violation of: items is not null";
+
+        // The shape of the tree depends on its size, so count the labels first
+        List<T> labels = new ArrayList<>();
+        while (items.hasNext()) {
+            T x = items.next();
+            assert x != null : "Violation of: entries of items are not null";
+            assert labels.isEmpty() || labels.get(labels.size() - 1).compareTo(x) < 0
+                    : "Violation of: entries of items are in strictly increasing order";
+            labels.add(x);
+        }
+
+        Set3d<T> s = new Set3d<T>();
+        int n = labels.size();
+        int blackHeight = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(n + 1);
+        s.root = s.buildTree(labels.iterator(), n, blackHeight);
+        s.size = n;
+        return s;
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set3d<?>
+                : "" + "Violation of: source is of dynamic type Set3d<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set3d<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set3d<T> localSource = (Set3d<T>) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        this.root = this.insertInTree(this.root, x);
+        this.root.red = false;
+        this.size++;
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        // A red root lets the removal borrow on its way down
+        if (!this.isRed(this.root.left) && !this.isRed(this.root.right)) {
+            this.root.red = true;
+        }
+        this.root = this.removeFromTree(this.root, x);
+        if (this.root != null) {
+            this.root.red = false;
+        }
+        this.size--;
+        T result = this.removed;
+        this.removed = null;
+        return result;
+    }
+
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        // A red root lets the removal borrow on its way down
+        if (!this.isRed(this.root.left) && !this.isRed(this.root.right)) {
+            this.root.red = true;
+        }
+        this.root = this.removeSmallest(this.root);
+        if (this.root != null) {
+            this.root.red = false;
+        }
+        this.size--;
+        T result = this.removed;
+        this.removed = null;
+        return result;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        boolean found = false;
+        Node<T> node = this.root;
+        while (node != null && !found) {
+            int comp = x.compareTo(node.label);
+            if (comp == 0) {
+                found = true;
+            } else if (comp < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set3dIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set3d}, visiting
+     * the labels in increasing order.
+     */
+    private final class Set3dIterator implements Iterator<T> {
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited, the
+         * next one on top.
+         */
+        private final Deque<Node<T>> pending;
+
+        /**
+         * No-argument constructor.
+         */
+        private Set3dIterator() {
+            this.pending = new ArrayDeque<>();
+            this.pushLeftSpine(Set3d.this.root);
+        }
+
+        /**
+         * Pushes {@code node} and its chain of left descendants.
+         *
+         * @param node
+         *            the root of the subtree to start, or null
+         */
+        private void pushLeftSpine(Node<T> node) {
+            Node<T> n = node;
+            while (n != null) {
+                this.pending.push(n);
+                n = n.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.pending.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node<T> node = this.pending.pop();
+            this.pushLeftSpine(node.right);
+            return node.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,292 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+import components.set.Set;
+import components.set.Set1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Micro-benchmarks for the {@code Set} implementations: {@code add},
+ * {@code contains}, and {@code remove} of pseudo-random keys, reporting the
+ * mean time and the bytes allocated per call. Each benchmark is run a few
+ * times to warm up the JIT and then measured. Run with assertion checking off
+ * (no {@code -ea}), since the kernel's precondition checks call
+ * {@code contains} again and would double what is measured.
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class SetBenchmark {
+
+    /**
+     * Number of unmeasured runs before each benchmark.
+     */
+    private static final int WARMUP_RUNS = 3;
+
+    /**
+     * Number of measured runs for each benchmark.
+     */
+    private static final int MEASURED_RUNS = 5;
+
+    /**
+     * Default input sizes.
+     */
+    private static final int[] SIZES = { 1_000, 10_000, 100_000 };
+
+    /**
+     * Largest input size for {@code Set1L}, whose kernel methods take linear
+     * time.
+     */
+    private static final int SET1L_MAX_SIZE = 10_000;
+
+    /**
+     * Seed for the pseudo-random inputs, so runs are reproducible.
+     */
+    private static final long SEED = 42L;
+
+    /**
+     * Nanoseconds per microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SetBenchmark() {
+    }
+
+    /**
+     * Returns the even numbers 0, 2, ..., 2(n-1) in pseudo-random order; the
+     * odd numbers between them are then keys that are not in the set.
+     *
+     * @param n
+     *            number of keys
+     * @return the keys
+     */
+    private static Integer[] randomKeys(int n) {
+        Random rnd = new Random(SEED);
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            int j = rnd.nextInt(i + 1);
+            keys[i] = keys[j];
+            keys[j] = 2 * i;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or
+     * -1 if the JVM cannot tell.
+     *
+     * @return bytes allocated by the current thread
+     */
+    private static long allocatedBytes() {
+        long bytes = -1;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotSpotBean =
+                    (com.sun.management.ThreadMXBean) bean;
+            if (hotSpotBean.isThreadAllocatedMemorySupported()
+                    && hotSpotBean.isThreadAllocatedMemoryEnabled()) {
+                bytes = hotSpotBean.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Times {@code add} of all of {@code keys}, then {@code contains} of each
+     * key and of the odd number after it, then {@code remove} of all of
+     * {@code keys}, on new instances of the type of {@code prototype}.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            the implementation name
+     * @param prototype
+     *            a set of the implementation to benchmark
+     * @param keys
+     *            the keys, from {@link #randomKeys}
+     * @updates out.content
+     */
+    private static void benchmarkSet(SimpleWriter out, String name,
+            Set<Integer> prototype, Integer[] keys) {
+        int n = keys.length;
+        Integer[] misses = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            misses[i] = keys[i] + 1;
+        }
+
+        long addNanos = 0;
+        long addBytes = 0;
+        long containsNanos = 0;
+        long containsBytes = 0;
+        long removeNanos = 0;
+        long removeBytes = 0;
+        int found = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            boolean measured = run >= WARMUP_RUNS;
+            Set<Integer> s = prototype.newInstance();
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (Integer x : keys) {
+                s.add(x);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (measured) {
+                addNanos += elapsed;
+                addBytes += allocatedBytes() - bytes;
+            }
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                if (s.contains(keys[i])) {
+                    found++;
+                }
+                if (s.contains(misses[i])) {
+                    found++;
+                }
+            }
+            elapsed = System.nanoTime() - start;
+            if (measured) {
+                containsNanos += elapsed;
+                containsBytes += allocatedBytes() - bytes;
+            }
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (Integer x : keys) {
+                s.remove(x);
+            }
+            elapsed = System.nanoTime() - start;
+            if (measured) {
+                removeNanos += elapsed;
+                removeBytes += allocatedBytes() - bytes;
+            }
+        }
+        // Uses the results, so the contains calls cannot be optimized away
+        if (found != (WARMUP_RUNS + MEASURED_RUNS) * n) {
+            out.println("contains/" + name + ": wrong results");
+        }
+
+        report(out, "add/" + name, n, addNanos, addBytes);
+        report(out, "contains/" + name, 2 * n, containsNanos, containsBytes);
+        report(out, "remove/" + name, n, removeNanos, removeBytes);
+    }
+
+    /**
+     * Times building a {@code Set3d} of the keys 0, 1, ..., n-1 with
+     * {@code add}, one key at a time in increasing order, and with
+     * {@code fromSorted}.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of keys
+     * @updates out.content
+     */
+    private static void benchmarkFromSorted(SimpleWriter out, int n) {
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+
+        long addNanos = 0;
+        long addBytes = 0;
+        long bulkNanos = 0;
+        long bulkBytes = 0;
+        int size = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            boolean measured = run >= WARMUP_RUNS;
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            Set<Integer> s = new Set3d<Integer>();
+            for (Integer x : keys) {
+                s.add(x);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (measured) {
+                addNanos += elapsed;
+                addBytes += allocatedBytes() - bytes;
+            }
+            size += s.size();
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            s = Set3d.fromSorted(Arrays.asList(keys).iterator());
+            elapsed = System.nanoTime() - start;
+            if (measured) {
+                bulkNanos += elapsed;
+                bulkBytes += allocatedBytes() - bytes;
+            }
+            size -= s.size();
+        }
+        // Uses the results, so the sets cannot be optimized away
+        if (size != 0) {
+            out.println("fromSorted/Set3d: wrong size");
+        }
+
+        report(out, "addSorted/Set3d", n, addNanos, addBytes);
+        report(out, "fromSorted/Set3d", n, bulkNanos, bulkBytes);
+    }
+
+    /**
+     * Prints one result line: mean time and bytes allocated per call.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            the benchmark name
+     * @param n
+     *            number of calls per run
+     * @param nanos
+     *            total nanoseconds over the measured runs
+     * @param bytes
+     *            total bytes allocated over the measured runs
+     * @updates out.content
+     */
+    private static void report(SimpleWriter out, String name, int n, long nanos,
+            long bytes) {
+        double micros = nanos / NANOS_PER_MICRO / MEASURED_RUNS / n;
+        double perCall = (double) bytes / MEASURED_RUNS / n;
+        out.println(String.format("%-20s n=%-9d %10.4f us/call  %8.1f bytes/call",
+                name, n, micros, perCall));
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments: optional input sizes
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int n : sizes) {
+            Integer[] keys = randomKeys(n);
+            benchmarkSet(out, "Set3b", new Set3b<Integer>(), keys);
+            benchmarkSet(out, "Set3c", new Set3c<Integer>(), keys);
+            benchmarkSet(out, "Set3d", new Set3d<Integer>(), keys);
+            benchmarkSet(out, "Set3a", new Set3a<Integer>(), keys);
+            if (n <= SET1L_MAX_SIZE) {
+                benchmarkSet(out, "Set1L", new Set1L<Integer>(), keys);
+            }
+            benchmarkFromSorted(out, n);
+        }
+        out.close();
+    }
+
+}
@@ -0,0 +1,83 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3c}.
+ */
+public class Set3cTest extends SetTest {
+
+    /**
+     * Number of keys in the stress test.
+     */
+    private static final int STRESS_SIZE = 10_000_000;
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3c<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /*
+     * Stress test: 10 million keys added in increasing order, which would
+     * make an unbalanced tree a single path, then all found, seen in order by
+     * the iterator, and removed in increasing order
+     */
+    @Test
+    public final void testAddSortedStress() {
+        Set<Integer> s = new Set3c<Integer>();
+        for (int i = 0; i < STRESS_SIZE; i++) {
+            s.add(i);
+        }
+        assertEquals(STRESS_SIZE, s.size());
+        for (int i = 0; i < STRESS_SIZE; i++) {
+            assertEquals(true, s.contains(i));
+        }
+        assertEquals(false, s.contains(-1));
+        assertEquals(false, s.contains(STRESS_SIZE));
+
+        Iterator<Integer> it = s.iterator();
+        for (int i = 0; i < STRESS_SIZE; i++) {
+            assertEquals(i, it.next().intValue());
+        }
+        assertEquals(false, it.hasNext());
+
+        for (int i = 0; i < STRESS_SIZE; i++) {
+            assertEquals(i, s.remove(i).intValue());
+        }
+        assertEquals(0, s.size());
+    }
+
+    /*
+     * Test cases for keys added in decreasing order, then removed by
+     * removeAny
+     */
+    @Test
+    public final void testAddReverseSortedRemoveAny() {
+        final int n = 1000;
+        Set<String> s = this.constructorTest();
+        Set<String> sExpected = this.constructorRef();
+        for (int i = n - 1; i >= 0; i--) {
+            String x = String.format("%04d", i);
+            s.add(x);
+            sExpected.add(x);
+        }
+        assertEquals(sExpected, s);
+        while (sExpected.size() > 0) {
+            String x = s.removeAny();
+            assertEquals(true, sExpected.contains(x));
+            sExpected.remove(x);
+            assertEquals(sExpected, s);
+        }
+    }
+
+}
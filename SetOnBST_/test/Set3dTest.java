@@ -0,0 +1,90 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3d}.
+ */
+public class Set3dTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3d<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /*
+     * Test cases for fromSorted on every size up to 100: the set equals one
+     * built with add, is iterated in the same order, and then behaves the
+     * same under add, remove, and removeAny
+     */
+    @Test
+    public final void testFromSortedAllSizes() {
+        for (int n = 0; n <= 100; n++) {
+            Set<String> labels = this.constructorRef();
+            Set<String> sAdded = this.constructorTest();
+            for (int i = 0; i < n; i++) {
+                String x = String.format("%03d", 2 * i);
+                labels.add(x);
+                sAdded.add(x);
+            }
+            Set<String> s = Set3d.fromSorted(sAdded.iterator());
+            assertEquals(sAdded, s);
+            assertEquals(labels, s);
+
+            Iterator<String> it = s.iterator();
+            for (String x : sAdded) {
+                assertEquals(x, it.next());
+            }
+            assertEquals(false, it.hasNext());
+
+            for (int i = 0; i < n; i += 2) {
+                String x = String.format("%03d", 2 * i + 1);
+                s.add(x);
+                sAdded.add(x);
+                assertEquals(sAdded, s);
+            }
+            for (int i = 0; i < n; i += 3) {
+                String x = String.format("%03d", 2 * i);
+                assertEquals(sAdded.remove(x), s.remove(x));
+                assertEquals(sAdded, s);
+            }
+            while (s.size() > 0) {
+                String x = s.removeAny();
+                assertEquals(true, sAdded.contains(x));
+                sAdded.remove(x);
+                assertEquals(sAdded, s);
+            }
+        }
+    }
+
+    /*
+     * Test case for fromSorted of a large sorted input
+     */
+    @Test
+    public final void testFromSortedLarge() {
+        final int n = 1_000_000;
+        Set<Integer> sAdded = new Set3d<Integer>();
+        for (int i = 0; i < n; i++) {
+            sAdded.add(i);
+        }
+        Set<Integer> s = Set3d.fromSorted(sAdded.iterator());
+        assertEquals(n, s.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(true, s.contains(i));
+        }
+        assertEquals(false, s.contains(-1));
+        assertEquals(false, s.contains(n));
+        assertEquals(sAdded, s);
+    }
+
+}
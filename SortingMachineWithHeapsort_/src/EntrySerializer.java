@@ -0,0 +1,51 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts {@code SortingMachine} entries to and from bytes, so that an
+ * external-memory machine ({@code SortingMachine5e}) can spill them to disk
+ * and read them back.
+ *
+ * @param <T>
+ *            type of the entries
+ *
+ * @author Yoora Choi
+ *
+ */
+public interface EntrySerializer<T> {
+
+    /**
+     * Writes {@code x} to {@code out}.
+     *
+     * @param x
+     *            the entry to write
+     * @param out
+     *            the output
+     * @throws IOException
+     *             if writing to {@code out} fails
+     * @updates out
+     * @requires x is not null
+     * @ensures out.content = #out.content * [the bytes encoding x]
+     */
+    void write(T x, DataOutput out) throws IOException;
+
+    /**
+     * Reads and returns an entry written by {@code write} from {@code in}.
+     *
+     * @param in
+     *            the input
+     * @return the entry read
+     * @throws IOException
+     *             if reading from {@code in} fails
+     * @updates in
+     * @requires [in starts with the bytes encoding an entry, as written by
+     *           write]
+     * @ensures <pre>
+     * #in.content = [the bytes encoding read] * in.content  and
+     * read is not null
+     * </pre>
+     */
+    T read(DataInput in) throws IOException;
+
+}
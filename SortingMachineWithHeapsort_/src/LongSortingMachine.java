@@ -0,0 +1,358 @@
+import java.util.Arrays;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Sorting machine for {@code long} entries, specialized from
+ * {@code SortingMachine5a} so that entries are stored unboxed in a
+ * {@code long[]} heap. It has the same insertion/extraction-mode life cycle as
+ * a {@code SortingMachine}, and {@code add} (except when the array has to
+ * grow), {@code changeToExtractionMode}, and {@code removeFirst} allocate
+ * nothing.
+ *
+ * <p>
+ * The order is a {@code LongBinaryOperator} used as a {@code long}
+ * comparator: {@code order.applyAsLong(x, y)} is negative, zero, or positive as
+ * {@code x} comes before, ties with, or comes after {@code y}.
+ * {@link #NATURAL_ORDER} and {@link #REVERSE_ORDER} are provided.
+ *
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on integer
+ *  ) : boolean is
+ *  for all x, y, z: integer
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_HEAP (
+ *   a: string of integer,
+ *   stop: integer,
+ *   r: binary relation on integer
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i <= stop)
+ *    (r(a[(i - 1) / 2], a[i]))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.applyAsLong
+ *   method]  and
+ * 0 <= $this.heapSize <= |$this.heap|  and
+ * if not $this.insertionMode then
+ *   IS_HEAP($this.heap, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.applyAsLong method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class LongSortingMachine {
+
+    /**
+     * {@code LongBinaryOperator} ordering {@code long}s in increasing order.
+     */
+    private static final class NaturalOrder implements LongBinaryOperator {
+
+        @Override
+        public long applyAsLong(long x, long y) {
+            return Long.compare(x, y);
+        }
+
+    }
+
+    /**
+     * {@code LongBinaryOperator} ordering {@code long}s in decreasing order.
+     */
+    private static final class ReverseOrder implements LongBinaryOperator {
+
+        @Override
+        public long applyAsLong(long x, long y) {
+            return Long.compare(y, x);
+        }
+
+    }
+
+    /**
+     * Increasing order.
+     */
+    public static final LongBinaryOperator NATURAL_ORDER = new NaturalOrder();
+
+    /**
+     * Decreasing order.
+     */
+    public static final LongBinaryOperator REVERSE_ORDER = new ReverseOrder();
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the array allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Order.
+     */
+    private LongBinaryOperator machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: an unordered buffer in insertion mode, a heap in extraction
+     * mode.
+     */
+    private long[] heap;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Sifts the entry at index {@code top} of {@code array} down until the
+     * subtree rooted at {@code top}, through index {@code last}, is a heap.
+     *
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 0 <= top  and  last < |array|  and
+     * [both subtrees of top are heaps through index last]  and
+     * IS_TOTAL_PREORDER([relation computed by order.applyAsLong method])
+     * </pre>
+     * @ensures <pre>
+     * [the subtree rooted at top is a heap through index last]  and
+     * perms(array, #array)
+     * </pre>
+     */
+    private static void siftDown(long[] array, int top, int last,
+            LongBinaryOperator order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+
+        long root = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last && order.applyAsLong(array[child + 1], array[child]) < 0) {
+                child++;
+            }
+            if (order.applyAsLong(array[child], root) >= 0) {
+                break;
+            }
+            array[hole] = array[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+    }
+
+    /**
+     * Checks if the entries of the given {@code array} at indices 0 through
+     * {@code last} form a heap.
+     *
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if {@code array[0, last]} is a heap; false otherwise
+     * @requires last < |array|
+     * @ensures isHeap = IS_HEAP(array, last, [relation computed by
+     *          order.applyAsLong method])
+     */
+    private static boolean isHeap(long[] array, int last, LongBinaryOperator order) {
+        assert array != null : "Violation of: array is not null";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        for (int i = 1; isHeap && i <= last; i++) {
+            isHeap = order.applyAsLong(array[(i - 1) / 2], array[i]) <= 0;
+        }
+        return isHeap;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.heapSize <= |$this.heap|  and
+     * if not $this.insertionMode then
+     *   IS_HEAP($this.heap, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.applyAsLong method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        if (!this.insertionMode) {
+            assert isHeap(this.heap, this.heapSize - 1, this.machineOrder) : ""
+                    + "Violation of: if not $this.insertionMode then"
+                    + " IS_HEAP($this.heap, $this.heapSize - 1,"
+                    + " [relation computed by $this.machineOrder.applyAsLong method])";
+        }
+        return true;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor, using {@link #NATURAL_ORDER}.
+     */
+    public LongSortingMachine() {
+        this(NATURAL_ORDER);
+    }
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires IS_TOTAL_PREORDER([relation computed by order.applyAsLong
+     *           method])
+     */
+    public LongSortingMachine(LongBinaryOperator order) {
+        assert order != null : "Violation of: order is not null";
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.heap = new long[INITIAL_CAPACITY];
+        this.heapSize = 0;
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Resets {@code this} to an empty machine in insertion mode with the same
+     * order, keeping the array already allocated.
+     *
+     * @clears this
+     */
+    public void clear() {
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Adds {@code x} to the contents of {@code this}.
+     *
+     * @param x
+     *            the entry to be added
+     * @updates this.contents
+     * @requires this.insertion_mode
+     * @ensures this.contents = #this.contents union {x}
+     */
+    public void add(long x) {
+        assert this.insertionMode : "Violation of: this.insertion_mode";
+
+        // double the array when it is full
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+        }
+        this.heap[this.heapSize] = x;
+        this.heapSize++;
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Changes the mode of {@code this} from insertion to extraction.
+     *
+     * @updates this.insertion_mode
+     * @requires this.insertion_mode
+     * @ensures not this.insertion_mode
+     */
+    public void changeToExtractionMode() {
+        assert this.insertionMode : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        for (int top = (this.heapSize - 2) / 2; top >= 0; top--) {
+            siftDown(this.heap, top, this.heapSize - 1, this.machineOrder);
+        }
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Removes and returns some "first" ("smallest") entry from the contents
+     * of {@code this}.
+     *
+     * @return the entry removed
+     * @updates this.contents
+     * @requires not this.insertion_mode and this.contents /= {}
+     * @ensures <pre>
+     * removeFirst is in #this.contents  and
+     * this.contents = #this.contents \ {removeFirst}  and
+     * for all z: integer where (z is in this.contents)
+     *   ([relation computed by this.order.applyAsLong method](removeFirst, z))
+     * </pre>
+     */
+    public long removeFirst() {
+        assert !this.insertionMode : "Violation of: not this.insertion_mode";
+        assert this.heapSize > 0 : "Violation of: this.contents /= {}";
+
+        long first = this.heap[0];
+        this.heapSize--;
+        this.heap[0] = this.heap[this.heapSize];
+        if (this.heapSize > 0) {
+            siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+        }
+        assert this.conventionHolds();
+        return first;
+    }
+
+    /**
+     * Reports whether {@code this} is in insertion mode.
+     *
+     * @return true iff {@code this} is in insertion mode
+     * @ensures isInInsertionMode = this.insertion_mode
+     */
+    public boolean isInInsertionMode() {
+        return this.insertionMode;
+    }
+
+    /**
+     * Reports the order of {@code this}.
+     *
+     * @return the order
+     * @ensures order = this.order
+     */
+    public LongBinaryOperator order() {
+        return this.machineOrder;
+    }
+
+    /**
+     * Reports the number of entries in {@code this}.
+     *
+     * @return the number of entries
+     * @ensures size = |this.contents|
+     */
+    public int size() {
+        return this.heapSize;
+    }
+
+}
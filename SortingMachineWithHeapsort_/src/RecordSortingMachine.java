@@ -0,0 +1,591 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Sorting machine for fixed-width binary records, stored outside the Java
+ * heap. It has the same insertion/extraction-mode life cycle as a
+ * {@code SortingMachine}, but {@code add} copies a record in from a caller's
+ * {@code ByteBuffer} and {@code removeFirst} copies one out to another, so no
+ * object is created per record.
+ *
+ * <p>
+ * Records are {@code recordSize} bytes long and are ordered by their key, the
+ * {@code keyLength} bytes starting at {@code keyOffset}, compared as unsigned
+ * bytes, lexicographically (so a big-endian unsigned {@code long} key sorts
+ * numerically). Records are appended to direct buffers ("chunks") of at most
+ * {@link #CHUNK_BYTES} bytes, so capacity grows by allocating a new chunk
+ * rather than copying, and more than 2 GB of records can be held. The heap
+ * itself is an {@code int[]} of record numbers, built by
+ * {@code changeToExtractionMode}, with a parallel {@code long[]} caching each
+ * record's first eight key bytes; records never move once added.
+ *
+ * @mathdefinitions <pre>
+ * KEY_LE (
+ *   x: string of byte,
+ *   y: string of byte
+ *  ) : boolean is
+ *  [the key of record x is lexicographically no larger than the key of
+ *   record y, with bytes compared as unsigned]
+ *
+ * IS_HEAP (
+ *   a: string of integer,
+ *   stop: integer,
+ *   r: string of string of byte
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i <= stop)
+ *    (KEY_LE(r[a[(i - 1) / 2]], r[a[i]]))
+ * </pre>
+ * @convention <pre>
+ * 0 < $this.keyLength  and  0 <= $this.keyOffset  and
+ * $this.keyOffset + $this.keyLength <= $this.recordSize  and
+ * $this.chunkRecords = 2^$this.chunkShift  and
+ * 0 <= $this.recordCount <= [total capacity of $this.chunks in records]  and
+ * [every chunk but possibly the only one holds $this.chunkRecords records]  and
+ * if $this.insertionMode then
+ *   $this.heapSize = $this.recordCount
+ * else
+ *   0 <= $this.heapSize <= |$this.heap|  and
+ *   |$this.prefixes| = |$this.heap|  and
+ *   [$this.heap[0, $this.heapSize) are distinct record numbers in
+ *    [0, $this.recordCount)]  and
+ *   [$this.prefixes[0, $this.heapSize) are the key prefixes of those
+ *    records]  and
+ *   IS_HEAP($this.heap, $this.heapSize - 1, [records of $this.chunks])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode,
+ *         if $this.insertionMode then
+ *           [multiset of records 0 through $this.recordCount - 1]
+ *         else
+ *           [multiset of the records numbered in $this.heap[0, $this.heapSize)])
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class RecordSortingMachine {
+
+    /**
+     * Largest number of bytes in a chunk.
+     */
+    public static final int CHUNK_BYTES = 1 << 20;
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of records the first chunk is allocated for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Number of bytes in a {@code long}.
+     */
+    private static final int LONG_BYTES = Long.BYTES;
+
+    /**
+     * Number of bytes in a record.
+     */
+    private final int recordSize;
+
+    /**
+     * Offset of the key in a record.
+     */
+    private final int keyOffset;
+
+    /**
+     * Number of bytes in the key.
+     */
+    private final int keyLength;
+
+    /**
+     * Base-2 logarithm of {@code chunkRecords}.
+     */
+    private final int chunkShift;
+
+    /**
+     * Number of records in a full chunk, a power of 2.
+     */
+    private final int chunkRecords;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Direct buffers holding the records, in the order they were added;
+     * record number i is in chunk {@code i >>> chunkShift}.
+     */
+    private ByteBuffer[] chunks;
+
+    /**
+     * Number of chunks in use at the front of {@code chunks}.
+     */
+    private int chunkCount;
+
+    /**
+     * Number of records added since the machine was created or cleared.
+     */
+    private int recordCount;
+
+    /**
+     * Record numbers: a heap ordered by the records' keys in extraction mode;
+     * allocated, or reused, by {@code changeToExtractionMode}.
+     */
+    private int[] heap;
+
+    /**
+     * The first eight key bytes (zero-padded if the key is shorter) of the
+     * record numbered at the same index of {@code heap}, as a big-endian
+     * {@code long}; comparing these first means most comparisons never read
+     * the chunks.
+     */
+    private long[] prefixes;
+
+    /**
+     * Number of entries in use at the front of {@code heap}; in insertion mode,
+     * the number of records.
+     */
+    private int heapSize;
+
+    /**
+     * Returns a new direct buffer of {@code capacity} bytes, in big-endian
+     * byte order.
+     *
+     * @param capacity
+     *            the number of bytes
+     * @return the new buffer
+     * @requires capacity >= 0
+     * @ensures newChunk.capacity = capacity and newChunk.order = BIG_ENDIAN
+     */
+    private static ByteBuffer newChunk(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Returns the chunk holding record number {@code r}.
+     *
+     * @param r
+     *            the record number
+     * @return the chunk holding record {@code r}
+     * @requires 0 <= r < $this.recordCount
+     */
+    private ByteBuffer chunkOf(int r) {
+        return this.chunks[r >>> this.chunkShift];
+    }
+
+    /**
+     * Returns the offset of record number {@code r} in its chunk.
+     *
+     * @param r
+     *            the record number
+     * @return the offset of record {@code r}
+     * @requires 0 <= r < $this.recordCount
+     */
+    private int offsetOf(int r) {
+        return (r & (this.chunkRecords - 1)) * this.recordSize;
+    }
+
+    /**
+     * Returns the first eight key bytes of record number {@code r}, padded
+     * with zero bytes if the key is shorter, as a big-endian {@code long}.
+     *
+     * @param r
+     *            the record number
+     * @return the key prefix of record {@code r}
+     * @requires 0 <= r < $this.recordCount
+     */
+    private long prefixOf(int r) {
+        ByteBuffer chunk = this.chunkOf(r);
+        int offset = this.offsetOf(r) + this.keyOffset;
+        long prefix;
+        if (this.keyLength >= LONG_BYTES) {
+            prefix = chunk.getLong(offset);
+        } else {
+            prefix = 0;
+            for (int k = 0; k < LONG_BYTES; k++) {
+                prefix <<= Byte.SIZE;
+                if (k < this.keyLength) {
+                    prefix |= Byte.toUnsignedInt(chunk.get(offset + k));
+                }
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Compares the keys of records number {@code r} and {@code s} from byte
+     * {@code from} of the key on, eight bytes at a time while it can.
+     *
+     * @param r
+     *            one record number
+     * @param s
+     *            the other record number
+     * @param from
+     *            the first key byte to compare
+     * @return negative, zero, or positive as the key of {@code r} is less
+     *         than, equal to, or greater than the key of {@code s}, given
+     *         that their first {@code from} bytes are equal
+     * @requires <pre>
+     * 0 <= r < $this.recordCount  and  0 <= s < $this.recordCount  and
+     * 0 <= from
+     * </pre>
+     */
+    private int compareKeys(int r, int s, int from) {
+        ByteBuffer rChunk = this.chunkOf(r);
+        ByteBuffer sChunk = this.chunkOf(s);
+        int rOffset = this.offsetOf(r) + this.keyOffset;
+        int sOffset = this.offsetOf(s) + this.keyOffset;
+        int result = 0;
+        int k = from;
+        while (result == 0 && k + LONG_BYTES <= this.keyLength) {
+            result = Long.compareUnsigned(rChunk.getLong(rOffset + k),
+                    sChunk.getLong(sOffset + k));
+            k += LONG_BYTES;
+        }
+        while (result == 0 && k < this.keyLength) {
+            result = Byte.toUnsignedInt(rChunk.get(rOffset + k))
+                    - Byte.toUnsignedInt(sChunk.get(sOffset + k));
+            k++;
+        }
+        return result;
+    }
+
+    /**
+     * Compares two records by their key prefixes and, only if those are equal
+     * and the key is longer than eight bytes, by the rest of their keys.
+     *
+     * @param rPrefix
+     *            the key prefix of {@code r}
+     * @param r
+     *            one record number
+     * @param sPrefix
+     *            the key prefix of {@code s}
+     * @param s
+     *            the other record number
+     * @return negative, zero, or positive as the key of {@code r} is less
+     *         than, equal to, or greater than the key of {@code s}
+     * @requires <pre>
+     * 0 <= r < $this.recordCount  and  0 <= s < $this.recordCount  and
+     * rPrefix = [key prefix of r]  and  sPrefix = [key prefix of s]
+     * </pre>
+     */
+    private int compare(long rPrefix, int r, long sPrefix, int s) {
+        int result = Long.compareUnsigned(rPrefix, sPrefix);
+        if (result == 0 && this.keyLength > LONG_BYTES) {
+            result = this.compareKeys(r, s, LONG_BYTES);
+        }
+        return result;
+    }
+
+    /**
+     * Sifts the entry at index {@code top} of {@code this.heap} down until the
+     * subtree rooted at {@code top}, through index {@code last}, is a heap.
+     *
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @updates $this.heap, $this.prefixes
+     * @requires <pre>
+     * 0 <= top  and  last < $this.heapSize  and
+     * [both subtrees of top are heaps through index last]
+     * </pre>
+     * @ensures <pre>
+     * [the subtree rooted at top is a heap through index last]  and
+     * perms($this.heap, #$this.heap)  and
+     * [$this.prefixes is permuted along with $this.heap]
+     * </pre>
+     */
+    private void siftDown(int top, int last) {
+        int[] array = this.heap;
+        long[] keys = this.prefixes;
+        int root = array[top];
+        long rootKey = keys[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last && this.compare(keys[child + 1], array[child + 1],
+                    keys[child], array[child]) < 0) {
+                child++;
+            }
+            if (this.compare(keys[child], array[child], rootKey, root) >= 0) {
+                break;
+            }
+            array[hole] = array[child];
+            keys[hole] = keys[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+        keys[hole] = rootKey;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.recordCount <= [total capacity of $this.chunks in records]  and
+     * if $this.insertionMode then
+     *   $this.heapSize = $this.recordCount
+     * else
+     *   0 <= $this.heapSize <= |$this.heap|  and
+     *   [$this.heap[0, $this.heapSize) are record numbers in
+     *    [0, $this.recordCount)]  and
+     *   [$this.prefixes[0, $this.heapSize) are the key prefixes of those
+     *    records]  and
+     *   IS_HEAP($this.heap, $this.heapSize - 1, [records of $this.chunks])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        int capacity = 0;
+        if (this.chunkCount > 0) {
+            capacity = (this.chunkCount - 1) * this.chunkRecords
+                    + this.chunks[this.chunkCount - 1].capacity() / this.recordSize;
+        }
+        assert 0 <= this.recordCount && this.recordCount <= capacity : ""
+                + "Violation of: 0 <= $this.recordCount <= [capacity of $this.chunks]";
+        if (this.insertionMode) {
+            assert this.heapSize == this.recordCount : ""
+                    + "Violation of: if $this.insertionMode then"
+                    + " $this.heapSize = $this.recordCount";
+        } else {
+            assert 0 <= this.heapSize && this.heapSize <= this.heap.length
+                    : "Violation of: 0 <= $this.heapSize <= |$this.heap|";
+            for (int i = 0; i < this.heapSize; i++) {
+                assert 0 <= this.heap[i] && this.heap[i] < this.recordCount : ""
+                        + "Violation of: [$this.heap[0, $this.heapSize) are record"
+                        + " numbers in [0, $this.recordCount)]";
+                assert this.prefixes[i] == this.prefixOf(this.heap[i]) : ""
+                        + "Violation of: [$this.prefixes[i] is the key prefix of"
+                        + " record $this.heap[i]]";
+                assert i == 0 || this.compareKeys(this.heap[(i - 1) / 2],
+                        this.heap[i], 0) <= 0 : ""
+                                + "Violation of: IS_HEAP($this.heap,"
+                                + " $this.heapSize - 1, [records of $this.chunks])";
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from record layout.
+     *
+     * @param recordSize
+     *            the number of bytes in a record
+     * @param keyOffset
+     *            the offset of the key in a record
+     * @param keyLength
+     *            the number of bytes in the key
+     * @requires <pre>
+     * 0 < keyLength  and  0 <= keyOffset  and
+     * keyOffset + keyLength <= recordSize
+     * </pre>
+     */
+    public RecordSortingMachine(int recordSize, int keyOffset, int keyLength) {
+        assert 0 < keyLength : "Violation of: 0 < keyLength";
+        assert 0 <= keyOffset : "Violation of: 0 <= keyOffset";
+        assert keyOffset + keyLength <= recordSize
+                : "Violation of: keyOffset + keyLength <= recordSize";
+        this.recordSize = recordSize;
+        this.keyOffset = keyOffset;
+        this.keyLength = keyLength;
+        // the largest power of 2 number of records that fits in CHUNK_BYTES
+        this.chunkRecords = Math.max(1, Integer.highestOneBit(CHUNK_BYTES / recordSize));
+        this.chunkShift = Integer.numberOfTrailingZeros(this.chunkRecords);
+        this.insertionMode = true;
+        this.chunks = new ByteBuffer[1];
+        this.chunks[0] = newChunk(Math.min(INITIAL_CAPACITY, this.chunkRecords)
+                * recordSize);
+        this.chunkCount = 1;
+        this.recordCount = 0;
+        this.heap = new int[0];
+        this.prefixes = new long[0];
+        this.heapSize = 0;
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Reports the number of bytes in a record.
+     *
+     * @return the record size
+     */
+    public int recordSize() {
+        return this.recordSize;
+    }
+
+    /**
+     * Resets {@code this} to an empty machine in insertion mode with the same
+     * record layout, keeping the memory already allocated.
+     *
+     * @clears this
+     */
+    public void clear() {
+        this.recordCount = 0;
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Adds a copy of the next record of {@code src} to the contents of
+     * {@code this}.
+     *
+     * @param src
+     *            the buffer to copy the record from
+     * @updates this.contents, src.position
+     * @requires <pre>
+     * this.insertion_mode  and  src.remaining >= this.record_size  and
+     * this.contents has fewer than Integer.MAX_VALUE records
+     * </pre>
+     * @ensures <pre>
+     * this.contents = #this.contents union
+     *   {src[#src.position, #src.position + this.record_size)}  and
+     * src.position = #src.position + this.record_size
+     * </pre>
+     */
+    public void add(ByteBuffer src) {
+        assert src != null : "Violation of: src is not null";
+        assert this.insertionMode : "Violation of: this.insertion_mode";
+        assert src.remaining() >= this.recordSize
+                : "Violation of: src.remaining >= this.record_size";
+        assert this.recordCount < Integer.MAX_VALUE
+                : "Violation of: |this.contents| < Integer.MAX_VALUE";
+
+        int r = this.recordCount;
+        int chunk = r >>> this.chunkShift;
+        if (chunk == this.chunkCount) {
+            // the last chunk is full: start another, leaving the others in place
+            if (this.chunkCount == this.chunks.length) {
+                this.chunks = Arrays.copyOf(this.chunks, 2 * this.chunks.length);
+            }
+            this.chunks[chunk] = newChunk(this.chunkRecords * this.recordSize);
+            this.chunkCount++;
+        } else if (this.offsetOf(r) == this.chunks[chunk].capacity()) {
+            // the first chunk is not yet full size: double it
+            ByteBuffer grown = newChunk(2 * this.chunks[chunk].capacity());
+            this.chunks[chunk].clear();
+            grown.put(this.chunks[chunk]);
+            this.chunks[chunk] = grown;
+        }
+
+        ByteBuffer target = this.chunks[chunk];
+        int limit = src.limit();
+        src.limit(src.position() + this.recordSize);
+        target.clear();
+        target.position(this.offsetOf(r));
+        target.put(src);
+        src.limit(limit);
+
+        this.recordCount++;
+        this.heapSize++;
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Changes the mode of {@code this} from insertion to extraction.
+     *
+     * @updates this.insertion_mode
+     * @requires this.insertion_mode
+     * @ensures not this.insertion_mode
+     */
+    public void changeToExtractionMode() {
+        assert this.insertionMode : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        if (this.heap.length < this.recordCount) {
+            this.heap = new int[this.recordCount];
+            this.prefixes = new long[this.recordCount];
+        }
+        for (int r = 0; r < this.recordCount; r++) {
+            this.heap[r] = r;
+            this.prefixes[r] = this.prefixOf(r);
+        }
+        for (int top = (this.heapSize - 2) / 2; top >= 0; top--) {
+            this.siftDown(top, this.heapSize - 1);
+        }
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Removes some "first" ("smallest key") record from the contents of
+     * {@code this}, copying it to {@code dest}.
+     *
+     * @param dest
+     *            the buffer to copy the record to
+     * @updates this.contents, dest
+     * @requires <pre>
+     * not this.insertion_mode  and  this.contents /= {}  and
+     * dest.remaining >= this.record_size
+     * </pre>
+     * @ensures <pre>
+     * [the record r copied to dest[#dest.position, #dest.position +
+     *  this.record_size) is in #this.contents]  and
+     * this.contents = #this.contents \ {r}  and
+     * for all z: string of byte where (z is in this.contents)
+     *   (KEY_LE(r, z))  and
+     * dest.position = #dest.position + this.record_size
+     * </pre>
+     */
+    public void removeFirst(ByteBuffer dest) {
+        assert dest != null : "Violation of: dest is not null";
+        assert !this.insertionMode : "Violation of: not this.insertion_mode";
+        assert this.heapSize > 0 : "Violation of: this.contents /= {}";
+        assert dest.remaining() >= this.recordSize
+                : "Violation of: dest.remaining >= this.record_size";
+
+        int first = this.heap[0];
+        ByteBuffer source = this.chunkOf(first);
+        int offset = this.offsetOf(first);
+        source.limit(offset + this.recordSize);
+        source.position(offset);
+        dest.put(source);
+        source.clear();
+
+        this.heapSize--;
+        this.heap[0] = this.heap[this.heapSize];
+        this.prefixes[0] = this.prefixes[this.heapSize];
+        if (this.heapSize > 0) {
+            this.siftDown(0, this.heapSize - 1);
+        }
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Reports whether {@code this} is in insertion mode.
+     *
+     * @return true iff {@code this} is in insertion mode
+     * @ensures isInInsertionMode = this.insertion_mode
+     */
+    public boolean isInInsertionMode() {
+        return this.insertionMode;
+    }
+
+    /**
+     * Reports the number of records in {@code this}.
+     *
+     * @return the number of records
+     * @ensures size = |this.contents|
+     */
+    public int size() {
+        return this.heapSize;
+    }
+
+}
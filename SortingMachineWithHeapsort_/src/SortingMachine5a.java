@@ -1,15 +1,22 @@
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import components.queue.Queue;
-import components.queue.Queue1L;
 import components.sortingmachine.SortingMachine;
 import components.sortingmachine.SortingMachineSecondary;
 
 /**
- * {@code SortingMachine} represented as a {@code Queue} and an array (using an
- * embedding of heap sort), with implementations of primary methods.
+ * {@code SortingMachine} represented as a growable array (using an embedding of
+ * heap sort), with implementations of primary methods. In insertion mode the
+ * array is an unordered buffer of the entries; {@code changeToExtractionMode}
+ * turns that same array into a heap in place.
  *
  * @param <T>
  *            type of {@code SortingMachine} entries
@@ -42,22 +49,20 @@ import components.sortingmachine.SortingMachineSecondary;
  * </pre>
  * @convention <pre>
  * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
- * if $this.insertionMode then
- *   $this.heapSize = 0
- * else
- *   $this.entries = <>  and
- *   for all i: integer
- *       where (0 <= i  and  i < |$this.heap|)
- *     ([entry at position i in $this.heap is not null])  and
+ * 0 <= $this.heapSize <= |$this.heap|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.heapSize)
+ *   ([entry at position i in $this.heap is not null])  and
+ * for all i: integer
+ *     where ($this.heapSize <= i  and  i < |$this.heap|)
+ *   ([entry at position i in $this.heap is null])  and
+ * if not $this.insertionMode then
  *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
- *     [relation computed by $this.machineOrder.compare method])  and
- *   0 <= $this.heapSize <= |$this.heap|
+ *     [relation computed by $this.machineOrder.compare method])
  * </pre>
  * @correspondence <pre>
- * if $this.insertionMode then
- *   this = (true, $this.machineOrder, multiset_entries($this.entries))
- * else
- *   this = (false, $this.machineOrder, multiset_entries($this.heap[0, $this.heapSize)))
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
  * </pre>
  *
  * @author Yoora Choi
@@ -69,6 +74,11 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * Private members --------------------------------------------------------
      */
 
+    /**
+     * Capacity of the array allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
     /**
      * Order.
      */
@@ -80,19 +90,28 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     private boolean insertionMode;
 
     /**
-     * Entries.
+     * Entries: an unordered buffer in insertion mode, a heap in extraction
+     * mode.
      */
-    private Queue<T> entries;
+    private T[] heap;
 
     /**
-     * Heap.
+     * Number of entries in use at the front of {@code heap}.
      */
-    private T[] heap;
+    private int heapSize;
 
     /**
-     * Heap size.
+     * Metrics recorder, or null if metrics are disabled. Not part of the
+     * representation: it stays with this object through
+     * {@code transferFrom}.
      */
-    private int heapSize;
+    private SortingMachineMetrics metrics;
+
+    /**
+     * {@code machineOrder}, counting its calls into {@code metrics}; null if
+     * metrics are disabled.
+     */
+    private Comparator<T> countingOrder;
 
     /**
      * Exchanges entries at indices {@code i} and {@code j} of {@code array}.
@@ -141,11 +160,12 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      *            the index of the last entry in the heap
      * @param order
      *            total preorder for sorting
+     * @return the number of levels top's entry moved down
      * @updates array
      * @requires <pre>
      * 0 <= top  and  last < |array|  and
      * for all i: integer
-     *     where (0 <= i  and  i < |array|)
+     *     where (0 <= i  and  i <= last)
      *   ([entry at position i in array is not null])  and
      * [subtree rooted at {@code top} is a complete binary tree]  and
      * SUBTREE_IS_HEAP(array, 2 * top + 1, last,
@@ -163,14 +183,14 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * [the other entries in array are the same as in #array]
      * </pre>
      */
-    private static <T> void siftDown(T[] array, int top, int last, Comparator<T> order) {
+    private static <T> int siftDown(T[] array, int top, int last, Comparator<T> order) {
         assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
         assert 0 <= top : "Violation of: 0 <= top";
         assert last < array.length : "Violation of: last < |array|";
-        for (int i = 0; i < array.length; i++) {
-            assert array[i] != null
-                    : "" + "Violation of: all entries in array are not null";
+        for (int i = 0; i <= last; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: all entries in array[0, last] are not null";
         }
         assert isHeap(array, 2 * top + 1, last, order)
                 : "" + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 1, last,"
@@ -184,177 +204,135 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
          * representation for a complete binary tree.
          */
 
-        // *** you must use the recursive algorithm discussed in class ***
-        int left = 2 * top + 1;
-        int right = 2 * top + 2;
-
-        // check whether children exists or not
-        boolean isLeftBound = left <= last;
-        boolean isRightBound = right <= last;
+        return siftDownUnchecked(array, top, last, order);
 
-        if (isLeftBound || isRightBound) {
+    }
 
-            int minIdx = 0;
-            /*
-             * Compare the left child with the right child
-             */
-            // case 1 : left child & right child in the boundary
-            if (isLeftBound && isRightBound) {
-
-                // if array[left child] < array[right]
-                if (order.compare(array[left], array[right]) < 0) {
-                    minIdx = left;
-                    // if array[left child] > array[right]
-                } else {
-                    minIdx = right;
-                }
+    /**
+     * Same as {@link #siftDown}, but without checking its preconditions, for
+     * loops that check the convention once rather than on every sift.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return the number of levels top's entry moved down
+     * @updates array
+     * @requires [the requires clause of siftDown]
+     * @ensures [the ensures clause of siftDown]
+     */
+    private static <T> int siftDownUnchecked(T[] array, int top, int last,
+            Comparator<T> order) {
+        /*
+         * Move a "hole" down from top instead of exchanging entries at every
+         * level: each smaller child is shifted up into the hole, and the
+         * original root is written once, where the hole finally stops
+         */
+        T root = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+        int depth = 0;
 
-                // case 2: only left child in the boundary
-            } else if (isLeftBound) {
-                minIdx = left;
+        while (child <= last) {
 
-                // case 3: only right child in the boundary
-            } else {
-                minIdx = right;
+            // pick the smaller of the two children (right child only if it exists)
+            if (child < last && order.compare(array[child + 1], array[child]) < 0) {
+                child++;
             }
 
-            /*
-             * Compare the smallest child {array[minIdx]} with root {array[top]}
-             */
-            // only if array[minIdx] < array[top],
-            // then exchange the entries and recursively shift down
-            if (order.compare(array[minIdx], array[top]) < 0) {
-                exchangeEntries(array, top, minIdx);
-                siftDown(array, minIdx, last, order);
+            // stop once the root is no larger than the smaller child
+            if (order.compare(array[child], root) >= 0) {
+                break;
             }
 
+            array[hole] = array[child];
+            hole = child;
+            child = 2 * hole + 1;
+            depth++;
         }
 
-//        int left = 2 * top + 1;
-//
-//        if (left > last) {
-//            return;
-//        }
-//        int right = left + 1;
-//
-//        int smallest = left;
-//        if (right <= last && order.compare(array[right], array[left]) < 0) {
-//            smallest = right;
-//        }
-//
-//        if (smallest < last && order.compare(array[smallest], array[top]) < 0) {
-//            exchangeEntries(array, smallest, top);
-//            siftDown(array, smallest, last, order);
-//        }
+        array[hole] = root;
+        return depth;
 
     }
 
     /**
-     * Heapifies the subtree of the given array rooted at the given {@code top}.
+     * Heapifies the entries of the given array at indices 0 through
+     * {@code last}, using the bottom-up (Floyd) construction: every internal
+     * node is sifted down, from the last one ({@code (last - 1) / 2}) back to
+     * the root.
      *
      * @param <T>
      *            type of array entries
      * @param array
      *            the complete binary tree
-     * @param top
-     *            the index of the root of the "subtree" to heapify
+     * @param last
+     *            the index of the last entry in the heap
      * @param order
      *            the total preorder for sorting
      * @updates array
      * @requires <pre>
-     * 0 <= top  and
+     * last < |array|  and
      * for all i: integer
-     *     where (0 <= i  and  i < |array|)
+     *     where (0 <= i  and  i <= last)
      *   ([entry at position i in array is not null])  and
-     * [subtree rooted at {@code top} is a complete binary tree]  and
      * IS_TOTAL_PREORDER([relation computed by order.compare method])
      * </pre>
      * @ensures <pre>
-     * SUBTREE_IS_HEAP(array, top, |array| - 1,
+     * SUBTREE_IS_HEAP(array, 0, last,
      *     [relation computed by order.compare method])  and
-     * perms(array, #array)
+     * perms(array, #array)  and
+     * [the entries of array after index last are the same as in #array]
      * </pre>
      */
-    private static <T> void heapify(T[] array, int top, Comparator<T> order) {
+    private static <T> void heapify(T[] array, int last, Comparator<T> order) {
         assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
-        assert 0 <= top : "Violation of: 0 <= top";
-        for (int i = 0; i < array.length; i++) {
-            assert array[i] != null
-                    : "" + "Violation of: all entries in array are not null";
+        assert last < array.length : "Violation of: last < |array|";
+        for (int i = 0; i <= last; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: all entries in array[0, last] are not null";
         }
         /*
-         * Impractical to check last requires clause; no need to check the other
-         * requires clause, because it must be true when using the array
-         * representation for a complete binary tree.
+         * Impractical to check last requires clause.
          */
 
-        // *** you must use the recursive algorithm discussed in class ***
-
-        int left = 2 * top + 1;
-        int right = 2 * top + 2;
-        int last = array.length - 1;
-
-        // if left child exists, recursively call heapify method
-        if (left <= last) {
-            heapify(array, left, order);
-        } // if right child exists, recursively call heapify method
-        if (right <= last) {
-            heapify(array, right, order);
+        // leaves are already heaps, so start from the parent of the last entry
+        for (int top = (last - 1) / 2; top >= 0; top--) {
+            siftDown(array, top, last, order);
         }
 
-        // sift down from the elements in the last level
-        siftDown(array, top, last, order);
-
     }
 
     /**
-     * Constructs and returns an array representing a heap with the entries from
-     * the given {@code Queue}.
+     * Constructs and returns an array of {@code T} with all entries null.
      *
      * @param <T>
-     *            type of {@code Queue} and array entries
-     * @param q
-     *            the {@code Queue} with the entries for the heap
-     * @param order
-     *            the total preorder for sorting
-     * @return the array representation of a heap
-     * @clears q
-     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method])
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
      * @ensures <pre>
-     * SUBTREE_IS_HEAP(buildHeap, 0, |buildHeap| - 1)  and
-     * perms(buildHeap, #q)  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |buildHeap|)
-     *   ([entry at position i in buildHeap is not null])  and
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
      * </pre>
      */
     @SuppressWarnings("unchecked")
-    private static <T> T[] buildHeap(Queue<T> q, Comparator<T> order) {
-        assert q != null : "Violation of: q is not null";
-        assert order != null : "Violation of: order is not null";
-        /*
-         * Impractical to check the requires clause.
-         */
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
         /*
          * With "new T[...]" in place of "new Object[...]" it does not compile;
          * as shown, it results in a warning about an unchecked cast, though it
          * cannot fail.
          */
-
-        int n = q.length();
-
-        T[] heap = (T[]) (new Object[n]);
-
-        // Add all elements in {Queue<T> q} to {T[] heap}
-        for (int i = 0; i < n; i++) {
-            heap[i] = q.dequeue();
-        }
-
-        // Build a heap from the array by recursively calling heapify from the first element
-        heapify(heap, 0, order);
-
-        return heap;
+        return (T[]) (new Object[capacity]);
     }
 
     /**
@@ -376,7 +354,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @requires <pre>
      * 0 <= top  and  last < |array|  and
      * for all i: integer
-     *     where (0 <= i  and  i < |array|)
+     *     where (0 <= i  and  i <= last)
      *   ([entry at position i in array is not null])  and
      * [subtree rooted at {@code top} is a complete binary tree]
      * </pre>
@@ -389,9 +367,9 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         assert array != null : "Violation of: array is not null";
         assert 0 <= top : "Violation of: 0 <= top";
         assert last < array.length : "Violation of: last < |array|";
-        for (int i = 0; i < array.length; i++) {
-            assert array[i] != null
-                    : "" + "Violation of: all entries in array are not null";
+        for (int i = 0; i <= last; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: all entries in array[0, last] are not null";
         }
         /*
          * No need to check the other requires clause, because it must be true
@@ -413,39 +391,44 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
 
     /**
      * Checks that the part of the convention repeated below holds for the
-     * current representation.
+     * current representation. In insertion mode this takes constant time:
+     * only the entries on either side of {@code $this.heapSize} are checked,
+     * and the rest of the null tail is checked by {@link #tailIsNull} where
+     * the array is reallocated or cleared.
      *
      * @return true if the convention holds (or if assertion checking is off);
      *         otherwise reports a violated assertion
      * @convention <pre>
-     * if $this.insertionMode then
-     *   $this.heapSize = 0
-     * else
-     *   $this.entries = <>  and
+     * 0 <= $this.heapSize <= |$this.heap|  and
+     * [entry at position $this.heapSize - 1 in $this.heap, if any, is not
+     *  null]  and
+     * [entry at position $this.heapSize in $this.heap, if any, is null]  and
+     * if not $this.insertionMode then
      *   for all i: integer
-     *       where (0 <= i  and  i < |$this.heap|)
+     *       where (0 <= i  and  i < $this.heapSize)
      *     ([entry at position i in $this.heap is not null])  and
      *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
-     *     [relation computed by $this.machineOrder.compare method])  and
-     *   0 <= $this.heapSize <= |$this.heap|
+     *     [relation computed by $this.machineOrder.compare method])
      * </pre>
      */
     private boolean conventionHolds() {
-        if (this.insertionMode) {
-            assert this.heapSize == 0
-                    : "" + "Violation of: if $this.insertionMode then $this.heapSize = 0";
-        } else {
-            assert this.entries.length() == 0 : ""
-                    + "Violation of: if not $this.insertionMode then $this.entries = <>";
-            assert 0 <= this.heapSize : ""
-                    + "Violation of: if not $this.insertionMode then 0 <= $this.heapSize";
-            assert this.heapSize <= this.heap.length
-                    : "" + "Violation of: if not $this.insertionMode then"
-                            + " $this.heapSize <= |$this.heap|";
-            for (int i = 0; i < this.heap.length; i++) {
-                assert this.heap[i] != null
-                        : "" + "Violation of: if not $this.insertionMode then"
-                                + " all entries in $this.heap are not null";
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        if (this.heapSize > 0) {
+            assert this.heap[this.heapSize - 1] != null : ""
+                    + "Violation of: entries in $this.heap[0, $this.heapSize) not null";
+        }
+        if (this.heapSize < this.heap.length) {
+            assert this.heap[this.heapSize] == null : ""
+                    + "Violation of: entries in $this.heap[$this.heapSize, |$this.heap|)"
+                    + " are null";
+        }
+        if (!this.insertionMode) {
+            for (int i = 0; i < this.heapSize; i++) {
+                assert this.heap[i] != null : ""
+                        + "Violation of: entries in $this.heap[0, $this.heapSize)"
+                        + " not null";
             }
             assert isHeap(this.heap, 0, this.heapSize - 1, this.machineOrder) : ""
                     + "Violation of: if not $this.insertionMode then"
@@ -455,6 +438,27 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         return true;
     }
 
+    /**
+     * Checks the whole null tail of {@code $this.heap}, which
+     * {@link #conventionHolds} checks only at {@code $this.heapSize}.
+     *
+     * @return true if the tail is null (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * for all i: integer
+     *     where ($this.heapSize <= i  and  i < |$this.heap|)
+     *   ([entry at position i in $this.heap is null])
+     * </pre>
+     */
+    private boolean tailIsNull() {
+        for (int i = this.heapSize; i < this.heap.length; i++) {
+            assert this.heap[i] == null : ""
+                    + "Violation of: entries in $this.heap[$this.heapSize, |$this.heap|)"
+                    + " are null";
+        }
+        return true;
+    }
+
     /**
      * Creator of initial representation.
      *
@@ -464,7 +468,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @ensures <pre>
      * $this.insertionMode = true  and
      * $this.machineOrder = order  and
-     * $this.entries = <>  and
+     * |$this.heap| = INITIAL_CAPACITY  and
      * $this.heapSize = 0
      * </pre>
      */
@@ -473,7 +477,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         // Create the initial representation by post-condition
         this.insertionMode = true;
         this.machineOrder = order;
-        this.entries = new Queue1L<>();
+        this.heap = newArray(INITIAL_CAPACITY);
         this.heapSize = 0;
 
     }
@@ -511,7 +515,14 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
 
     @Override
     public final void clear() {
-        this.createNewRep(this.machineOrder);
+        /*
+         * Keep the array so a reused machine does not allocate again; only the
+         * slots in use need to be nulled out to restore the convention
+         */
+        Arrays.fill(this.heap, 0, this.heapSize, null);
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.tailIsNull();
         assert this.conventionHolds();
     }
 
@@ -530,9 +541,11 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         SortingMachine5a<T> localSource = (SortingMachine5a<T>) source;
         this.insertionMode = localSource.insertionMode;
         this.machineOrder = localSource.machineOrder;
-        this.entries = localSource.entries;
         this.heap = localSource.heap;
         this.heapSize = localSource.heapSize;
+        if (this.metrics != null) {
+            this.countingOrder = this.metrics.counting(this.machineOrder);
+        }
         localSource.createNewRep(localSource.machineOrder);
         assert this.conventionHolds();
         assert localSource.conventionHolds();
@@ -546,8 +559,14 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     public final void add(T x) {
         assert x != null : "Violation of: x is not null";
         assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
-        // In case of the insertion mode, not consider the order
-        this.entries.enqueue(x);
+        // In case of the insertion mode, not consider the order;
+        // double the array when it is full
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+            assert this.tailIsNull();
+        }
+        this.heap[this.heapSize] = x;
+        this.heapSize++;
         assert this.conventionHolds();
     }
 
@@ -558,12 +577,22 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         // Change insertion mode to extraction mode
         this.insertionMode = false;
 
-        // Set the array size {this.heapSize} equal to the length of the queue
-        //{this.entries}
-        this.heapSize = this.entries.length();
-
-        // Before the extraction, align the elements by the order
-        this.heap = buildHeap(this.entries, this.machineOrder);
+        // Before the extraction, turn the buffered entries into a heap in place
+        if (this.metrics == null) {
+            heapify(this.heap, this.heapSize - 1, this.machineOrder);
+        } else {
+            /*
+             * Unchecked sifts, so comparisons made by precondition checks are
+             * not counted; the convention is still checked below
+             */
+            long start = this.metrics.start();
+            for (int top = (this.heapSize - 2) / 2; top >= 0; top--) {
+                int depth = siftDownUnchecked(this.heap, top, this.heapSize - 1,
+                        this.countingOrder);
+                this.metrics.recordSiftDown(depth);
+            }
+            this.metrics.recordExtractionMode(start, this.heapSize);
+        }
 
         assert this.conventionHolds();
     }
@@ -573,18 +602,36 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
         assert this.size() > 0 : "Violation of: this.contents /= {}";
 
+        long start = 0;
+        if (this.metrics != null) {
+            start = this.metrics.start();
+        }
+
         // Save the first entry in the array {this.heap}
         T first = this.heap[0];
 
         // Swap the last entry with the first entry in the array {this.heap}
         exchangeEntries(this.heap, 0, this.heapSize - 1);
 
-        // Decrease heap size {this.heapSize} after swap
+        // Decrease heap size {this.heapSize} after swap, and drop the
+        // reference to the removed entry
         this.heapSize--;
+        this.heap[this.heapSize] = null;
 
         // only sift down if heap is not empty
+        int depth = -1;
         if (this.heapSize > 0) {
-            siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+            if (this.metrics == null) {
+                siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+            } else {
+                depth = siftDownUnchecked(this.heap, 0, this.heapSize - 1,
+                        this.countingOrder);
+            }
+        }
+
+        if (this.metrics != null) {
+            // the last entry replaced the root unless the heap had one entry
+            this.metrics.recordRemoveFirst(start, this.heapSize, depth >= 0, depth);
         }
 
         assert this.conventionHolds();
@@ -593,6 +640,170 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         return first;
     }
 
+    /**
+     * Removes the first {@code k} entries of {@code this}, in order, into
+     * {@code dest[0, k)}. Equivalent to {@code k} calls of
+     * {@code removeFirst}, but the convention is checked only once.
+     *
+     * @param k
+     *            the number of entries to remove
+     * @param dest
+     *            the array receiving the entries
+     * @updates this, dest
+     * @requires <pre>
+     * not this.insertion_mode  and  0 <= k <= |this.contents|  and
+     * k <= |dest|
+     * </pre>
+     * @ensures <pre>
+     * [dest[0, k) are the first k entries of #this.contents, in the order
+     *  that repeated removeFirst would return them]  and
+     * this.contents = #this.contents - [multiset of entries in dest[0, k)]  and
+     * this.insertion_mode = #this.insertion_mode  and
+     * this.ordering = #this.ordering  and
+     * [the other entries of dest are unchanged]
+     * </pre>
+     */
+    public final void removeFirst(int k, T[] dest) {
+        assert dest != null : "Violation of: dest is not null";
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k <= this.size() : "Violation of: k <= |this.contents|";
+        assert k <= dest.length : "Violation of: k <= |dest|";
+
+        for (int i = 0; i < k; i++) {
+            dest[i] = this.removeRoot();
+        }
+
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Removes every entry of {@code this}, passing each, in order, to
+     * {@code action}. Equivalent to calling {@code removeFirst} until
+     * {@code this} is empty, but the convention is checked only once.
+     *
+     * @param action
+     *            the consumer of the entries
+     * @updates this
+     * @requires not this.insertion_mode
+     * @ensures <pre>
+     * [action has accepted the entries of #this.contents, in the order that
+     *  repeated removeFirst would return them]  and
+     * this = (#this.insertion_mode, #this.ordering, {})
+     * </pre>
+     */
+    public final void drainTo(Consumer<? super T> action) {
+        assert action != null : "Violation of: action is not null";
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+
+        while (this.heapSize > 0) {
+            action.accept(this.removeRoot());
+        }
+
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Removes every entry of {@code this}, enqueueing each, in order, on
+     * {@code q}. Equivalent to calling {@code removeFirst} until {@code this}
+     * is empty, but the convention is checked only once.
+     *
+     * @param q
+     *            the queue receiving the entries
+     * @updates this, q
+     * @requires not this.insertion_mode
+     * @ensures <pre>
+     * q = #q * [the entries of #this.contents, in the order that repeated
+     *           removeFirst would return them]  and
+     * this = (#this.insertion_mode, #this.ordering, {})
+     * </pre>
+     */
+    public final void drainTo(Queue<T> q) {
+        assert q != null : "Violation of: q is not null";
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+
+        while (this.heapSize > 0) {
+            q.enqueue(this.removeRoot());
+        }
+
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Removes and returns the root of the heap, without checking the
+     * convention; the body of {@code removeFirst} shared by the batch methods.
+     *
+     * @return the removed root
+     * @updates this
+     * @requires not $this.insertionMode and $this.heapSize > 0
+     * @ensures <pre>
+     * removeRoot = #$this.heap[0]  and
+     * [$this.heap[0, $this.heapSize) is #$this.heap[0, #$this.heapSize) less
+     *  its root, rearranged into a heap]
+     * </pre>
+     */
+    private T removeRoot() {
+        long start = 0;
+        Comparator<T> order = this.machineOrder;
+        if (this.metrics != null) {
+            start = this.metrics.start();
+            order = this.countingOrder;
+        }
+
+        T first = this.heap[0];
+        this.heapSize--;
+        T last = this.heap[this.heapSize];
+        this.heap[this.heapSize] = null;
+        int depth = -1;
+        if (this.heapSize > 0) {
+            this.heap[0] = last;
+            depth = siftDownUnchecked(this.heap, 0, this.heapSize - 1, order);
+        }
+
+        if (this.metrics != null) {
+            // counted as in removeFirst, though the last entry is moved, not
+            // exchanged
+            this.metrics.recordRemoveFirst(start, this.heapSize, depth >= 0, depth);
+        }
+        return first;
+    }
+
+    /**
+     * Starts recording metrics for {@code this}, from zero: comparator calls,
+     * swaps and sift-down depths in {@code changeToExtractionMode} and
+     * {@code removeFirst} (and the batch methods), and the time spent in
+     * each. Until then, and after {@code disableMetrics}, the only cost of
+     * metrics is a null check per call.
+     *
+     * @ensures [metrics are enabled for this, with all counters zero]
+     */
+    public final void enableMetrics() {
+        this.metrics = new SortingMachineMetrics();
+        this.countingOrder = this.metrics.counting(this.machineOrder);
+    }
+
+    /**
+     * Stops recording metrics for {@code this}.
+     *
+     * @ensures [metrics are disabled for this]
+     */
+    public final void disableMetrics() {
+        this.metrics = null;
+        this.countingOrder = null;
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded for {@code this} since
+     * {@code enableMetrics}.
+     *
+     * @return the snapshot
+     * @requires [metrics are enabled for this]
+     */
+    public final SortingMachineMetrics.Snapshot metrics() {
+        assert this.metrics != null : "Violation of: [metrics are enabled for this]";
+        return this.metrics.snapshot();
+    }
+
     @Override
     public final boolean isInInsertionMode() {
         assert this.conventionHolds();
@@ -608,16 +819,9 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     @Override
     public final int size() {
 
-        // If {this.insertionMode)} is true,
-        // return the length of the queue {this.entries.length()}
-        // Otherwise, return the heap size {this.heapSize}
-        int result = this.entries.length();
-
-        if (!this.insertionMode) {
-            result = this.heapSize;
-        }
+        // Both modes keep the entries in {this.heap[0, this.heapSize)}
         assert this.conventionHolds();
-        return result;
+        return this.heapSize;
 
     }
 
@@ -626,6 +830,59 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         return new SortingMachine5aIterator();
     }
 
+    /**
+     * Returns a sequential {@code Stream} of the entries of {@code this}. In
+     * extraction mode the stream is {@code SORTED}, {@code SIZED} and
+     * {@code ORDERED}, and each entry is removed from {@code this}, as by
+     * {@code removeFirst}, only when the stream pulls it; entries the stream
+     * never pulls stay in {@code this}. In insertion mode the stream covers
+     * the buffered entries in no particular order, does not change
+     * {@code this}, and splits evenly, so it may be made parallel.
+     * {@code this} must not be changed by other means while the stream is in
+     * use.
+     *
+     * @return a stream of the entries of {@code this}
+     * @updates this
+     * @ensures <pre>
+     * if #this.insertion_mode then
+     *   this = #this  and
+     *   [stream covers the entries of this.contents]
+     * else
+     *   [stream yields the entries of #this.contents in the order that
+     *    repeated removeFirst would return them, removing each from
+     *    this.contents as it is pulled]
+     * </pre>
+     */
+    public final Stream<T> stream() {
+        Spliterator<T> spliterator;
+        if (this.isInInsertionMode()) {
+            spliterator = Spliterators.spliterator(this.heap, 0, this.heapSize,
+                    Spliterator.NONNULL);
+        } else {
+            spliterator = new SortingMachine5aSpliterator();
+        }
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Returns an iterator over the entries of {@code this} in the order that
+     * repeated {@code removeFirst} would return them (up to the order of
+     * ties), without removing them. Taking the first k entries takes O(k log
+     * k) time and O(k) space. {@code this} must not be changed while the
+     * iterator is in use.
+     *
+     * @return an iterator over the entries of {@code this}, in order
+     * @requires not this.insertion_mode
+     * @ensures <pre>
+     * [sortedIterator yields the entries of this.contents, each as many times
+     *  as it occurs, in non-decreasing order by this.ordering]
+     * </pre>
+     */
+    public final Iterator<T> sortedIterator() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        return new SortingMachine5aSortedIterator();
+    }
+
     /**
      * Implementation of {@code Iterator} interface for
      * {@code SortingMachine5a}.
@@ -633,12 +890,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     private final class SortingMachine5aIterator implements Iterator<T> {
 
         /**
-         * Representation iterator when in insertion mode.
-         */
-        private Iterator<T> queueIterator;
-
-        /**
-         * Representation iterator count when in extraction mode.
+         * Representation iterator count.
          */
         private int arrayCurrentIndex;
 
@@ -646,22 +898,13 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
          * No-argument constructor.
          */
         private SortingMachine5aIterator() {
-            if (SortingMachine5a.this.insertionMode) {
-                this.queueIterator = SortingMachine5a.this.entries.iterator();
-            } else {
-                this.arrayCurrentIndex = 0;
-            }
+            this.arrayCurrentIndex = 0;
             assert SortingMachine5a.this.conventionHolds();
         }
 
         @Override
         public boolean hasNext() {
-            boolean hasNext;
-            if (SortingMachine5a.this.insertionMode) {
-                hasNext = this.queueIterator.hasNext();
-            } else {
-                hasNext = this.arrayCurrentIndex < SortingMachine5a.this.heapSize;
-            }
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5a.this.heapSize;
             assert SortingMachine5a.this.conventionHolds();
             return hasNext;
         }
@@ -677,13 +920,8 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
                  */
                 throw new NoSuchElementException();
             }
-            T next;
-            if (SortingMachine5a.this.insertionMode) {
-                next = this.queueIterator.next();
-            } else {
-                next = SortingMachine5a.this.heap[this.arrayCurrentIndex];
-                this.arrayCurrentIndex++;
-            }
+            T next = SortingMachine5a.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
             assert SortingMachine5a.this.conventionHolds();
             return next;
         }
@@ -695,4 +933,185 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
 
     }
 
+    /**
+     * Iterator yielding the entries of a {@code SortingMachine5a} in extraction
+     * mode in sorted order. The entries not yet yielded whose parents have
+     * been yielded (the "frontier") are kept in a second heap, of positions in
+     * {@code heap}; the next entry is always at the top of that heap, and
+     * yielding it replaces it with its children.
+     */
+    private final class SortingMachine5aSortedIterator implements Iterator<T> {
+
+        /**
+         * Positions in {@code heap} of the frontier, as a heap ordered by the
+         * entries at those positions.
+         */
+        private int[] frontier;
+
+        /**
+         * Number of positions in use at the front of {@code frontier}.
+         */
+        private int frontierSize;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5aSortedIterator() {
+            this.frontier = new int[INITIAL_CAPACITY];
+            this.frontierSize = 0;
+            if (SortingMachine5a.this.heapSize > 0) {
+                this.frontier[0] = 0;
+                this.frontierSize = 1;
+            }
+            assert SortingMachine5a.this.conventionHolds();
+        }
+
+        /**
+         * Reports whether the entry at position {@code frontier[i]} of
+         * {@code heap} is smaller than the one at {@code frontier[j]}.
+         *
+         * @param i
+         *            one index in {@code frontier}
+         * @param j
+         *            the other index in {@code frontier}
+         * @return true if the entry for {@code i} is smaller
+         */
+        private boolean less(int i, int j) {
+            T[] entries = SortingMachine5a.this.heap;
+            return SortingMachine5a.this.machineOrder.compare(
+                    entries[this.frontier[i]], entries[this.frontier[j]]) < 0;
+        }
+
+        /**
+         * Adds {@code position} to the frontier.
+         *
+         * @param position
+         *            a position in {@code heap}
+         */
+        private void push(int position) {
+            if (this.frontierSize == this.frontier.length) {
+                this.frontier = Arrays.copyOf(this.frontier, 2 * this.frontier.length);
+            }
+            int child = this.frontierSize;
+            this.frontier[child] = position;
+            this.frontierSize++;
+            while (child > 0 && this.less(child, (child - 1) / 2)) {
+                int parent = (child - 1) / 2;
+                this.frontier[child] = this.frontier[parent];
+                this.frontier[parent] = position;
+                child = parent;
+            }
+        }
+
+        /**
+         * Removes and returns the top of the frontier.
+         *
+         * @return the position in {@code heap} of the smallest frontier entry
+         */
+        private int pop() {
+            int top = this.frontier[0];
+            this.frontierSize--;
+            int position = this.frontier[this.frontierSize];
+            this.frontier[0] = position;
+            int parent = 0;
+            int child = 1;
+            while (child < this.frontierSize) {
+                if (child + 1 < this.frontierSize && this.less(child + 1, child)) {
+                    child++;
+                }
+                if (!this.less(child, parent)) {
+                    break;
+                }
+                this.frontier[parent] = this.frontier[child];
+                this.frontier[child] = position;
+                parent = child;
+                child = 2 * parent + 1;
+            }
+            return top;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.frontierSize > 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            int position = this.pop();
+            int left = 2 * position + 1;
+            if (left < SortingMachine5a.this.heapSize) {
+                this.push(left);
+                if (left + 1 < SortingMachine5a.this.heapSize) {
+                    this.push(left + 1);
+                }
+            }
+            return SortingMachine5a.this.heap[position];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+    /**
+     * {@code Spliterator} over a {@code SortingMachine5a} in extraction mode
+     * that removes each entry as it is traversed. It cannot be split, since
+     * only the root of the heap is ever known to be next.
+     */
+    private final class SortingMachine5aSpliterator implements Spliterator<T> {
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            assert action != null : "Violation of: action is not null";
+            boolean advanced = SortingMachine5a.this.heapSize > 0;
+            if (advanced) {
+                action.accept(SortingMachine5a.this.removeRoot());
+            }
+            assert SortingMachine5a.this.conventionHolds();
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            assert action != null : "Violation of: action is not null";
+            while (SortingMachine5a.this.heapSize > 0) {
+                action.accept(SortingMachine5a.this.removeRoot());
+            }
+            assert SortingMachine5a.this.conventionHolds();
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return SortingMachine5a.this.heapSize;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SORTED | Spliterator.ORDERED | Spliterator.SIZED
+                    | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return SortingMachine5a.this.machineOrder;
+        }
+
+    }
+
 }
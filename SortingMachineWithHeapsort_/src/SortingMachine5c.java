@@ -0,0 +1,584 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} whose {@code add} may be called by many threads at
+ * once, with no lock shared between them: each thread appends to its own
+ * buffer. {@code changeToExtractionMode} gathers all the buffers into one
+ * array and heapifies it, after which the machine behaves like
+ * {@code SortingMachine5a}.
+ *
+ * <p>
+ * Only {@code add} is thread-safe. The caller must make sure that every
+ * {@code add} has finished, and happens-before the call (for example, by
+ * joining the producer threads), before calling any other method; in
+ * particular {@code size} and the iterator do not see adds still in
+ * progress.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_HEAP (
+ *   a: string of T,
+ *   stop: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i <= stop)
+ *    (r(a[(i - 1) / 2], a[i]))
+ *
+ * BUFFER_ENTRIES (
+ *   b: Buffer
+ *  ) : finite multiset of T is
+ *  multiset_entries(b.entries[0, b.size))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * [$this.localBuffer gives each thread a buffer in $this.buffers]  and
+ * if $this.insertionMode then
+ *   $this.heapSize = 0
+ * else
+ *   [every buffer in $this.buffers is empty]  and
+ *   0 <= $this.heapSize <= |$this.heap|  and
+ *   [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+ *   IS_HEAP($this.heap, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         [union of BUFFER_ENTRIES(b) over all buffers b in $this.buffers]
+ *           union multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5c<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the array allocated for a new buffer.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Every buffer handed out by {@code localBuffer}.
+     */
+    private ConcurrentLinkedQueue<Buffer<T>> buffers;
+
+    /**
+     * Buffer of the calling thread.
+     */
+    private ThreadLocal<Buffer<T>> localBuffer;
+
+    /**
+     * Heap (extraction mode only).
+     */
+    private T[] heap;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Growable array of entries added by one thread.
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    private static final class Buffer<T> {
+
+        /**
+         * Entries, in {@code [0, size)}.
+         */
+        private T[] entries;
+
+        /**
+         * Number of entries.
+         */
+        private int size;
+
+        /**
+         * No-argument constructor.
+         */
+        private Buffer() {
+            this.entries = newArray(INITIAL_CAPACITY);
+            this.size = 0;
+        }
+
+        /**
+         * Appends {@code x}.
+         *
+         * @param x
+         *            the entry
+         */
+        private void add(T x) {
+            if (this.size == this.entries.length) {
+                this.entries = Arrays.copyOf(this.entries, 2 * this.entries.length);
+            }
+            this.entries[this.size] = x;
+            this.size++;
+        }
+
+        /**
+         * Empties the buffer, releasing its array.
+         */
+        private void clear() {
+            this.entries = newArray(0);
+            this.size = 0;
+        }
+
+    }
+
+    /**
+     * Sifts the entry at index {@code top} of {@code array} down until the
+     * subtree rooted at {@code top}, through index {@code last}, is a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 0 <= top  and  last < |array|  and
+     * [both subtrees of top are heaps through index last]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * [the subtree rooted at top is a heap through index last]  and
+     * perms(array, #array)
+     * </pre>
+     */
+    private static <T> void siftDown(T[] array, int top, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+
+        T root = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last && order.compare(array[child + 1], array[child]) < 0) {
+                child++;
+            }
+            if (order.compare(array[child], root) >= 0) {
+                break;
+            }
+            array[hole] = array[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+    }
+
+    /**
+     * Checks if the entries of the given {@code array} at indices 0 through
+     * {@code last} form a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if {@code array[0, last]} is a heap; false otherwise
+     * @requires last < |array|
+     * @ensures isHeap = IS_HEAP(array, last, [relation computed by order.compare
+     *          method])
+     */
+    private static <T> boolean isHeap(T[] array, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        for (int i = 1; isHeap && i <= last; i++) {
+            isHeap = order.compare(array[(i - 1) / 2], array[i]) <= 0;
+        }
+        return isHeap;
+    }
+
+    /**
+     * Constructs and returns an array of {@code T} with all entries null.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (T[]) (new Object[capacity]);
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation. Must not be called while other threads may be
+     * adding entries.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * if $this.insertionMode then
+     *   $this.heapSize = 0
+     * else
+     *   [every buffer in $this.buffers is empty]  and
+     *   0 <= $this.heapSize <= |$this.heap|  and
+     *   [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+     *   IS_HEAP($this.heap, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        if (this.insertionMode) {
+            assert this.heapSize == 0
+                    : "Violation of: if $this.insertionMode then $this.heapSize = 0";
+        } else {
+            for (Buffer<T> b : this.buffers) {
+                assert b.size == 0 : "Violation of: if not $this.insertionMode then"
+                        + " [every buffer in $this.buffers is empty]";
+            }
+            assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+            assert this.heapSize <= this.heap.length
+                    : "Violation of: $this.heapSize <= |$this.heap|";
+            for (int i = 0; i < this.heap.length; i++) {
+                assert (this.heap[i] != null) == (i < this.heapSize) : ""
+                        + "Violation of: entries in $this.heap are not null exactly"
+                        + " in [0, $this.heapSize)";
+            }
+            assert isHeap(this.heap, this.heapSize - 1, this.machineOrder) : ""
+                    + "Violation of: if not $this.insertionMode then"
+                    + " IS_HEAP($this.heap, $this.heapSize - 1,"
+                    + " [relation computed by $this.machineOrder.compare method])";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * $this.buffers = {}  and
+     * $this.heapSize = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        final ConcurrentLinkedQueue<Buffer<T>> all = new ConcurrentLinkedQueue<>();
+        this.buffers = all;
+        this.localBuffer = new ThreadLocal<Buffer<T>>() {
+            @Override
+            protected Buffer<T> initialValue() {
+                Buffer<T> b = new Buffer<>();
+                all.add(b);
+                return b;
+            }
+        };
+        this.heap = newArray(0);
+        this.heapSize = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5c(Comparator<T> order) {
+        this.createNewRep(order);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class)
+                    .newInstance(this.machineOrder);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        /*
+         * Each producer thread's ThreadLocalMap keeps its old buffer until the
+         * thread dies, so empty the old buffers to let their arrays go now
+         */
+        for (Buffer<T> b : this.buffers) {
+            b.clear();
+        }
+        this.localBuffer.remove();
+        this.createNewRep(this.machineOrder);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5c<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5c<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5c<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5c<T> localSource = (SortingMachine5c<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.buffers = localSource.buffers;
+        this.localBuffer = localSource.localBuffer;
+        this.heap = localSource.heap;
+        this.heapSize = localSource.heapSize;
+        localSource.createNewRep(localSource.machineOrder);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * May be called by several threads at once.
+     */
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        /*
+         * Reads insertionMode directly rather than through isInInsertionMode,
+         * so that other threads' buffers are not checked while being updated
+         */
+        assert this.insertionMode : "Violation of: this.insertion_mode";
+
+        this.localBuffer.get().add(x);
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+
+        // Gather every thread's buffer into the heap array
+        int n = 0;
+        for (Buffer<T> b : this.buffers) {
+            n += b.size;
+        }
+        this.heap = newArray(n);
+        for (Buffer<T> b : this.buffers) {
+            System.arraycopy(b.entries, 0, this.heap, this.heapSize, b.size);
+            this.heapSize += b.size;
+            b.clear();
+        }
+
+        // Heapify bottom-up
+        for (int top = (this.heapSize - 2) / 2; top >= 0; top--) {
+            siftDown(this.heap, top, this.heapSize - 1, this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.heap[0];
+        this.heapSize--;
+        this.heap[0] = this.heap[this.heapSize];
+        this.heap[this.heapSize] = null;
+        if (this.heapSize > 0) {
+            siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        int result = this.heapSize;
+        for (Buffer<T> b : this.buffers) {
+            result += b.size;
+        }
+        assert this.conventionHolds();
+        return result;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5cIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5c}: the entries of each buffer in turn, then those
+     * of the heap.
+     */
+    private final class SortingMachine5cIterator implements Iterator<T> {
+
+        /**
+         * Buffers not yet started.
+         */
+        private final Iterator<Buffer<T>> bufferIterator;
+
+        /**
+         * Array being iterated over: a buffer's entries, or the heap.
+         */
+        private T[] current;
+
+        /**
+         * Number of entries in use in {@code current}.
+         */
+        private int currentSize;
+
+        /**
+         * Index of the next entry of {@code current}.
+         */
+        private int index;
+
+        /**
+         * True once {@code current} is the heap.
+         */
+        private boolean atHeap;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5cIterator() {
+            this.bufferIterator = SortingMachine5c.this.buffers.iterator();
+            this.current = SortingMachine5c.this.heap;
+            this.currentSize = 0;
+            this.index = 0;
+            this.atHeap = false;
+            assert SortingMachine5c.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.index == this.currentSize && !this.atHeap) {
+                if (this.bufferIterator.hasNext()) {
+                    Buffer<T> b = this.bufferIterator.next();
+                    this.current = b.entries;
+                    this.currentSize = b.size;
+                } else {
+                    this.current = SortingMachine5c.this.heap;
+                    this.currentSize = SortingMachine5c.this.heapSize;
+                    this.atHeap = true;
+                }
+                this.index = 0;
+            }
+            return this.index < this.currentSize;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = this.current[this.index];
+            this.index++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
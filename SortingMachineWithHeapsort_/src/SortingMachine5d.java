@@ -0,0 +1,583 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} represented as a growable array (using an embedding of
+ * heap sort on a d-ary heap), with implementations of primary methods. The
+ * children of the entry at index {@code i} are at indices {@code d * i + 1}
+ * through {@code d * i + d}, so a wider heap is shallower and each sift-down
+ * step scans {@code d} adjacent entries instead of following one more level.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_HEAP (
+ *   a: string of T,
+ *   d: integer,
+ *   stop: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i <= stop)
+ *    (r(a[(i - 1) / d], a[i]))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * $this.arity is in {2, 4, 8}  and
+ * 0 <= $this.heapSize <= |$this.heap|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.heapSize)
+ *   ([entry at position i in $this.heap is not null])  and
+ * for all i: integer
+ *     where ($this.heapSize <= i  and  i < |$this.heap|)
+ *   ([entry at position i in $this.heap is null])  and
+ * if not $this.insertionMode then
+ *   IS_HEAP($this.heap, $this.arity, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5d<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Arity used by the constructor from order only.
+     */
+    public static final int DEFAULT_ARITY = 4;
+
+    /**
+     * Capacity of the array allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Number of children of each entry in the heap.
+     */
+    private int arity;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: an unordered buffer in insertion mode, a heap in extraction
+     * mode.
+     */
+    private T[] heap;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Given an array that represents a complete d-ary tree and an index
+     * referring to the root of a subtree that would be a heap except for its
+     * root, sifts the root down to turn that whole subtree into a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete d-ary tree
+     * @param d
+     *            the number of children of each entry
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * d >= 2  and  0 <= top  and  last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])  and
+     * [every subtree rooted at a child of top is a heap through index last]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * [the subtree rooted at top is a heap through index last]  and
+     * perms(array, #array)  and
+     * [the entries of array outside that subtree are the same as in #array]
+     * </pre>
+     */
+    private static <T> void siftDown(T[] array, int d, int top, int last,
+            Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert d >= 2 : "Violation of: d >= 2";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+        for (int i = 0; i <= last; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: all entries in array[0, last] are not null";
+        }
+        /*
+         * Impractical to check the heap requires clause.
+         */
+
+        // Move a "hole" down from top, shifting the smallest child up each level
+        T root = array[top];
+        int hole = top;
+        int child = d * hole + 1;
+
+        while (child <= last) {
+
+            // find the smallest of the (at most d) children, which are adjacent
+            int lastChild = Math.min(child + d - 1, last);
+            int minChild = child;
+            for (int c = child + 1; c <= lastChild; c++) {
+                if (order.compare(array[c], array[minChild]) < 0) {
+                    minChild = c;
+                }
+            }
+
+            // stop once the root is no larger than the smallest child
+            if (order.compare(array[minChild], root) >= 0) {
+                break;
+            }
+
+            array[hole] = array[minChild];
+            hole = minChild;
+            child = d * hole + 1;
+        }
+
+        array[hole] = root;
+
+    }
+
+    /**
+     * Heapifies the entries of the given array at indices 0 through
+     * {@code last}, sifting every internal entry down from the last one back to
+     * the root.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete d-ary tree
+     * @param d
+     *            the number of children of each entry
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            the total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * d >= 2  and  last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * IS_HEAP(array, d, last, [relation computed by order.compare method])  and
+     * perms(array, #array)  and
+     * [the entries of array after index last are the same as in #array]
+     * </pre>
+     */
+    private static <T> void heapify(T[] array, int d, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert d >= 2 : "Violation of: d >= 2";
+        assert last < array.length : "Violation of: last < |array|";
+
+        for (int top = (last - 1) / d; top >= 0; top--) {
+            siftDown(array, d, top, last, order);
+        }
+
+    }
+
+    /**
+     * Checks if the entries of the given {@code array} at indices 0 through
+     * {@code last} form a d-ary heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete d-ary tree
+     * @param d
+     *            the number of children of each entry
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if {@code array[0, last]} is a heap; false otherwise
+     * @requires <pre>
+     * d >= 2  and  last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])
+     * </pre>
+     * @ensures <pre>
+     * isHeap = IS_HEAP(array, d, last, [relation computed by order.compare method])
+     * </pre>
+     */
+    private static <T> boolean isHeap(T[] array, int d, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert d >= 2 : "Violation of: d >= 2";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        for (int i = 1; isHeap && i <= last; i++) {
+            isHeap = order.compare(array[(i - 1) / d], array[i]) <= 0;
+        }
+        return isHeap;
+    }
+
+    /**
+     * Constructs and returns an array of {@code T} with all entries null.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (T[]) (new Object[capacity]);
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * $this.arity is in {2, 4, 8}  and
+     * 0 <= $this.heapSize <= |$this.heap|  and
+     * for all i: integer
+     *     where (0 <= i  and  i < $this.heapSize)
+     *   ([entry at position i in $this.heap is not null])  and
+     * for all i: integer
+     *     where ($this.heapSize <= i  and  i < |$this.heap|)
+     *   ([entry at position i in $this.heap is null])  and
+     * if not $this.insertionMode then
+     *   IS_HEAP($this.heap, $this.arity, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert isValidArity(this.arity) : "Violation of: $this.arity is in {2, 4, 8}";
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        for (int i = 0; i < this.heapSize; i++) {
+            assert this.heap[i] != null : ""
+                    + "Violation of: entries in $this.heap[0, $this.heapSize) not null";
+        }
+        for (int i = this.heapSize; i < this.heap.length; i++) {
+            assert this.heap[i] == null : ""
+                    + "Violation of: entries in $this.heap[$this.heapSize, |$this.heap|)"
+                    + " are null";
+        }
+        if (!this.insertionMode) {
+            assert isHeap(this.heap, this.arity, this.heapSize - 1, this.machineOrder)
+                    : "" + "Violation of: if not $this.insertionMode then"
+                            + " IS_HEAP($this.heap, $this.arity, $this.heapSize - 1,"
+                            + " [relation computed by $this.machineOrder.compare"
+                            + " method])";
+        }
+        return true;
+    }
+
+    /**
+     * Reports whether {@code d} is a supported heap arity.
+     *
+     * @param d
+     *            the arity
+     * @return true iff d is in {2, 4, 8}
+     * @ensures isValidArity = (d is in {2, 4, 8})
+     */
+    private static boolean isValidArity(int d) {
+        final int four = 4;
+        final int eight = 8;
+        return d == 2 || d == four || d == eight;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param d
+     *            the number of children of each entry in the heap
+     * @requires <pre>
+     * IS_TOTAL_PREORDER([relation computed by order.compare method]  and
+     * d is in {2, 4, 8}
+     * </pre>
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * $this.arity = d  and
+     * |$this.heap| = INITIAL_CAPACITY  and
+     * $this.heapSize = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order, int d) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.arity = d;
+        this.heap = newArray(INITIAL_CAPACITY);
+        this.heapSize = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order, using a heap of arity {@code DEFAULT_ARITY}.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5d(Comparator<T> order) {
+        this(order, DEFAULT_ARITY);
+    }
+
+    /**
+     * Constructor from order and heap arity.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param d
+     *            the number of children of each entry in the heap
+     * @throws IllegalArgumentException
+     *             if d is not in {2, 4, 8}
+     */
+    public SortingMachine5d(Comparator<T> order, int d) {
+        /*
+         * Checked even with assertion checking off: any other arity would
+         * silently break the index arithmetic of the heap
+         */
+        if (!isValidArity(d)) {
+            throw new IllegalArgumentException("Heap arity must be 2, 4, or 8: " + d);
+        }
+        this.createNewRep(order, d);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class, int.class)
+                    .newInstance(this.machineOrder, this.arity);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        // Keep the array so a reused machine does not allocate again
+        Arrays.fill(this.heap, 0, this.heapSize, null);
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5d<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5d<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5d<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5d<T> localSource = (SortingMachine5d<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.arity = localSource.arity;
+        this.heap = localSource.heap;
+        this.heapSize = localSource.heapSize;
+        localSource.createNewRep(localSource.machineOrder, localSource.arity);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // double the array when it is full
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+        }
+        this.heap[this.heapSize] = x;
+        this.heapSize++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        heapify(this.heap, this.arity, this.heapSize - 1, this.machineOrder);
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.heap[0];
+
+        // Move the last entry to the root, then sift it down
+        this.heapSize--;
+        this.heap[0] = this.heap[this.heapSize];
+        this.heap[this.heapSize] = null;
+        if (this.heapSize > 0) {
+            siftDown(this.heap, this.arity, 0, this.heapSize - 1, this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.heapSize;
+    }
+
+    /**
+     * Reports the number of children of each entry in the heap.
+     *
+     * @return the heap arity
+     * @ensures arity = [the arity given when this was constructed]
+     */
+    public final int arity() {
+        assert this.conventionHolds();
+        return this.arity;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5dIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5d}.
+     */
+    private final class SortingMachine5dIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5dIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5d.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5d.this.heapSize;
+            assert SortingMachine5d.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5d.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5d.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
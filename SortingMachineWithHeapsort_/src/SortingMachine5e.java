@@ -0,0 +1,1105 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * External-memory {@code SortingMachine}, for more entries than fit in memory.
+ * In insertion mode at most {@code budget} entries are held in memory; when
+ * the buffer is full it is sorted and spilled to a temporary "run" file,
+ * through an {@code EntrySerializer}. {@code changeToExtractionMode} sorts the
+ * entries still in the buffer and sets up a k-way merge of all the runs with a
+ * loser tree; {@code removeFirst} then reads the runs (through a
+ * {@code FileChannel}, a window at a time) as it goes, so the entries are
+ * never all loaded back in at once.
+ *
+ * <p>
+ * Run files are deleted as soon as they are used up, and by {@code clear}.
+ * Each run file is opened once, when it is first read, and closed just
+ * before it is deleted, so no open file keeps it from being deleted on any
+ * platform. The run files of a machine dropped before it is drained or
+ * cleared are closed and deleted once the machine is garbage collected.
+ * Failures to read or write run files are reported as
+ * {@code UncheckedIOException}.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * RUN_ENTRIES (
+ *   run: Run
+ *  ) : finite multiset of T is
+ *  [the entries of run not yet removed, including its head]
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * $this.budget > 0  and
+ * 0 <= $this.bufferSize <= $this.budget  and
+ * [entries in $this.buffer are not null exactly in [0, $this.bufferSize)]  and
+ * [the entries of every run in $this.runs are sorted by $this.machineOrder]  and
+ * $this.size = $this.bufferSize +
+ *   [sum of |RUN_ENTRIES(r)| over all runs r in $this.runs]  and
+ * if not $this.insertionMode then
+ *   $this.bufferSize = 0  and
+ *   [every run in $this.runs is open, with its first entry as its head]  and
+ *   [$this.tree is a loser tree over the heads of $this.runs, with the
+ *    index of the run holding the first head at $this.tree[0]]
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.buffer[0, $this.bufferSize)) union
+ *         [union of RUN_ENTRIES(r) over all runs r in $this.runs])
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5e<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of bytes of a run file read into memory at a time.
+     */
+    private static final int READ_WINDOW = 1 << 16;
+
+    /**
+     * Deletes the files of runs that become unreachable before they are
+     * used up or cleared.
+     */
+    private static final Cleaner RUN_FILE_CLEANER = Cleaner.create();
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Maximum number of entries buffered in memory in insertion mode.
+     */
+    private int budget;
+
+    /**
+     * Converts entries to and from the bytes in run files.
+     */
+    private EntrySerializer<T> serializer;
+
+    /**
+     * Directory for run files, or null for the default temporary directory.
+     */
+    private Path directory;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries not yet spilled (insertion mode only).
+     */
+    private T[] buffer;
+
+    /**
+     * Number of entries in use at the front of {@code buffer}.
+     */
+    private int bufferSize;
+
+    /**
+     * Sorted runs, in the order they were created.
+     */
+    private List<Run<T>> runs;
+
+    /**
+     * Loser tree over the runs (extraction mode only): {@code tree[0]} is the
+     * index of the run whose head comes first, and {@code tree[1, k)} hold
+     * the runs that lost the match at each internal node.
+     */
+    private int[] tree;
+
+    /**
+     * Number of entries in {@code this}.
+     */
+    private int size;
+
+    /**
+     * Sorted sequence of entries, read one at a time. The current entry is
+     * the run's "head".
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    private abstract static class Run<T> {
+
+        /**
+         * First entry not yet removed, or null if not open or used up.
+         */
+        private T head;
+
+        /**
+         * Number of entries not yet removed, including {@code head}.
+         */
+        private int remaining;
+
+        /**
+         * Constructor.
+         *
+         * @param length
+         *            number of entries in the run
+         */
+        Run(int length) {
+            this.head = null;
+            this.remaining = length;
+        }
+
+        /**
+         * Opens the run for reading and loads its head.
+         */
+        final void open() {
+            this.start();
+            if (this.remaining > 0) {
+                this.head = this.readNext();
+            }
+        }
+
+        /**
+         * Returns the head and moves on to the next entry.
+         *
+         * @return the former head
+         */
+        final T advance() {
+            T first = this.head;
+            this.remaining--;
+            if (this.remaining > 0) {
+                this.head = this.readNext();
+            } else {
+                this.head = null;
+                this.release();
+            }
+            return first;
+        }
+
+        /**
+         * Returns the head, or null if the run is not open or used up.
+         *
+         * @return the head
+         */
+        final T head() {
+            return this.head;
+        }
+
+        /**
+         * Returns the number of entries not yet removed.
+         *
+         * @return the number of entries not yet removed
+         */
+        final int remaining() {
+            return this.remaining;
+        }
+
+        /**
+         * Returns an iterator over the entries not yet removed, in order,
+         * without changing the run.
+         *
+         * @return the iterator
+         */
+        final Iterator<T> entries() {
+            Iterator<T> result;
+            if (this.remaining == 0) {
+                result = Collections.emptyIterator();
+            } else if (this.head == null) {
+                result = this.unread(this.remaining);
+            } else {
+                List<Iterator<T>> parts = new ArrayList<>();
+                parts.add(Collections.singletonList(this.head).iterator());
+                parts.add(this.unread(this.remaining - 1));
+                result = new ChainIterator<>(parts);
+            }
+            return result;
+        }
+
+        /**
+         * Prepares the run for {@code readNext}.
+         */
+        abstract void start();
+
+        /**
+         * Reads the next entry of the run.
+         *
+         * @return the next entry
+         */
+        abstract T readNext();
+
+        /**
+         * Returns an iterator over the next {@code count} entries that
+         * {@code readNext} would return, without reading them.
+         *
+         * @param count
+         *            number of entries
+         * @return the iterator
+         */
+        abstract Iterator<T> unread(int count);
+
+        /**
+         * Releases the resources held by the run; it must not be read again.
+         */
+        abstract void release();
+
+    }
+
+    /**
+     * Run held in memory: a sorted range of an array.
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    private static final class MemoryRun<T> extends Run<T> {
+
+        /**
+         * The array.
+         */
+        private final T[] array;
+
+        /**
+         * Index of the next entry to read.
+         */
+        private int next;
+
+        /**
+         * Constructor.
+         *
+         * @param array
+         *            the array, sorted in {@code [0, length)}
+         * @param length
+         *            number of entries
+         */
+        MemoryRun(T[] array, int length) {
+            super(length);
+            this.array = array;
+            this.next = 0;
+        }
+
+        @Override
+        void start() {
+            this.next = 0;
+        }
+
+        @Override
+        T readNext() {
+            T x = this.array[this.next];
+            this.array[this.next] = null;
+            this.next++;
+            return x;
+        }
+
+        @Override
+        Iterator<T> unread(int count) {
+            return Arrays.asList(this.array).subList(this.next, this.next + count)
+                    .iterator();
+        }
+
+        @Override
+        void release() {
+            // nothing to release: entries are nulled out as they are read
+        }
+
+    }
+
+    /**
+     * Run spilled to a file by an {@code EntrySerializer}.
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    private static final class FileRun<T> extends Run<T> {
+
+        /**
+         * Converts bytes in the file back to entries.
+         */
+        private final EntrySerializer<T> serializer;
+
+        /**
+         * The run file, opened when first read.
+         */
+        private final RunFile file;
+
+        /**
+         * Closes and deletes the file, when the run is released or becomes
+         * unreachable.
+         */
+        private final Cleaner.Cleanable deletion;
+
+        /**
+         * Bytes of the file, read a window at a time.
+         */
+        private WindowInputStream bytes;
+
+        /**
+         * {@code bytes}, decoded.
+         */
+        private DataInputStream in;
+
+        /**
+         * Constructor.
+         *
+         * @param path
+         *            the run file
+         * @param length
+         *            number of entries in the file
+         * @param serializer
+         *            converts bytes in the file back to entries
+         */
+        FileRun(Path path, int length, EntrySerializer<T> serializer) {
+            super(length);
+            this.serializer = serializer;
+            this.file = new RunFile(path);
+            this.deletion = RUN_FILE_CLEANER.register(this, this.file);
+        }
+
+        @Override
+        void start() {
+            this.bytes = new WindowInputStream(this.file.channel(), 0);
+            this.in = new DataInputStream(this.bytes);
+        }
+
+        @Override
+        T readNext() {
+            try {
+                return this.serializer.read(this.in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        Iterator<T> unread(int count) {
+            long position = 0;
+            if (this.bytes != null) {
+                position = this.bytes.position();
+            }
+            return new FileRunIterator<>(
+                    new DataInputStream(
+                            new WindowInputStream(this.file.channel(), position)),
+                    count, this.serializer);
+        }
+
+        @Override
+        void release() {
+            this.bytes = null;
+            this.in = null;
+            this.deletion.clean();
+        }
+
+    }
+
+    /**
+     * A run file, opened for reading at most once, and the cleanup action
+     * that closes and deletes it. It must not refer to the run, or the run
+     * would never become unreachable.
+     */
+    private static final class RunFile implements Runnable {
+
+        /**
+         * The file.
+         */
+        private final Path path;
+
+        /**
+         * The file, open for reading, or null if not opened yet.
+         */
+        private FileChannel channel;
+
+        /**
+         * Constructor.
+         *
+         * @param path
+         *            the file
+         */
+        RunFile(Path path) {
+            this.path = path;
+            this.channel = null;
+        }
+
+        /**
+         * Returns the file open for reading, opening it on the first call.
+         *
+         * @return the open file
+         */
+        FileChannel channel() {
+            if (this.channel == null) {
+                try {
+                    this.channel = FileChannel.open(this.path, StandardOpenOption.READ);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return this.channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (this.channel != null) {
+                    this.channel.close();
+                }
+                Files.deleteIfExists(this.path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+    /**
+     * Iterator over a given number of entries read from a run file.
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    private static final class FileRunIterator<T> implements Iterator<T> {
+
+        /**
+         * The bytes of the run file from the first entry to return.
+         */
+        private final DataInputStream in;
+
+        /**
+         * Converts bytes back to entries.
+         */
+        private final EntrySerializer<T> serializer;
+
+        /**
+         * Number of entries still to return.
+         */
+        private int count;
+
+        /**
+         * Constructor.
+         *
+         * @param in
+         *            the bytes of the run file from the first entry to return
+         * @param count
+         *            number of entries to return
+         * @param serializer
+         *            converts bytes back to entries
+         */
+        FileRunIterator(DataInputStream in, int count, EntrySerializer<T> serializer) {
+            this.in = in;
+            this.count = count;
+            this.serializer = serializer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.count > 0;
+        }
+
+        @Override
+        public T next() {
+            if (this.count == 0) {
+                throw new NoSuchElementException();
+            }
+            this.count--;
+            try {
+                return this.serializer.read(this.in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+    /**
+     * Iterator over the entries of several iterators, one after the other.
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    private static final class ChainIterator<T> implements Iterator<T> {
+
+        /**
+         * The iterators.
+         */
+        private final List<Iterator<T>> parts;
+
+        /**
+         * Index of the iterator in use.
+         */
+        private int current;
+
+        /**
+         * Constructor.
+         *
+         * @param parts
+         *            the iterators, in order
+         */
+        ChainIterator(List<Iterator<T>> parts) {
+            this.parts = parts;
+            this.current = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.current < this.parts.size()
+                    && !this.parts.get(this.current).hasNext()) {
+                this.current++;
+            }
+            return this.current < this.parts.size();
+        }
+
+        @Override
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.parts.get(this.current).next();
+        }
+
+    }
+
+    /**
+     * {@code InputStream} over an open file from a given position, reading at
+     * most {@code READ_WINDOW} bytes of it into memory at a time. It reads at
+     * explicit positions, so several streams may share the file; closing the
+     * file is left to its owner.
+     */
+    private static final class WindowInputStream extends InputStream {
+
+        /**
+         * The file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Length of the file.
+         */
+        private final long length;
+
+        /**
+         * Position in the file of the next byte to read.
+         */
+        private long position;
+
+        /**
+         * Bytes of the file starting at {@code position}, ready to be read.
+         */
+        private final ByteBuffer window;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            the file, open for reading
+         * @param position
+         *            position in the file of the first byte to read
+         */
+        WindowInputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+            try {
+                this.length = channel.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.window = ByteBuffer.allocate(
+                    (int) Math.min(READ_WINDOW, Math.max(this.length - position, 1)));
+            this.window.limit(0);
+        }
+
+        /**
+         * Returns the position in the file of the next byte to read.
+         *
+         * @return the position
+         */
+        long position() {
+            return this.position;
+        }
+
+        /**
+         * Makes sure {@code window} has bytes left to read, if the file does.
+         *
+         * @return true iff there are bytes left to read
+         * @throws IOException
+         *             if reading the file fails
+         */
+        private boolean fill() throws IOException {
+            if (!this.window.hasRemaining()) {
+                if (this.position >= this.length) {
+                    return false;
+                }
+                this.window.clear();
+                int n = 0;
+                while (n >= 0 && this.window.hasRemaining()) {
+                    n = this.channel.read(this.window,
+                            this.position + this.window.position());
+                }
+                this.window.flip();
+                if (!this.window.hasRemaining()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!this.fill()) {
+                return -1;
+            }
+            this.position++;
+            return this.window.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.fill()) {
+                return -1;
+            }
+            int n = Math.min(len, this.window.remaining());
+            this.window.get(b, off, n);
+            this.position += n;
+            return n;
+        }
+
+    }
+
+    /**
+     * Reports whether the head of run {@code a} comes before the head of run
+     * {@code b}; used-up runs come after everything, and ties go to the run
+     * created first, so equal entries come out in the order they were added.
+     * The index {@code runs.size()} stands for a virtual run that comes
+     * before everything, used to build the loser tree.
+     *
+     * @param a
+     *            index of one run
+     * @param b
+     *            index of the other run
+     * @return true iff run {@code a}'s head comes before run {@code b}'s
+     */
+    private boolean beats(int a, int b) {
+        int k = this.runs.size();
+        boolean result;
+        if (a == k || b == k) {
+            result = a == k;
+        } else {
+            T x = this.runs.get(a).head();
+            T y = this.runs.get(b).head();
+            if (x == null || y == null) {
+                result = y == null && (x != null || a < b);
+            } else {
+                int c = this.machineOrder.compare(x, y);
+                result = c < 0 || (c == 0 && a < b);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replays the matches on the path from run {@code s} to the root of the
+     * loser tree after the head of run {@code s} changed.
+     *
+     * @param s
+     *            index of the run whose head changed
+     */
+    private void replay(int s) {
+        int k = this.runs.size();
+        int winner = s;
+        for (int t = (s + k) / 2; t > 0; t /= 2) {
+            if (this.beats(this.tree[t], winner)) {
+                int loser = winner;
+                winner = this.tree[t];
+                this.tree[t] = loser;
+            }
+        }
+        this.tree[0] = winner;
+    }
+
+    /**
+     * Sorts the buffered entries and spills them to a new run file.
+     */
+    private void spill() {
+        Arrays.sort(this.buffer, 0, this.bufferSize, this.machineOrder);
+        try {
+            Path path;
+            if (this.directory == null) {
+                path = Files.createTempFile("sortingmachine", ".run");
+            } else {
+                path = Files.createTempFile(this.directory, "sortingmachine", ".run");
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(path)))) {
+                for (int i = 0; i < this.bufferSize; i++) {
+                    this.serializer.write(this.buffer[i], out);
+                }
+            }
+            this.runs.add(new FileRun<>(path, this.bufferSize, this.serializer));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Arrays.fill(this.buffer, 0, this.bufferSize, null);
+        this.bufferSize = 0;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * $this.budget > 0  and
+     * 0 <= $this.bufferSize <= $this.budget  and
+     * [entries in $this.buffer are not null exactly in [0, $this.bufferSize)]  and
+     * $this.size = $this.bufferSize +
+     *   [sum of |RUN_ENTRIES(r)| over all runs r in $this.runs]  and
+     * if not $this.insertionMode then
+     *   $this.bufferSize = 0  and
+     *   [$this.tree[0] is the index of a run holding the first head]
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert this.budget > 0 : "Violation of: $this.budget > 0";
+        assert 0 <= this.bufferSize : "Violation of: 0 <= $this.bufferSize";
+        assert this.bufferSize <= this.budget
+                : "Violation of: $this.bufferSize <= $this.budget";
+        if (this.insertionMode) {
+            for (int i = 0; i < this.buffer.length; i++) {
+                assert (this.buffer[i] != null) == (i < this.bufferSize) : ""
+                        + "Violation of: entries in $this.buffer are not null exactly"
+                        + " in [0, $this.bufferSize)";
+            }
+        }
+        int total = this.bufferSize;
+        for (Run<T> r : this.runs) {
+            total += r.remaining();
+        }
+        assert this.size == total : "Violation of: $this.size = $this.bufferSize +"
+                + " [sum of |RUN_ENTRIES(r)| over all runs r in $this.runs]";
+        if (!this.insertionMode) {
+            assert this.bufferSize == 0 : ""
+                    + "Violation of: if not $this.insertionMode then $this.bufferSize = 0";
+            for (int i = 0; i < this.runs.size() && this.size > 0; i++) {
+                assert !this.beats(i, this.tree[0]) : ""
+                        + "Violation of: if not $this.insertionMode then"
+                        + " [$this.tree[0] is the index of a run holding the first head]";
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param maxBuffered
+     *            maximum number of entries buffered in memory
+     * @param entrySerializer
+     *            converts entries to and from bytes
+     * @param runDirectory
+     *            directory for run files, or null for the default temporary
+     *            directory
+     * @requires <pre>
+     * IS_TOTAL_PREORDER([relation computed by order.compare method]  and
+     * maxBuffered > 0
+     * </pre>
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * $this.budget = maxBuffered  and
+     * $this.serializer = entrySerializer  and
+     * $this.directory = runDirectory  and
+     * $this.bufferSize = 0  and  $this.runs = <>  and  $this.size = 0
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep(Comparator<T> order, int maxBuffered,
+            EntrySerializer<T> entrySerializer, Path runDirectory) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.budget = maxBuffered;
+        this.serializer = entrySerializer;
+        this.directory = runDirectory;
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        this.buffer = (T[]) (new Object[maxBuffered]);
+        this.bufferSize = 0;
+        this.runs = new ArrayList<>();
+        this.tree = null;
+        this.size = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order, memory budget, and serializer, spilling runs to
+     * the default temporary directory.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param budget
+     *            maximum number of entries buffered in memory
+     * @param serializer
+     *            converts entries to and from bytes
+     * @requires budget > 0
+     */
+    public SortingMachine5e(Comparator<T> order, int budget,
+            EntrySerializer<T> serializer) {
+        this(order, budget, serializer, null);
+    }
+
+    /**
+     * Constructor from order, memory budget, serializer, and the directory
+     * for run files.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param budget
+     *            maximum number of entries buffered in memory
+     * @param serializer
+     *            converts entries to and from bytes
+     * @param directory
+     *            directory for run files, or null for the default temporary
+     *            directory
+     * @requires budget > 0
+     */
+    public SortingMachine5e(Comparator<T> order, int budget,
+            EntrySerializer<T> serializer, Path directory) {
+        assert budget > 0 : "Violation of: budget > 0";
+        assert serializer != null : "Violation of: serializer is not null";
+        this.createNewRep(order, budget, serializer, directory);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass()
+                    .getConstructor(Comparator.class, int.class, EntrySerializer.class,
+                            Path.class)
+                    .newInstance(this.machineOrder, this.budget, this.serializer,
+                            this.directory);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        for (Run<T> r : this.runs) {
+            r.release();
+        }
+        this.createNewRep(this.machineOrder, this.budget, this.serializer,
+                this.directory);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5e<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5e<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5e<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5e<T> localSource = (SortingMachine5e<T>) source;
+        this.clear();
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.budget = localSource.budget;
+        this.serializer = localSource.serializer;
+        this.directory = localSource.directory;
+        this.buffer = localSource.buffer;
+        this.bufferSize = localSource.bufferSize;
+        this.runs = localSource.runs;
+        this.tree = localSource.tree;
+        this.size = localSource.size;
+        localSource.createNewRep(localSource.machineOrder, localSource.budget,
+                localSource.serializer, localSource.directory);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        if (this.bufferSize == this.budget) {
+            this.spill();
+        }
+        this.buffer[this.bufferSize] = x;
+        this.bufferSize++;
+        this.size++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+
+        // The entries still buffered become the last run, kept in memory
+        if (this.bufferSize > 0) {
+            Arrays.sort(this.buffer, 0, this.bufferSize, this.machineOrder);
+            this.runs.add(new MemoryRun<>(this.buffer, this.bufferSize));
+            this.bufferSize = 0;
+        }
+        for (Run<T> r : this.runs) {
+            r.open();
+        }
+
+        // Build the loser tree: start with the virtual run k (which beats
+        // everything) at every internal node, then play in each real run
+        int k = this.runs.size();
+        this.tree = new int[Math.max(k, 1)];
+        Arrays.fill(this.tree, k);
+        for (int s = k - 1; s >= 0; s--) {
+            this.replay(s);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        int winner = this.tree[0];
+        T first = this.runs.get(winner).advance();
+        this.replay(winner);
+        this.size--;
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        List<Iterator<T>> parts = new ArrayList<>();
+        for (Run<T> r : this.runs) {
+            parts.add(r.entries());
+        }
+        parts.add(Arrays.asList(this.buffer).subList(0, this.bufferSize).iterator());
+        return new SortingMachine5eIterator(new ChainIterator<>(parts));
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5e}.
+     */
+    private final class SortingMachine5eIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator.
+         */
+        private final Iterator<T> iterator;
+
+        /**
+         * Constructor.
+         *
+         * @param iterator
+         *            iterator over the entries of the runs and the buffer
+         */
+        private SortingMachine5eIterator(Iterator<T> iterator) {
+            this.iterator = iterator;
+            assert SortingMachine5e.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            return this.iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
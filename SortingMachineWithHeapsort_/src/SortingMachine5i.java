@@ -0,0 +1,842 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} represented as an indexed heap: the growable array
+ * of {@code SortingMachine5a}, plus an index from <em>handles</em> to heap
+ * positions, so that an entry already in the machine can be found, changed,
+ * or removed in O(log n) time.
+ *
+ * <p>
+ * {@link #addWithHandle(Object)} adds an entry and returns its handle, a
+ * non-negative {@code int}. A handle stays valid, and refers to the same
+ * entry wherever the heap moves it, until that entry is removed (by
+ * {@code removeFirst} or {@link #remove(int)}). The handle of a removed entry
+ * is then free to be given to an entry added later, so clients must not use
+ * it again; this way the handle index never grows past the largest number of
+ * entries the machine has held at once. {@link #changeKey(int, Object)},
+ * {@link #remove(int)}, and {@link #contains(int)} take a handle. As with
+ * {@code SortingMachine5q}, {@code add} may also be called in extraction mode.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * SUBTREE_IS_HEAP (
+ *   a: string of T,
+ *   start: integer,
+ *   stop: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  [the subtree of a (when a is interpreted as a complete binary tree) rooted
+ *   at index start and only through entry stop of a satisfies the heap
+ *   ordering property according to the relation r]
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.heapSize <= |$this.heap| = |$this.handleAt|  and
+ * 0 <= $this.nextHandle <= |$this.positionOf| = |$this.freeHandles|  and
+ * $this.heapSize + $this.freeCount = $this.nextHandle  and
+ * [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.heapSize)
+ *   (0 <= $this.handleAt[i] < $this.nextHandle  and
+ *    $this.positionOf[$this.handleAt[i]] = i)  and
+ * for all h: integer
+ *     where (0 <= h  and  h < |$this.positionOf|)
+ *   ($this.positionOf[h] = -1  or
+ *    (h < $this.nextHandle  and  0 <= $this.positionOf[h] < $this.heapSize))  and
+ * [$this.freeHandles[0, $this.freeCount) are the handles h < $this.nextHandle
+ *  with $this.positionOf[h] = -1, each once]  and
+ * if not $this.insertionMode then
+ *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))  and
+ * [the entry with handle h is $this.heap[$this.positionOf[h]], if
+ *  $this.positionOf[h] /= -1; otherwise no entry has handle h]
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5i<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the arrays allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Position recorded for a handle whose entry is not in the machine.
+     */
+    private static final int ABSENT = -1;
+
+    /**
+     * Largest length the arrays are grown to; some JVMs cannot allocate
+     * arrays quite as long as {@code Integer.MAX_VALUE}.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: an unordered buffer in insertion mode, a heap in extraction
+     * mode.
+     */
+    private T[] heap;
+
+    /**
+     * Handle of the entry at each position of {@code heap}.
+     */
+    private int[] handleAt;
+
+    /**
+     * Position in {@code heap} of the entry with each handle, or
+     * {@link #ABSENT}.
+     */
+    private int[] positionOf;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Number of handles given out since the last clear, free or not: the
+     * handle to be given to the next entry added if none is free.
+     */
+    private int nextHandle;
+
+    /**
+     * Handles of removed entries, free to be given out again: a stack whose
+     * top is at {@code freeCount - 1}.
+     */
+    private int[] freeHandles;
+
+    /**
+     * Number of handles in use at the front of {@code freeHandles}.
+     */
+    private int freeCount;
+
+    /**
+     * Returns the length to grow a full array of length {@code length} to.
+     *
+     * @param length
+     *            the length of the full array
+     * @return the new length
+     * @requires length > 0
+     * @ensures grownLength = min(2 * length, MAX_CAPACITY)
+     */
+    private static int grownLength(int length) {
+        if (length >= MAX_CAPACITY) {
+            throw new OutOfMemoryError("Too many entries for a SortingMachine5i");
+        }
+        return (int) Math.min(2L * length, MAX_CAPACITY);
+    }
+
+    /**
+     * Exchanges the entries at positions {@code i} and {@code j} of
+     * {@code $this.heap}, together with their handles, and records their new
+     * positions.
+     *
+     * @param i
+     *            one position
+     * @param j
+     *            the other position
+     * @updates $this.heap, $this.handleAt, $this.positionOf
+     * @requires 0 <= i < $this.heapSize and 0 <= j < $this.heapSize
+     * @ensures <pre>
+     * $this.heap = [#$this.heap with entries at i and j exchanged]  and
+     * $this.handleAt = [#$this.handleAt with entries at i and j exchanged]  and
+     * $this.positionOf[$this.handleAt[i]] = i  and
+     * $this.positionOf[$this.handleAt[j]] = j
+     * </pre>
+     */
+    private void exchangeEntries(int i, int j) {
+        assert 0 <= i : "Violation of: 0 <= i";
+        assert i < this.heapSize : "Violation of: i < $this.heapSize";
+        assert 0 <= j : "Violation of: 0 <= j";
+        assert j < this.heapSize : "Violation of: j < $this.heapSize";
+
+        if (i != j) {
+            T temp = this.heap[i];
+            this.heap[i] = this.heap[j];
+            this.heap[j] = temp;
+            int handle = this.handleAt[i];
+            this.handleAt[i] = this.handleAt[j];
+            this.handleAt[j] = handle;
+            this.positionOf[this.handleAt[i]] = i;
+            this.positionOf[this.handleAt[j]] = j;
+        }
+
+    }
+
+    /**
+     * Moves the entry at position {@code from} of {@code $this.heap}, with its
+     * handle, to position {@code to}, recording its new position.
+     *
+     * @param from
+     *            the old position
+     * @param to
+     *            the new position
+     * @updates $this.heap, $this.handleAt, $this.positionOf
+     * @ensures <pre>
+     * $this.heap[to] = #$this.heap[from]  and
+     * $this.handleAt[to] = #$this.handleAt[from]  and
+     * $this.positionOf[$this.handleAt[to]] = to
+     * </pre>
+     */
+    private void moveEntry(int from, int to) {
+        this.heap[to] = this.heap[from];
+        this.handleAt[to] = this.handleAt[from];
+        this.positionOf[this.handleAt[to]] = to;
+    }
+
+    /**
+     * Sifts the entry at position {@code top} of {@code $this.heap} down
+     * until the subtree rooted at {@code top} is a heap, keeping
+     * {@code $this.positionOf} in sync.
+     *
+     * @param top
+     *            the position of the root of the "subtree"
+     * @updates $this.heap, $this.handleAt, $this.positionOf
+     * @requires <pre>
+     * 0 <= top < $this.heapSize  and
+     * SUBTREE_IS_HEAP($this.heap, 2 * top + 1, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])  and
+     * SUBTREE_IS_HEAP($this.heap, 2 * top + 2, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP($this.heap, top, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])  and
+     * [the entries and handles of the subtree rooted at top are permuted
+     *  together, and the other entries are unchanged]
+     * </pre>
+     */
+    private void siftDown(int top) {
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert top < this.heapSize : "Violation of: top < $this.heapSize";
+
+        /*
+         * Move a "hole" down from top, as in SortingMachine5a, moving each
+         * entry's handle with it
+         */
+        T[] array = this.heap;
+        int last = this.heapSize - 1;
+        T root = array[top];
+        int rootHandle = this.handleAt[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last
+                    && this.machineOrder.compare(array[child + 1], array[child]) < 0) {
+                child++;
+            }
+            if (this.machineOrder.compare(array[child], root) >= 0) {
+                break;
+            }
+            this.moveEntry(child, hole);
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+        this.handleAt[hole] = rootHandle;
+        this.positionOf[rootHandle] = hole;
+
+    }
+
+    /**
+     * Sifts the entry at position {@code bottom} of {@code $this.heap} up
+     * until {@code $this.heap} is a heap through {@code $this.heapSize - 1},
+     * keeping {@code $this.positionOf} in sync.
+     *
+     * @param bottom
+     *            the position of the entry to sift up
+     * @updates $this.heap, $this.handleAt, $this.positionOf
+     * @requires <pre>
+     * 0 <= bottom < $this.heapSize  and
+     * [$this.heap[0, $this.heapSize) would be a heap if the entry at bottom
+     *  were no smaller than its parent]
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])  and
+     * [the entries and handles are permuted together]
+     * </pre>
+     */
+    private void siftUp(int bottom) {
+        assert 0 <= bottom : "Violation of: 0 <= bottom";
+        assert bottom < this.heapSize : "Violation of: bottom < $this.heapSize";
+
+        T[] array = this.heap;
+        T entry = array[bottom];
+        int entryHandle = this.handleAt[bottom];
+        int hole = bottom;
+
+        while (hole > 0) {
+            int parent = (hole - 1) / 2;
+            if (this.machineOrder.compare(array[parent], entry) <= 0) {
+                break;
+            }
+            this.moveEntry(parent, hole);
+            hole = parent;
+        }
+
+        array[hole] = entry;
+        this.handleAt[hole] = entryHandle;
+        this.positionOf[entryHandle] = hole;
+
+    }
+
+    /**
+     * Restores the heap ordering property after the entry at position
+     * {@code i} has been replaced, by sifting it up or down as needed.
+     *
+     * @param i
+     *            the position of the replaced entry
+     * @updates $this.heap, $this.handleAt, $this.positionOf
+     * @requires <pre>
+     * 0 <= i < $this.heapSize  and
+     * [$this.heap[0, $this.heapSize) is a heap except possibly at i]
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private void restoreHeap(int i) {
+        if (i > 0
+                && this.machineOrder.compare(this.heap[(i - 1) / 2], this.heap[i]) > 0) {
+            this.siftUp(i);
+        } else {
+            this.siftDown(i);
+        }
+    }
+
+    /**
+     * Constructs and returns an array of {@code T} with all entries null.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (T[]) (new Object[capacity]);
+    }
+
+    /**
+     * Checks if the subtree of the given {@code array} rooted at the given
+     * {@code top} is a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if the subtree of the given {@code array} rooted at the
+     *         given {@code top} is a heap; false otherwise
+     * @requires 0 <= top and last < |array|
+     * @ensures <pre>
+     * isHeap = SUBTREE_IS_HEAP(array, top, last,
+     *     [relation computed by order.compare method])
+     * </pre>
+     */
+    private static <T> boolean isHeap(T[] array, int top, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+
+        int left = 2 * top + 1;
+        boolean isHeap = true;
+        if (left <= last) {
+            isHeap = (order.compare(array[top], array[left]) <= 0)
+                    && isHeap(array, left, last, order);
+            int right = left + 1;
+            if (isHeap && (right <= last)) {
+                isHeap = (order.compare(array[top], array[right]) <= 0)
+                        && isHeap(array, right, last, order);
+            }
+        }
+        return isHeap;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.heapSize <= |$this.heap| = |$this.handleAt|  and
+     * 0 <= $this.nextHandle <= |$this.positionOf| = |$this.freeHandles|  and
+     * $this.heapSize + $this.freeCount = $this.nextHandle  and
+     * [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+     * for all i: integer
+     *     where (0 <= i  and  i < $this.heapSize)
+     *   (0 <= $this.handleAt[i] < $this.nextHandle  and
+     *    $this.positionOf[$this.handleAt[i]] = i)  and
+     * for all h: integer
+     *     where (0 <= h  and  h < |$this.positionOf|)
+     *   ($this.positionOf[h] = -1  or
+     *    (h < $this.nextHandle  and  0 <= $this.positionOf[h] < $this.heapSize))  and
+     * [$this.freeHandles[0, $this.freeCount) are the handles h < $this.nextHandle
+     *  with $this.positionOf[h] = -1, each once]  and
+     * if not $this.insertionMode then
+     *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        assert this.heap.length == this.handleAt.length
+                : "Violation of: |$this.heap| = |$this.handleAt|";
+        assert 0 <= this.nextHandle : "Violation of: 0 <= $this.nextHandle";
+        assert this.nextHandle <= this.positionOf.length
+                : "Violation of: $this.nextHandle <= |$this.positionOf|";
+        assert this.positionOf.length == this.freeHandles.length
+                : "Violation of: |$this.positionOf| = |$this.freeHandles|";
+        assert this.heapSize + this.freeCount == this.nextHandle
+                : "Violation of: $this.heapSize + $this.freeCount = $this.nextHandle";
+        for (int i = 0; i < this.heap.length; i++) {
+            assert (this.heap[i] != null) == (i < this.heapSize) : ""
+                    + "Violation of: entries in $this.heap are not null exactly"
+                    + " in [0, $this.heapSize)";
+        }
+        for (int i = 0; i < this.heapSize; i++) {
+            int h = this.handleAt[i];
+            assert 0 <= h && h < this.nextHandle
+                    : "Violation of: 0 <= $this.handleAt[i] < $this.nextHandle";
+            assert this.positionOf[h] == i
+                    : "Violation of: $this.positionOf[$this.handleAt[i]] = i";
+        }
+        for (int h = 0; h < this.positionOf.length; h++) {
+            int p = this.positionOf[h];
+            assert p == ABSENT || (h < this.nextHandle && 0 <= p && p < this.heapSize)
+                    : "" + "Violation of: $this.positionOf[h] = -1  or  (h <"
+                            + " $this.nextHandle  and  0 <= $this.positionOf[h] <"
+                            + " $this.heapSize)";
+        }
+        boolean[] isFree = new boolean[this.nextHandle];
+        for (int i = 0; i < this.freeCount; i++) {
+            int h = this.freeHandles[i];
+            assert 0 <= h && h < this.nextHandle && !isFree[h]
+                    && this.positionOf[h] == ABSENT : ""
+                            + "Violation of: [$this.freeHandles[0, $this.freeCount) are"
+                            + " the handles h < $this.nextHandle with"
+                            + " $this.positionOf[h] = -1, each once]";
+            isFree[h] = true;
+        }
+        if (!this.insertionMode) {
+            assert isHeap(this.heap, 0, this.heapSize - 1, this.machineOrder) : ""
+                    + "Violation of: if not $this.insertionMode then"
+                    + " SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,"
+                    + " [relation computed by $this.machineOrder.compare method])";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * |$this.heap| = |$this.handleAt| = |$this.positionOf| =
+     *   |$this.freeHandles| = INITIAL_CAPACITY  and
+     * $this.heapSize = 0  and
+     * $this.nextHandle = 0  and  $this.freeCount = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.heap = newArray(INITIAL_CAPACITY);
+        this.handleAt = new int[INITIAL_CAPACITY];
+        this.positionOf = new int[INITIAL_CAPACITY];
+        Arrays.fill(this.positionOf, ABSENT);
+        this.heapSize = 0;
+        this.nextHandle = 0;
+        this.freeHandles = new int[INITIAL_CAPACITY];
+        this.freeCount = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5i(Comparator<T> order) {
+        this.createNewRep(order);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class)
+                    .newInstance(this.machineOrder);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.machineOrder);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5i<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5i<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5i<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5i<T> localSource = (SortingMachine5i<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.heap = localSource.heap;
+        this.handleAt = localSource.handleAt;
+        this.positionOf = localSource.positionOf;
+        this.heapSize = localSource.heapSize;
+        this.nextHandle = localSource.nextHandle;
+        this.freeHandles = localSource.freeHandles;
+        this.freeCount = localSource.freeCount;
+        localSource.createNewRep(localSource.machineOrder);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Unlike the {@code SortingMachine} contract, {@code this} may also be in
+     * extraction mode. Same as {@link #addWithHandle(Object)}, discarding the
+     * handle.
+     *
+     * @requires <pre>
+     * [x is not null]
+     * </pre>
+     */
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        this.addWithHandle(x);
+    }
+
+    /**
+     * Adds {@code x} to the contents of {@code this} and returns a handle for
+     * it. {@code this} may be in either mode.
+     *
+     * @param x
+     *            the entry to be added
+     * @return the handle of {@code x} in {@code this}
+     * @updates this.contents
+     * @ensures <pre>
+     * this.contents = #this.contents union {x}  and
+     * [addWithHandle is not the handle of any entry of #this.contents, and
+     *  refers to x]
+     * </pre>
+     */
+    public final int addWithHandle(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        // double the arrays when they are full
+        if (this.heapSize == this.heap.length) {
+            int length = grownLength(this.heap.length);
+            this.heap = Arrays.copyOf(this.heap, length);
+            this.handleAt = Arrays.copyOf(this.handleAt, length);
+        }
+
+        // Reuse a free handle if there is one; only then is a new one needed
+        int handle;
+        if (this.freeCount > 0) {
+            this.freeCount--;
+            handle = this.freeHandles[this.freeCount];
+        } else {
+            if (this.nextHandle == this.positionOf.length) {
+                int oldLength = this.positionOf.length;
+                int length = grownLength(oldLength);
+                this.positionOf = Arrays.copyOf(this.positionOf, length);
+                Arrays.fill(this.positionOf, oldLength, length, ABSENT);
+                this.freeHandles = Arrays.copyOf(this.freeHandles, length);
+            }
+            handle = this.nextHandle;
+            this.nextHandle++;
+        }
+        this.heap[this.heapSize] = x;
+        this.handleAt[this.heapSize] = handle;
+        this.positionOf[handle] = this.heapSize;
+        this.heapSize++;
+
+        // In extraction mode, restore the heap ordering property
+        if (!this.insertionMode) {
+            this.siftUp(this.heapSize - 1);
+        }
+
+        assert this.conventionHolds();
+        return handle;
+    }
+
+    /**
+     * Reports whether the entry with handle {@code handle} is still in
+     * {@code this}. Once that entry is removed its handle may be given to an
+     * entry added later, so a true result means only that some entry has the
+     * handle now.
+     *
+     * @param handle
+     *            the handle
+     * @return true iff {@code handle} refers to an entry of {@code this}
+     * @requires handle >= 0
+     * @ensures contains = [handle refers to an entry in this.contents]
+     */
+    public final boolean contains(int handle) {
+        assert handle >= 0 : "Violation of: handle >= 0";
+        assert this.conventionHolds();
+        return handle < this.positionOf.length && this.positionOf[handle] != ABSENT;
+    }
+
+    /**
+     * Replaces the entry with handle {@code handle} by {@code newValue}, which
+     * keeps the same handle, and returns the entry replaced.
+     *
+     * @param handle
+     *            the handle
+     * @param newValue
+     *            the new entry
+     * @return the entry replaced
+     * @updates this.contents
+     * @requires this.contains(handle)
+     * @ensures <pre>
+     * changeKey = [the entry #this.contents with handle handle]  and
+     * this.contents = (#this.contents \ {changeKey}) union {newValue}  and
+     * [handle refers to newValue]
+     * </pre>
+     */
+    public final T changeKey(int handle, T newValue) {
+        assert newValue != null : "Violation of: newValue is not null";
+        assert this.contains(handle) : "Violation of: this.contains(handle)";
+
+        int position = this.positionOf[handle];
+        T old = this.heap[position];
+        this.heap[position] = newValue;
+        if (!this.insertionMode) {
+            this.restoreHeap(position);
+        }
+
+        assert this.conventionHolds();
+        return old;
+    }
+
+    /**
+     * Removes and returns the entry with handle {@code handle}.
+     *
+     * @param handle
+     *            the handle
+     * @return the entry removed
+     * @updates this.contents
+     * @requires this.contains(handle)
+     * @ensures <pre>
+     * remove = [the entry #this.contents with handle handle]  and
+     * this.contents = #this.contents \ {remove}  and
+     * not this.contains(handle)
+     * </pre>
+     */
+    public final T remove(int handle) {
+        assert this.contains(handle) : "Violation of: this.contains(handle)";
+
+        int position = this.positionOf[handle];
+        T removed = this.heap[position];
+
+        // Move the last entry into the hole left by the one removed
+        int last = this.heapSize - 1;
+        this.exchangeEntries(position, last);
+        this.heap[last] = null;
+        this.positionOf[handle] = ABSENT;
+        this.freeHandles[this.freeCount] = handle;
+        this.freeCount++;
+        this.heapSize--;
+
+        if (!this.insertionMode && position < this.heapSize) {
+            this.restoreHeap(position);
+        }
+
+        assert this.conventionHolds();
+        return removed;
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // Change insertion mode to extraction mode
+        this.insertionMode = false;
+
+        // heapify bottom-up, starting from the parent of the last entry
+        for (int top = (this.heapSize - 2) / 2; top >= 0; top--) {
+            this.siftDown(top);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        return this.remove(this.handleAt[0]);
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.heapSize;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5iIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5i}.
+     */
+    private final class SortingMachine5iIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5iIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5i.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5i.this.heapSize;
+            assert SortingMachine5i.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5i.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5i.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
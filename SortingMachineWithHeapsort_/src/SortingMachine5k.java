@@ -0,0 +1,565 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * Bounded {@code SortingMachine} that keeps at most {@code capacity} entries:
+ * once it is full, {@code add} keeps only the {@code capacity} first entries
+ * under {@code order()} and silently drops the rest, so a machine fed every
+ * distinct word of a document holds only the top {@code capacity} of them.
+ * Apart from that, it behaves like {@code SortingMachine5a}.
+ *
+ * <p>
+ * In insertion mode the entries form an <em>inverse</em> heap (the last entry
+ * under {@code order()} at the root), so the entry to drop is always at index
+ * 0 and each {@code add} costs O(log capacity). {@code changeToExtractionMode}
+ * re-heapifies the same array under {@code order()}.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_HEAP (
+ *   a: string of T,
+ *   stop: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i <= stop)
+ *    (r(a[(i - 1) / 2], a[i]))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.heapSize <= $this.capacity  and
+ * $this.capacity = |$this.heap|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.heapSize)
+ *   ([entry at position i in $this.heap is not null])  and
+ * for all i: integer
+ *     where ($this.heapSize <= i  and  i < |$this.heap|)
+ *   ([entry at position i in $this.heap is null])  and
+ * if $this.insertionMode then
+ *   IS_HEAP($this.heap, $this.heapSize - 1,
+ *     [relation computed by $this.inverseOrder.compare method])
+ * else
+ *   IS_HEAP($this.heap, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5k<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Reverse of {@code machineOrder}, used for the insertion-mode heap.
+     */
+    private Comparator<T> inverseOrder;
+
+    /**
+     * Maximum number of entries kept.
+     */
+    private int capacity;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: an inverse heap in insertion mode, a heap in extraction mode.
+     */
+    private T[] heap;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Sifts the entry at index {@code top} of {@code array} down until the
+     * entries at indices 0 through {@code last} form a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the entry to sift down
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 0 <= top  and  last < |array|  and
+     * [array[0, last] is a heap except possibly at index top]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * [the subtree rooted at top is a heap through index last]  and
+     * perms(array, #array)
+     * </pre>
+     */
+    private static <T> void siftDown(T[] array, int top, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+
+        T root = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last && order.compare(array[child + 1], array[child]) < 0) {
+                child++;
+            }
+            if (order.compare(array[child], root) >= 0) {
+                break;
+            }
+            array[hole] = array[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+    }
+
+    /**
+     * Sifts the entry at index {@code bottom} of {@code array} up until the
+     * entries at indices 0 through {@code bottom} form a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param bottom
+     *            the index of the entry to sift up
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 0 <= bottom < |array|  and
+     * IS_HEAP(array, bottom - 1, [relation computed by order.compare method])  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * IS_HEAP(array, bottom, [relation computed by order.compare method])  and
+     * perms(array, #array)
+     * </pre>
+     */
+    private static <T> void siftUp(T[] array, int bottom, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= bottom : "Violation of: 0 <= bottom";
+        assert bottom < array.length : "Violation of: bottom < |array|";
+
+        T entry = array[bottom];
+        int hole = bottom;
+
+        while (hole > 0) {
+            int parent = (hole - 1) / 2;
+            if (order.compare(entry, array[parent]) >= 0) {
+                break;
+            }
+            array[hole] = array[parent];
+            hole = parent;
+        }
+
+        array[hole] = entry;
+    }
+
+    /**
+     * Heapifies the entries of the given array at indices 0 through
+     * {@code last}, bottom-up.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            the total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * last < |array|  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * IS_HEAP(array, last, [relation computed by order.compare method])  and
+     * perms(array, #array)
+     * </pre>
+     */
+    private static <T> void heapify(T[] array, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert last < array.length : "Violation of: last < |array|";
+
+        for (int top = (last - 1) / 2; top >= 0; top--) {
+            siftDown(array, top, last, order);
+        }
+    }
+
+    /**
+     * Checks if the entries of the given {@code array} at indices 0 through
+     * {@code last} form a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if {@code array[0, last]} is a heap; false otherwise
+     * @requires <pre>
+     * last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])
+     * </pre>
+     * @ensures isHeap = IS_HEAP(array, last, [relation computed by order.compare
+     *          method])
+     */
+    private static <T> boolean isHeap(T[] array, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        for (int i = 1; isHeap && i <= last; i++) {
+            isHeap = order.compare(array[(i - 1) / 2], array[i]) <= 0;
+        }
+        return isHeap;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.heapSize <= $this.capacity  and
+     * $this.capacity = |$this.heap|  and
+     * for all i: integer
+     *     where (0 <= i  and  i < $this.heapSize)
+     *   ([entry at position i in $this.heap is not null])  and
+     * for all i: integer
+     *     where ($this.heapSize <= i  and  i < |$this.heap|)
+     *   ([entry at position i in $this.heap is null])  and
+     * if $this.insertionMode then
+     *   IS_HEAP($this.heap, $this.heapSize - 1,
+     *     [relation computed by $this.inverseOrder.compare method])
+     * else
+     *   IS_HEAP($this.heap, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.capacity
+                : "Violation of: $this.heapSize <= $this.capacity";
+        assert this.capacity == this.heap.length
+                : "Violation of: $this.capacity = |$this.heap|";
+        for (int i = 0; i < this.heapSize; i++) {
+            assert this.heap[i] != null : ""
+                    + "Violation of: entries in $this.heap[0, $this.heapSize) not null";
+        }
+        for (int i = this.heapSize; i < this.heap.length; i++) {
+            assert this.heap[i] == null : ""
+                    + "Violation of: entries in $this.heap[$this.heapSize, |$this.heap|)"
+                    + " are null";
+        }
+        if (this.insertionMode) {
+            assert isHeap(this.heap, this.heapSize - 1, this.inverseOrder)
+                    : "" + "Violation of: if $this.insertionMode then"
+                            + " IS_HEAP($this.heap, $this.heapSize - 1,"
+                            + " [relation computed by $this.inverseOrder.compare"
+                            + " method])";
+        } else {
+            assert isHeap(this.heap, this.heapSize - 1, this.machineOrder)
+                    : "" + "Violation of: if not $this.insertionMode then"
+                            + " IS_HEAP($this.heap, $this.heapSize - 1,"
+                            + " [relation computed by $this.machineOrder.compare"
+                            + " method])";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param k
+     *            the maximum number of entries kept
+     * @requires <pre>
+     * IS_TOTAL_PREORDER([relation computed by order.compare method]  and
+     * k > 0
+     * </pre>
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * $this.capacity = k  and
+     * |$this.heap| = k  and
+     * $this.heapSize = 0
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private void createNewRep(Comparator<T> order, int k) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.inverseOrder = Collections.reverseOrder(order);
+        this.capacity = k;
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        this.heap = (T[]) (new Object[k]);
+        this.heapSize = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order and capacity.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param k
+     *            the maximum number of entries kept
+     * @requires k > 0
+     */
+    public SortingMachine5k(Comparator<T> order, int k) {
+        assert k > 0 : "Violation of: k > 0";
+        this.createNewRep(order, k);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class, int.class)
+                    .newInstance(this.machineOrder, this.capacity);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        Arrays.fill(this.heap, 0, this.heapSize, null);
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5k<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5k<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5k<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5k<T> localSource = (SortingMachine5k<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.inverseOrder = localSource.inverseOrder;
+        this.capacity = localSource.capacity;
+        this.heap = localSource.heap;
+        this.heapSize = localSource.heapSize;
+        localSource.createNewRep(localSource.machineOrder, localSource.capacity);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Unlike the kernel contract, once {@code this} holds {@code capacity()}
+     * entries, {@code x} is kept only if it comes strictly before the last
+     * entry under {@code order()}, which is then dropped; so {@code this}
+     * always holds the first {@code capacity()} entries added, under
+     * {@code order()}.
+     */
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        if (this.heapSize < this.capacity) {
+            // not full yet: keep every entry
+            this.heap[this.heapSize] = x;
+            siftUp(this.heap, this.heapSize, this.inverseOrder);
+            this.heapSize++;
+        } else if (this.machineOrder.compare(x, this.heap[0]) < 0) {
+            // full: x replaces the last entry, which is at the root
+            this.heap[0] = x;
+            siftDown(this.heap, 0, this.heapSize - 1, this.inverseOrder);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        heapify(this.heap, this.heapSize - 1, this.machineOrder);
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.heap[0];
+
+        this.heapSize--;
+        this.heap[0] = this.heap[this.heapSize];
+        this.heap[this.heapSize] = null;
+        if (this.heapSize > 0) {
+            siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.heapSize;
+    }
+
+    /**
+     * Reports the maximum number of entries {@code this} keeps.
+     *
+     * @return the capacity
+     * @ensures capacity = [the capacity given when this was constructed]
+     */
+    public final int capacity() {
+        assert this.conventionHolds();
+        return this.capacity;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5kIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5k}.
+     */
+    private final class SortingMachine5kIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5kIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5k.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5k.this.heapSize;
+            assert SortingMachine5k.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5k.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5k.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
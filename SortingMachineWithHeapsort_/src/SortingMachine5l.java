@@ -0,0 +1,540 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} whose heap is built a little at a time by
+ * {@code add}, so that {@code changeToExtractionMode} takes constant time and
+ * the first {@code removeFirst} takes O(log n) time.
+ *
+ * <p>
+ * The array holds a forest of perfect binary trees (a post-order heap), each
+ * stored in post-order and each heap-ordered. Tree sizes are of the form
+ * 2<sup>h</sup> - 1, decrease from left to right, and are all different
+ * except that the last two may be equal; there are thus O(log n) trees.
+ * {@code add} appends the new entry either as a one-entry tree or, when the
+ * last two trees are the same size, as the root of a tree joining them,
+ * sifting it down. This is the bottom-up heap construction of
+ * {@code SortingMachine5a} spread over the adds: O(1) amortized time per
+ * {@code add}. {@code removeFirst} finds the smallest of the tree roots,
+ * replaces it with the last entry (splitting the last tree into its two
+ * subtrees), and sifts that down, in O(log n) time.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * TREE_IS_HEAP (
+ *   a: string of T,
+ *   root: integer,
+ *   size: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  [the perfect binary tree of size entries stored in post-order in a,
+ *   ending at index root, satisfies the heap ordering property according to
+ *   the relation r]
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.heapSize <= |$this.heap|  and
+ * [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+ * 0 <= $this.treeCount <= |$this.treeSizes|  and
+ * [$this.treeSizes[0, $this.treeCount) are each 2^h - 1 for some h > 0,
+ *  are non-increasing, are all different except possibly the last two, and
+ *  sum to $this.heapSize]  and
+ * for all t: integer
+ *     where (0 <= t  and  t < $this.treeCount)
+ *   (TREE_IS_HEAP($this.heap,
+ *      [sum of $this.treeSizes[0, t + 1)] - 1, $this.treeSizes[t],
+ *      [relation computed by $this.machineOrder.compare method]))
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5l<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the array allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Largest possible number of trees: two for each possible height.
+     */
+    private static final int MAX_TREES = 2 * Integer.SIZE;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: a forest of heap-ordered perfect binary trees, each stored in
+     * post-order.
+     */
+    private T[] heap;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Sizes of the trees, from left to right.
+     */
+    private int[] treeSizes;
+
+    /**
+     * Number of trees.
+     */
+    private int treeCount;
+
+    /**
+     * Sifts the root of the perfect binary tree of {@code size} entries stored
+     * in post-order in {@code array}, ending at index {@code root}, down until
+     * the tree is a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the array holding the tree
+     * @param root
+     *            the index of the root, the last entry of the tree
+     * @param size
+     *            the number of entries in the tree
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * size = 2^h - 1 for some h > 0  and  size - 1 <= root < |array|  and
+     * [both subtrees of the root are heaps]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * TREE_IS_HEAP(array, root, size,
+     *     [relation computed by order.compare method])  and
+     * [only the entries of the tree are permuted]
+     * </pre>
+     */
+    private static <T> void siftDown(T[] array, int root, int size,
+            Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert size - 1 <= root : "Violation of: size - 1 <= root";
+        assert root < array.length : "Violation of: root < |array|";
+
+        /*
+         * Move a "hole" down from the root, as in SortingMachine5a; in
+         * post-order, the right child of the node at p with subtree size s is
+         * at p - 1 and the left child at p - 1 - (s - 1) / 2
+         */
+        T entry = array[root];
+        int hole = root;
+        int childSize = (size - 1) / 2;
+
+        while (childSize > 0) {
+            int child = hole - 1;
+            int left = child - childSize;
+            if (order.compare(array[left], array[child]) < 0) {
+                child = left;
+            }
+            if (order.compare(array[child], entry) >= 0) {
+                break;
+            }
+            array[hole] = array[child];
+            hole = child;
+            childSize = (childSize - 1) / 2;
+        }
+
+        array[hole] = entry;
+    }
+
+    /**
+     * Checks if the perfect binary tree of {@code size} entries stored in
+     * post-order in {@code array}, ending at index {@code root}, is a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the array holding the tree
+     * @param root
+     *            the index of the root, the last entry of the tree
+     * @param size
+     *            the number of entries in the tree
+     * @param order
+     *            total preorder for sorting
+     * @return true if the tree is a heap; false otherwise
+     * @requires size = 2^h - 1 for some h >= 0 and size - 1 <= root < |array|
+     * @ensures <pre>
+     * isHeap = TREE_IS_HEAP(array, root, size,
+     *     [relation computed by order.compare method])
+     * </pre>
+     */
+    private static <T> boolean isHeap(T[] array, int root, int size,
+            Comparator<T> order) {
+        boolean isHeap = true;
+        int childSize = (size - 1) / 2;
+        if (childSize > 0) {
+            int right = root - 1;
+            int left = right - childSize;
+            isHeap = order.compare(array[root], array[left]) <= 0
+                    && order.compare(array[root], array[right]) <= 0
+                    && isHeap(array, left, childSize, order)
+                    && isHeap(array, right, childSize, order);
+        }
+        return isHeap;
+    }
+
+    /**
+     * Constructs and returns an array of {@code T} with all entries null.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (T[]) (new Object[capacity]);
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.heapSize <= |$this.heap|  and
+     * [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+     * 0 <= $this.treeCount <= |$this.treeSizes|  and
+     * [$this.treeSizes[0, $this.treeCount) are each 2^h - 1 for some h > 0,
+     *  are non-increasing, are all different except possibly the last two, and
+     *  sum to $this.heapSize]  and
+     * for all t: integer
+     *     where (0 <= t  and  t < $this.treeCount)
+     *   (TREE_IS_HEAP($this.heap,
+     *      [sum of $this.treeSizes[0, t + 1)] - 1, $this.treeSizes[t],
+     *      [relation computed by $this.machineOrder.compare method]))
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        for (int i = 0; i < this.heap.length; i++) {
+            assert (this.heap[i] != null) == (i < this.heapSize) : ""
+                    + "Violation of: entries in $this.heap are not null exactly"
+                    + " in [0, $this.heapSize)";
+        }
+        assert 0 <= this.treeCount && this.treeCount <= this.treeSizes.length
+                : "Violation of: 0 <= $this.treeCount <= |$this.treeSizes|";
+        int end = 0;
+        for (int t = 0; t < this.treeCount; t++) {
+            int size = this.treeSizes[t];
+            assert size > 0 && ((size + 1) & size) == 0
+                    : "Violation of: $this.treeSizes[t] = 2^h - 1 for some h > 0";
+            assert t == 0 || size < this.treeSizes[t - 1]
+                    || (t == this.treeCount - 1 && size == this.treeSizes[t - 1]) : ""
+                            + "Violation of: [$this.treeSizes are decreasing"
+                            + " except that the last two may be equal]";
+            end += size;
+            assert end <= this.heapSize : ""
+                    + "Violation of: [$this.treeSizes sum to $this.heapSize]";
+            assert isHeap(this.heap, end - 1, size, this.machineOrder) : ""
+                    + "Violation of: TREE_IS_HEAP($this.heap, [end of tree t],"
+                    + " $this.treeSizes[t],"
+                    + " [relation computed by $this.machineOrder.compare method])";
+        }
+        assert end == this.heapSize
+                : "Violation of: [$this.treeSizes sum to $this.heapSize]";
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * |$this.heap| = INITIAL_CAPACITY  and
+     * $this.heapSize = 0  and
+     * |$this.treeSizes| = MAX_TREES  and
+     * $this.treeCount = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.heap = newArray(INITIAL_CAPACITY);
+        this.heapSize = 0;
+        this.treeSizes = new int[MAX_TREES];
+        this.treeCount = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5l(Comparator<T> order) {
+        this.createNewRep(order);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class)
+                    .newInstance(this.machineOrder);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        // Keep the array, as SortingMachine5a does
+        Arrays.fill(this.heap, 0, this.heapSize, null);
+        this.heapSize = 0;
+        this.treeCount = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5l<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5l<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5l<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5l<T> localSource = (SortingMachine5l<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.heap = localSource.heap;
+        this.heapSize = localSource.heapSize;
+        this.treeSizes = localSource.treeSizes;
+        this.treeCount = localSource.treeCount;
+        localSource.createNewRep(localSource.machineOrder);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // double the array when it is full
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+        }
+        this.heap[this.heapSize] = x;
+        this.heapSize++;
+
+        int t = this.treeCount;
+        if (t >= 2 && this.treeSizes[t - 1] == this.treeSizes[t - 2]) {
+            // x becomes the root joining the last two trees
+            this.treeSizes[t - 2] = 2 * this.treeSizes[t - 2] + 1;
+            this.treeCount--;
+            siftDown(this.heap, this.heapSize - 1, this.treeSizes[t - 2],
+                    this.machineOrder);
+        } else {
+            this.treeSizes[t] = 1;
+            this.treeCount++;
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // The trees are already heaps; nothing is left to build
+        this.insertionMode = false;
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        // Find the tree with the smallest root
+        int minTree = 0;
+        int minRoot = this.treeSizes[0] - 1;
+        int root = minRoot;
+        for (int t = 1; t < this.treeCount; t++) {
+            root += this.treeSizes[t];
+            if (this.machineOrder.compare(this.heap[root], this.heap[minRoot]) < 0) {
+                minTree = t;
+                minRoot = root;
+            }
+        }
+
+        // Take the last entry off, splitting the last tree into its subtrees
+        int last = this.heapSize - 1;
+        int lastTree = this.treeCount - 1;
+        T lastEntry = this.heap[last];
+        this.heap[last] = null;
+        this.heapSize--;
+        int childSize = (this.treeSizes[lastTree] - 1) / 2;
+        if (childSize > 0) {
+            this.treeSizes[lastTree] = childSize;
+            this.treeSizes[lastTree + 1] = childSize;
+            this.treeCount++;
+        } else {
+            this.treeCount--;
+        }
+
+        // Unless it was the smallest root, put it in the smallest root's place
+        T first = lastEntry;
+        if (minTree != lastTree) {
+            first = this.heap[minRoot];
+            this.heap[minRoot] = lastEntry;
+            siftDown(this.heap, minRoot, this.treeSizes[minTree], this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.heapSize;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5lIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5l}.
+     */
+    private final class SortingMachine5lIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5lIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5l.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5l.this.heapSize;
+            assert SortingMachine5l.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5l.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5l.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
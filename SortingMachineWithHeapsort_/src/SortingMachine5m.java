@@ -0,0 +1,486 @@
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} represented as a pairing heap, with implementations
+ * of primary methods and of {@code meld}, which absorbs all the entries of
+ * another {@code SortingMachine5m} in constant time.
+ *
+ * <p>
+ * The heap is a tree of nodes, each pointing to its first child and to its
+ * next sibling; no node's entry is larger than its children's. Entries are
+ * kept in the tree in both modes, so {@code add} and {@code meld} are a single
+ * link of two roots and {@code changeToExtractionMode} does nothing else.
+ * {@code removeFirst} removes the root and pairs up its children, left to
+ * right, then links the pairs, right to left, in O(log n) amortized time.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * ($this.root = null  iff  $this.size = 0)  and
+ * [if $this.root /= null, $this.root.sibling = null]  and
+ * [the nodes reachable from $this.root form a tree of exactly $this.size
+ *  nodes, by first child and next sibling]  and
+ * [the entry of each of those nodes is not null, and is not larger, by
+ *  $this.machineOrder, than the entry of any of its children]
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         [multiset of the entries of the nodes reachable from $this.root])
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5m<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the pairing heap.
+     *
+     * @param <T>
+     *            type of the entry
+     */
+    private static final class Node<T> {
+
+        /**
+         * Entry in node.
+         */
+        private T entry;
+
+        /**
+         * First (most recently linked) child, or null if none.
+         */
+        private Node<T> child;
+
+        /**
+         * Next sibling, or null if none.
+         */
+        private Node<T> sibling;
+
+    }
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Root of the pairing heap, or null if it is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Number of entries.
+     */
+    private int size;
+
+    /**
+     * Links two heaps, making the root with the larger entry the first child
+     * of the other; on a tie {@code a} stays on top.
+     *
+     * @param a
+     *            the root of one heap
+     * @param b
+     *            the root of the other heap
+     * @return the root of the linked heap
+     * @updates a, b
+     * @requires a /= null and b /= null and a.sibling = null and b.sibling =
+     *           null
+     * @ensures <pre>
+     * [link is the root of a heap holding the nodes of the heaps rooted at
+     *  #a and #b]  and
+     * link.sibling = null
+     * </pre>
+     */
+    private Node<T> link(Node<T> a, Node<T> b) {
+        Node<T> top = a;
+        Node<T> bottom = b;
+        if (this.machineOrder.compare(b.entry, a.entry) < 0) {
+            top = b;
+            bottom = a;
+        }
+        bottom.sibling = top.child;
+        top.child = bottom;
+        return top;
+    }
+
+    /**
+     * Links a list of sibling heaps into one heap by the two-pass pairing
+     * method.
+     *
+     * @param first
+     *            the first of the siblings
+     * @return the root of the heap holding all the siblings' nodes
+     * @updates first
+     * @requires first /= null
+     * @ensures <pre>
+     * [combine is the root of a heap holding the nodes of the heaps in the
+     *  sibling list starting at #first]  and
+     * combine.sibling = null
+     * </pre>
+     */
+    private Node<T> combine(Node<T> first) {
+        /*
+         * First pass: link the siblings in pairs, left to right, pushing each
+         * pair onto a list threaded through the sibling links, which leaves
+         * the pairs in reverse order
+         */
+        Node<T> pairs = null;
+        Node<T> next = first;
+        while (next != null) {
+            Node<T> a = next;
+            Node<T> b = a.sibling;
+            if (b == null) {
+                next = null;
+            } else {
+                next = b.sibling;
+                b.sibling = null;
+            }
+            a.sibling = null;
+            Node<T> pair = a;
+            if (b != null) {
+                pair = this.link(a, b);
+            }
+            pair.sibling = pairs;
+            pairs = pair;
+        }
+
+        /*
+         * Second pass: link the pairs, right to left, into the last one
+         */
+        Node<T> combined = pairs;
+        pairs = pairs.sibling;
+        combined.sibling = null;
+        while (pairs != null) {
+            Node<T> pair = pairs;
+            pairs = pairs.sibling;
+            pair.sibling = null;
+            combined = this.link(pair, combined);
+        }
+        return combined;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * ($this.root = null  iff  $this.size = 0)  and
+     * [if $this.root /= null, $this.root.sibling = null]  and
+     * [the nodes reachable from $this.root form a tree of exactly $this.size
+     *  nodes, by first child and next sibling]  and
+     * [the entry of each of those nodes is not null, and is not larger, by
+     *  $this.machineOrder, than the entry of any of its children]
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert (this.root == null) == (this.size == 0)
+                : "Violation of: $this.root = null iff $this.size = 0";
+        int count = 0;
+        if (this.root != null) {
+            assert this.root.sibling == null
+                    : "Violation of: $this.root.sibling = null";
+            Deque<Node<T>> pending = new ArrayDeque<>();
+            pending.push(this.root);
+            while (!pending.isEmpty() && count <= this.size) {
+                Node<T> parent = pending.pop();
+                count++;
+                assert parent.entry != null : "Violation of: [entries are not null]";
+                for (Node<T> c = parent.child; c != null; c = c.sibling) {
+                    assert c.entry != null : "Violation of: [entries are not null]";
+                    assert this.machineOrder.compare(parent.entry, c.entry) <= 0 : ""
+                            + "Violation of: [no entry is larger than its children's]";
+                    pending.push(c);
+                }
+            }
+        }
+        assert count == this.size : ""
+                + "Violation of: [there are exactly $this.size nodes in the tree]";
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * $this.root = null  and
+     * $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.root = null;
+        this.size = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5m(Comparator<T> order) {
+        this.createNewRep(order);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class)
+                    .newInstance(this.machineOrder);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.machineOrder);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5m<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5m<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5m<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5m<T> localSource = (SortingMachine5m<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep(localSource.machineOrder);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        Node<T> node = new Node<>();
+        node.entry = x;
+        if (this.root == null) {
+            this.root = node;
+        } else {
+            this.root = this.link(this.root, node);
+        }
+        this.size++;
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // The entries are kept in heap order in both modes
+        this.insertionMode = false;
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.root.entry;
+        Node<T> children = this.root.child;
+        this.root = null;
+        if (children != null) {
+            this.root = this.combine(children);
+        }
+        this.size--;
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.size;
+    }
+
+    /**
+     * Moves all the entries of {@code other} into {@code this}, leaving
+     * {@code other} empty, in constant time.
+     *
+     * @param other
+     *            the machine whose entries are to be moved
+     * @updates this
+     * @clears other
+     * @requires <pre>
+     * other /= this  and
+     * [other is of dynamic type SortingMachine5m<?>]  and
+     * [other.ordering is the same relation as this.ordering]
+     * </pre>
+     * @ensures <pre>
+     * this = (#this.insertion_mode, #this.ordering,
+     *         #this.contents union #other.contents)
+     * </pre>
+     */
+    public final void meld(SortingMachine<T> other) {
+        assert other != null : "Violation of: other is not null";
+        assert other != this : "Violation of: other is not this";
+        assert other instanceof SortingMachine5m<?>
+                : "" + "Violation of: other is of dynamic type SortingMachine5m<?>";
+        /*
+         * Impractical to check the last requires clause.
+         *
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: other must be of dynamic type
+         * SortingMachine5m<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5m<T> localOther = (SortingMachine5m<T>) other;
+        if (localOther.root != null) {
+            if (this.root == null) {
+                this.root = localOther.root;
+            } else {
+                this.root = this.link(this.root, localOther.root);
+            }
+            this.size += localOther.size;
+        }
+        localOther.createNewRep(localOther.machineOrder);
+
+        assert this.conventionHolds();
+        assert localOther.conventionHolds();
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5mIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5m}, visiting the nodes depth-first.
+     */
+    private final class SortingMachine5mIterator implements Iterator<T> {
+
+        /**
+         * Nodes not yet visited whose parents (or previous siblings) have
+         * been.
+         */
+        private final Deque<Node<T>> pending;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5mIterator() {
+            this.pending = new ArrayDeque<>();
+            if (SortingMachine5m.this.root != null) {
+                this.pending.push(SortingMachine5m.this.root);
+            }
+            assert SortingMachine5m.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = !this.pending.isEmpty();
+            assert SortingMachine5m.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node<T> node = this.pending.pop();
+            if (node.sibling != null) {
+                this.pending.push(node.sibling);
+            }
+            if (node.child != null) {
+                this.pending.push(node.child);
+            }
+            assert SortingMachine5m.this.conventionHolds();
+            return node.entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
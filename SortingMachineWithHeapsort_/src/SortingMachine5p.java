@@ -0,0 +1,523 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} represented as a growable array that
+ * {@code changeToExtractionMode} sorts with a parallel (fork/join) merge sort,
+ * with implementations of primary methods. Once sorted, {@code removeFirst}
+ * just advances past the front of the array, in O(1). This is meant for
+ * machines holding very many entries, where the single-threaded heap build of
+ * {@code SortingMachine5a} would hold up the caller.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_SORTED (
+ *   a: string of T,
+ *   start: integer,
+ *   stop: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (start <= i  and  i < stop - 1)
+ *    (r(a[i], a[i + 1]))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.front  and  0 <= $this.size  and
+ * $this.front + $this.size <= |$this.entries|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.entries|)
+ *   ([entry at position i in $this.entries is not null] iff
+ *    $this.front <= i < $this.front + $this.size)  and
+ * if $this.insertionMode then
+ *   $this.front = 0
+ * else
+ *   IS_SORTED($this.entries, $this.front, $this.front + $this.size,
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.entries[$this.front,
+ *                                        $this.front + $this.size)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5p<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the array allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Number of entries at or below which a range is sorted sequentially
+     * instead of being split into two fork/join subtasks.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Pool that runs the parallel sort.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: unordered in insertion mode, sorted in extraction mode.
+     */
+    private T[] entries;
+
+    /**
+     * Index of the first entry still in {@code this}.
+     */
+    private int front;
+
+    /**
+     * Number of entries in {@code this}.
+     */
+    private int size;
+
+    /**
+     * Fork/join merge sort of a range of an array. Each task sorts its two
+     * halves in parallel and then merges them through a shared scratch
+     * array; ranges of at most {@code SEQUENTIAL_THRESHOLD} entries are sorted
+     * with {@code Arrays.sort}. Like {@code Arrays.sort}, the sort is stable.
+     *
+     * @param <T>
+     *            type of array entries
+     */
+    private static final class MergeSortTask<T> extends RecursiveAction {
+
+        /**
+         * Serial version UID (required since {@code RecursiveAction} is
+         * {@code Serializable}).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The array to sort.
+         */
+        private final T[] array;
+
+        /**
+         * Scratch array, at least as long as {@code array}.
+         */
+        private final T[] scratch;
+
+        /**
+         * Index of the first entry of the range.
+         */
+        private final int lo;
+
+        /**
+         * Index one past the last entry of the range.
+         */
+        private final int hi;
+
+        /**
+         * Order.
+         */
+        private final Comparator<T> order;
+
+        /**
+         * Constructor.
+         *
+         * @param array
+         *            the array to sort
+         * @param scratch
+         *            scratch array, at least as long as {@code array}
+         * @param lo
+         *            index of the first entry of the range
+         * @param hi
+         *            index one past the last entry of the range
+         * @param order
+         *            total preorder for sorting
+         */
+        private MergeSortTask(T[] array, T[] scratch, int lo, int hi,
+                Comparator<T> order) {
+            this.array = array;
+            this.scratch = scratch;
+            this.lo = lo;
+            this.hi = hi;
+            this.order = order;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hi - this.lo <= SEQUENTIAL_THRESHOLD) {
+                Arrays.sort(this.array, this.lo, this.hi, this.order);
+            } else {
+                int mid = (this.lo + this.hi) >>> 1;
+                invokeAll(
+                        new MergeSortTask<>(this.array, this.scratch, this.lo, mid,
+                                this.order),
+                        new MergeSortTask<>(this.array, this.scratch, mid, this.hi,
+                                this.order));
+                // no merge needed if the two halves are already in order
+                if (this.order.compare(this.array[mid - 1], this.array[mid]) > 0) {
+                    this.merge(mid);
+                }
+            }
+        }
+
+        /**
+         * Merges the sorted ranges {@code [lo, mid)} and {@code [mid, hi)} of
+         * {@code array}, taking from the left range on ties.
+         *
+         * @param mid
+         *            index of the first entry of the right range
+         */
+        private void merge(int mid) {
+            System.arraycopy(this.array, this.lo, this.scratch, this.lo,
+                    this.hi - this.lo);
+            int left = this.lo;
+            int right = mid;
+            int dest = this.lo;
+            while (left < mid && right < this.hi) {
+                if (this.order.compare(this.scratch[right], this.scratch[left]) < 0) {
+                    this.array[dest] = this.scratch[right];
+                    right++;
+                } else {
+                    this.array[dest] = this.scratch[left];
+                    left++;
+                }
+                dest++;
+            }
+            // entries left over in [right, hi) are already in place
+            System.arraycopy(this.scratch, left, this.array, dest, mid - left);
+        }
+
+    }
+
+    /**
+     * Constructs and returns an array of {@code T} with all entries null.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (T[]) (new Object[capacity]);
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.front  and  0 <= $this.size  and
+     * $this.front + $this.size <= |$this.entries|  and
+     * for all i: integer
+     *     where (0 <= i  and  i < |$this.entries|)
+     *   ([entry at position i in $this.entries is not null] iff
+     *    $this.front <= i < $this.front + $this.size)  and
+     * if $this.insertionMode then
+     *   $this.front = 0
+     * else
+     *   IS_SORTED($this.entries, $this.front, $this.front + $this.size,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        int end = this.front + this.size;
+        assert 0 <= this.front : "Violation of: 0 <= $this.front";
+        assert 0 <= this.size : "Violation of: 0 <= $this.size";
+        assert end <= this.entries.length
+                : "Violation of: $this.front + $this.size <= |$this.entries|";
+        for (int i = 0; i < this.entries.length; i++) {
+            assert (this.entries[i] != null) == (this.front <= i && i < end) : ""
+                    + "Violation of: entries in $this.entries are not null exactly"
+                    + " in [$this.front, $this.front + $this.size)";
+        }
+        if (this.insertionMode) {
+            assert this.front == 0
+                    : "Violation of: if $this.insertionMode then $this.front = 0";
+        } else {
+            for (int i = this.front; i < end - 1; i++) {
+                assert this.machineOrder.compare(this.entries[i],
+                        this.entries[i + 1]) <= 0 : ""
+                                + "Violation of: if not $this.insertionMode then"
+                                + " IS_SORTED($this.entries, $this.front,"
+                                + " $this.front + $this.size,"
+                                + " [relation computed by $this.machineOrder.compare"
+                                + " method])";
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param forkJoinPool
+     *            pool that runs the parallel sort
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * $this.pool = forkJoinPool  and
+     * |$this.entries| = INITIAL_CAPACITY  and
+     * $this.front = 0  and  $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order, ForkJoinPool forkJoinPool) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.pool = forkJoinPool;
+        this.entries = newArray(INITIAL_CAPACITY);
+        this.front = 0;
+        this.size = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order, sorting in the common fork/join pool.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5p(Comparator<T> order) {
+        this(order, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor from order and the fork/join pool that sorts the entries;
+     * the pool's parallelism bounds how many threads the sort uses.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param forkJoinPool
+     *            pool that runs the parallel sort
+     */
+    public SortingMachine5p(Comparator<T> order, ForkJoinPool forkJoinPool) {
+        assert forkJoinPool != null : "Violation of: forkJoinPool is not null";
+        this.createNewRep(order, forkJoinPool);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class, ForkJoinPool.class)
+                    .newInstance(this.machineOrder, this.pool);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        // Keep the array so a reused machine does not allocate again
+        Arrays.fill(this.entries, this.front, this.front + this.size, null);
+        this.front = 0;
+        this.size = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5p<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5p<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5p<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5p<T> localSource = (SortingMachine5p<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.pool = localSource.pool;
+        this.entries = localSource.entries;
+        this.front = localSource.front;
+        this.size = localSource.size;
+        localSource.createNewRep(localSource.machineOrder, localSource.pool);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // double the array when it is full
+        if (this.size == this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, 2 * this.entries.length);
+        }
+        this.entries[this.size] = x;
+        this.size++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        if (this.size <= SEQUENTIAL_THRESHOLD) {
+            Arrays.sort(this.entries, 0, this.size, this.machineOrder);
+        } else {
+            T[] scratch = newArray(this.size);
+            this.pool.invoke(new MergeSortTask<>(this.entries, scratch, 0, this.size,
+                    this.machineOrder));
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.entries[this.front];
+        this.entries[this.front] = null;
+        this.front++;
+        this.size--;
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5pIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5p}.
+     */
+    private final class SortingMachine5pIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5pIterator() {
+            this.arrayCurrentIndex = SortingMachine5p.this.front;
+            assert SortingMachine5p.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5p.this.front
+                    + SortingMachine5p.this.size;
+            assert SortingMachine5p.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5p.this.entries[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5p.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
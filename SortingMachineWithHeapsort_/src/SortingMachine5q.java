@@ -0,0 +1,688 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} represented as a growable array (using an embedding of
+ * heap sort), that can also be used as a priority queue: unlike
+ * {@code SortingMachine5a}, {@code add} may be called in extraction mode too,
+ * in which case the new entry is sifted up into the heap in O(log n) time
+ * instead of the machine having to be drained and rebuilt.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * SUBTREE_IS_HEAP (
+ *   a: string of T,
+ *   start: integer,
+ *   stop: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  [the subtree of a (when a is interpreted as a complete binary tree) rooted
+ *   at index start and only through entry stop of a satisfies the heap
+ *   ordering property according to the relation r]
+ *
+ * SUBTREE_ARRAY_ENTRIES (
+ *   a: string of T,
+ *   start: integer,
+ *   stop: integer
+ *  ) : finite multiset of T is
+ *  [the multiset of entries in a that belong to the subtree of a
+ *   (when a is interpreted as a complete binary tree) rooted at
+ *   index start and only through entry stop]
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.heapSize <= |$this.heap|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.heapSize)
+ *   ([entry at position i in $this.heap is not null])  and
+ * for all i: integer
+ *     where ($this.heapSize <= i  and  i < |$this.heap|)
+ *   ([entry at position i in $this.heap is null])  and
+ * if not $this.insertionMode then
+ *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5q<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the array allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: an unordered buffer in insertion mode, a heap in extraction
+     * mode.
+     */
+    private T[] heap;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Exchanges entries at indices {@code i} and {@code j} of {@code array}.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the array whose entries are to be exchanged
+     * @param i
+     *            one index
+     * @param j
+     *            the other index
+     * @updates array
+     * @requires 0 <= i < |array| and 0 <= j < |array|
+     * @ensures array = [#array with entries at indices i and j exchanged]
+     */
+    private static <T> void exchangeEntries(T[] array, int i, int j) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= i : "Violation of: 0 <= i";
+        assert i < array.length : "Violation of: i < |array|";
+        assert 0 <= j : "Violation of: 0 <= j";
+        assert j < array.length : "Violation of: j < |array|";
+
+        // if the index i and index j is not equal,
+        // then swap the {i index} entry with the {i index} entry in {T[] array}
+        if (i != j) {
+            T temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+
+    }
+
+    /**
+     * Given an array that represents a complete binary tree and an index
+     * referring to the root of a subtree that would be a heap except for its
+     * root, sifts the root down to turn that whole subtree into a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 0 <= top  and  last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])  and
+     * [subtree rooted at {@code top} is a complete binary tree]  and
+     * SUBTREE_IS_HEAP(array, 2 * top + 1, last,
+     *     [relation computed by order.compare method])  and
+     * SUBTREE_IS_HEAP(array, 2 * top + 2, last,
+     *     [relation computed by order.compare method])  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP(array, top, last,
+     *     [relation computed by order.compare method])  and
+     * perms(array, #array)  and
+     * SUBTREE_ARRAY_ENTRIES(array, top, last) =
+     *  SUBTREE_ARRAY_ENTRIES(#array, top, last)  and
+     * [the other entries in array are the same as in #array]
+     * </pre>
+     */
+    private static <T> void siftDown(T[] array, int top, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+        for (int i = 0; i <= last; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: all entries in array[0, last] are not null";
+        }
+        assert isHeap(array, 2 * top + 1, last, order)
+                : "" + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 1, last,"
+                        + " [relation computed by order.compare method])";
+        assert isHeap(array, 2 * top + 2, last, order)
+                : "" + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 2, last,"
+                        + " [relation computed by order.compare method])";
+        /*
+         * Impractical to check last requires clause; no need to check the other
+         * requires clause, because it must be true when using the array
+         * representation for a complete binary tree.
+         */
+
+        /*
+         * Move a "hole" down from top instead of exchanging entries at every
+         * level: each smaller child is shifted up into the hole, and the
+         * original root is written once, where the hole finally stops
+         */
+        T root = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+
+            // pick the smaller of the two children (right child only if it exists)
+            if (child < last && order.compare(array[child + 1], array[child]) < 0) {
+                child++;
+            }
+
+            // stop once the root is no larger than the smaller child
+            if (order.compare(array[child], root) >= 0) {
+                break;
+            }
+
+            array[hole] = array[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+
+    }
+
+    /**
+     * Given an array that represents a complete binary tree that is a heap
+     * through index {@code bottom - 1}, sifts the entry at index
+     * {@code bottom} up to make it a heap through index {@code bottom}.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param bottom
+     *            the index of the entry to sift up
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 0 <= bottom  and  bottom < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= bottom)
+     *   ([entry at position i in array is not null])  and
+     * SUBTREE_IS_HEAP(array, 0, bottom - 1,
+     *     [relation computed by order.compare method])  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP(array, 0, bottom,
+     *     [relation computed by order.compare method])  and
+     * perms(array, #array)  and
+     * [the entries of array after index bottom are the same as in #array]
+     * </pre>
+     */
+    private static <T> void siftUp(T[] array, int bottom, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= bottom : "Violation of: 0 <= bottom";
+        assert bottom < array.length : "Violation of: bottom < |array|";
+        for (int i = 0; i <= bottom; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: all entries in array[0, bottom] are not null";
+        }
+        assert isHeap(array, 0, bottom - 1, order)
+                : "" + "Violation of: SUBTREE_IS_HEAP(array, 0, bottom - 1,"
+                        + " [relation computed by order.compare method])";
+
+        /*
+         * As in siftDown, move a "hole" up from bottom, shifting each larger
+         * parent down into it, and write the new entry once where it stops
+         */
+        T entry = array[bottom];
+        int hole = bottom;
+
+        while (hole > 0) {
+            int parent = (hole - 1) / 2;
+
+            // stop once the parent is no larger than the new entry
+            if (order.compare(array[parent], entry) <= 0) {
+                break;
+            }
+
+            array[hole] = array[parent];
+            hole = parent;
+        }
+
+        array[hole] = entry;
+
+    }
+
+    /**
+     * Heapifies the entries of the given array at indices 0 through
+     * {@code last}, using the bottom-up (Floyd) construction: every internal
+     * node is sifted down, from the last one ({@code (last - 1) / 2}) back to
+     * the root.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            the total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP(array, 0, last,
+     *     [relation computed by order.compare method])  and
+     * perms(array, #array)  and
+     * [the entries of array after index last are the same as in #array]
+     * </pre>
+     */
+    private static <T> void heapify(T[] array, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert last < array.length : "Violation of: last < |array|";
+        for (int i = 0; i <= last; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: all entries in array[0, last] are not null";
+        }
+        /*
+         * Impractical to check last requires clause.
+         */
+
+        // leaves are already heaps, so start from the parent of the last entry
+        for (int top = (last - 1) / 2; top >= 0; top--) {
+            siftDown(array, top, last, order);
+        }
+
+    }
+
+    /**
+     * Constructs and returns an array of {@code T} with all entries null.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (T[]) (new Object[capacity]);
+    }
+
+    /**
+     * Checks if the subtree of the given {@code array} rooted at the given
+     * {@code top} is a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if the subtree of the given {@code array} rooted at the
+     *         given {@code top} is a heap; false otherwise
+     * @requires <pre>
+     * 0 <= top  and  last < |array|  and
+     * for all i: integer
+     *     where (0 <= i  and  i <= last)
+     *   ([entry at position i in array is not null])  and
+     * [subtree rooted at {@code top} is a complete binary tree]
+     * </pre>
+     * @ensures <pre>
+     * isHeap = SUBTREE_IS_HEAP(array, top, last,
+     *     [relation computed by order.compare method])
+     * </pre>
+     */
+    private static <T> boolean isHeap(T[] array, int top, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+        for (int i = 0; i <= last; i++) {
+            assert array[i] != null : ""
+                    + "Violation of: all entries in array[0, last] are not null";
+        }
+        /*
+         * No need to check the other requires clause, because it must be true
+         * when using the Array representation for a complete binary tree.
+         */
+        int left = 2 * top + 1;
+        boolean isHeap = true;
+        if (left <= last) {
+            isHeap = (order.compare(array[top], array[left]) <= 0)
+                    && isHeap(array, left, last, order);
+            int right = left + 1;
+            if (isHeap && (right <= last)) {
+                isHeap = (order.compare(array[top], array[right]) <= 0)
+                        && isHeap(array, right, last, order);
+            }
+        }
+        return isHeap;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.heapSize <= |$this.heap|  and
+     * for all i: integer
+     *     where (0 <= i  and  i < $this.heapSize)
+     *   ([entry at position i in $this.heap is not null])  and
+     * for all i: integer
+     *     where ($this.heapSize <= i  and  i < |$this.heap|)
+     *   ([entry at position i in $this.heap is null])  and
+     * if not $this.insertionMode then
+     *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        for (int i = 0; i < this.heapSize; i++) {
+            assert this.heap[i] != null : ""
+                    + "Violation of: entries in $this.heap[0, $this.heapSize) not null";
+        }
+        for (int i = this.heapSize; i < this.heap.length; i++) {
+            assert this.heap[i] == null : ""
+                    + "Violation of: entries in $this.heap[$this.heapSize, |$this.heap|)"
+                    + " are null";
+        }
+        if (!this.insertionMode) {
+            assert isHeap(this.heap, 0, this.heapSize - 1, this.machineOrder) : ""
+                    + "Violation of: if not $this.insertionMode then"
+                    + " SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,"
+                    + " [relation computed by $this.machineOrder.compare" + " method])";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * |$this.heap| = INITIAL_CAPACITY  and
+     * $this.heapSize = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.heap = newArray(INITIAL_CAPACITY);
+        this.heapSize = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5q(Comparator<T> order) {
+        this.createNewRep(order);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class)
+                    .newInstance(this.machineOrder);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        /*
+         * Keep the array so a reused machine does not allocate again; only the
+         * slots in use need to be nulled out to restore the convention
+         */
+        Arrays.fill(this.heap, 0, this.heapSize, null);
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5q<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5q<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5q<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5q<T> localSource = (SortingMachine5q<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.heap = localSource.heap;
+        this.heapSize = localSource.heapSize;
+        localSource.createNewRep(localSource.machineOrder);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Unlike the {@code SortingMachine} contract, {@code this} may also be in
+     * extraction mode, in which case {@code x} is sifted up into the heap.
+     *
+     * @requires <pre>
+     * [x is not null]
+     * </pre>
+     */
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        // double the array when it is full
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+        }
+        this.heap[this.heapSize] = x;
+
+        // In extraction mode, restore the heap ordering property
+        if (!this.insertionMode) {
+            siftUp(this.heap, this.heapSize, this.machineOrder);
+        }
+        this.heapSize++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // Change insertion mode to extraction mode
+        this.insertionMode = false;
+
+        // Before the extraction, turn the buffered entries into a heap in place
+        heapify(this.heap, this.heapSize - 1, this.machineOrder);
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        // Save the first entry in the array {this.heap}
+        T first = this.heap[0];
+
+        // Swap the last entry with the first entry in the array {this.heap}
+        exchangeEntries(this.heap, 0, this.heapSize - 1);
+
+        // Decrease heap size {this.heapSize} after swap, and drop the
+        // reference to the removed entry
+        this.heapSize--;
+        this.heap[this.heapSize] = null;
+
+        // only sift down if heap is not empty
+        if (this.heapSize > 0) {
+            siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+
+        // Return the first entry after checking the convention.
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+
+        // Both modes keep the entries in {this.heap[0, this.heapSize)}
+        assert this.conventionHolds();
+        return this.heapSize;
+
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5qIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5q}.
+     */
+    private final class SortingMachine5qIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5qIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5q.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5q.this.heapSize;
+            assert SortingMachine5q.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5q.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5q.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
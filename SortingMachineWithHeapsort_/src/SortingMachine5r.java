@@ -0,0 +1,879 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} that adapts to presorted input. While entries are
+ * added to a growable array, as in {@code SortingMachine5a}, it splits them
+ * into runs the way TimSort does (one comparison per {@code add}): each run
+ * is either non-decreasing or, if its second entry comes strictly before its
+ * first, strictly decreasing, and it ends at the first entry that does not
+ * continue it. A strictly decreasing run is reversed in place when it ends,
+ * which keeps the order of equal entries since no two of them are equal.
+ * Only the starts of the first {@link #MAX_MERGED_RUNS} runs are recorded;
+ * past that the runs are only counted (and no longer reversed), since the
+ * entries will be heapified anyway. {@code changeToExtractionMode} then picks
+ * a {@link Strategy}:
+ * <ul>
+ * <li>{@link Strategy#SORTED} if there is only one run: nothing is built, and
+ * {@code removeFirst} reads the array from the front;</li>
+ * <li>{@link Strategy#MERGE} if there are at most {@link #MAX_MERGED_RUNS}
+ * runs: a loser tree over the runs is built, and {@code removeFirst} merges
+ * them in O(log k) for k runs;</li>
+ * <li>{@link Strategy#HEAP} otherwise: the array is heapified in place, as in
+ * {@code SortingMachine5a}.</li>
+ * </ul>
+ * {@link #strategy()} reports the choice.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_HEAP (
+ *   a: string of T,
+ *   stop: integer,
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i <= stop)
+ *    (r(a[(i - 1) / 2], a[i]))
+ *
+ * RUN_END (
+ *   r: integer
+ *  ) : integer is
+ *  [$this.runStarts[r + 1] if r + 1 < $this.runCount; otherwise
+ *   $this.length]
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.size <= $this.length <= |$this.entries|  and
+ * [entries in $this.entries[$this.length, |$this.entries|) are null]  and
+ * [exactly $this.size entries in $this.entries[0, $this.length) are not
+ *  null]  and
+ * 0 <= $this.runCount  and
+ * min($this.runCount, MAX_MERGED_RUNS) <= |$this.runStarts| <=
+ *   MAX_MERGED_RUNS  and
+ * if $this.insertionMode  or  $this.strategy /= HEAP then
+ *   ($this.runCount = 0  iff  $this.length = 0)  and
+ *   [$this.runStarts[0, min($this.runCount, MAX_MERGED_RUNS)) is
+ *    increasing, starting at 0, and below $this.length]  and
+ * if $this.insertionMode then
+ *   $this.size = $this.length  and
+ *   (if $this.runCount > 0 then
+ *     [$this.lastRunStart is the start of the last run, which is
+ *      $this.entries[$this.lastRunStart, $this.length)])  and
+ *   (if $this.lastRunDescending then
+ *     $this.length - $this.lastRunStart >= 2)  and
+ *   if $this.runCount <= MAX_MERGED_RUNS then
+ *     [each $this.entries[$this.runStarts[r], RUN_END(r)) is non-decreasing
+ *      under $this.machineOrder, except that the last run is strictly
+ *      decreasing if $this.lastRunDescending]
+ * else if $this.strategy = SORTED then
+ *   [the non-null entries of $this.entries are $this.entries[$this.length -
+ *    $this.size, $this.length), and are non-decreasing]
+ * else if $this.strategy = MERGE then
+ *   for all r: integer
+ *       where (0 <= r  and  r < $this.runCount)
+ *     ([$this.entries[$this.runStarts[r], $this.cursor[r]) are null, and
+ *       $this.entries[$this.cursor[r], RUN_END(r)) are not null and
+ *       non-decreasing])  and
+ *   [$this.tree is a loser tree over the runs, with the index of a run
+ *    holding the first remaining entry at $this.tree[0]]
+ * else
+ *   $this.size = $this.length  and
+ *   IS_HEAP($this.entries, $this.size - 1,
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         [multiset of the non-null entries of $this.entries[0, $this.length)])
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5r<T> extends SortingMachineSecondary<T> {
+
+    /**
+     * How {@code changeToExtractionMode} prepares the entries for
+     * {@code removeFirst}.
+     */
+    public enum Strategy {
+        /**
+         * The entries were added in order; they are read from the front.
+         */
+        SORTED,
+
+        /**
+         * The entries form a few sorted runs, merged with a loser tree.
+         */
+        MERGE,
+
+        /**
+         * The entries are heapified.
+         */
+        HEAP
+    }
+
+    /**
+     * Largest number of runs that are merged rather than heapified.
+     */
+    public static final int MAX_MERGED_RUNS = 64;
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the arrays allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries, in the order added; removed entries are set to null, except in
+     * {@link Strategy#HEAP}, where the entries in use are a heap.
+     */
+    private T[] entries;
+
+    /**
+     * Number of positions of {@code entries} in use, removed or not.
+     */
+    private int length;
+
+    /**
+     * Number of entries not yet removed.
+     */
+    private int size;
+
+    /**
+     * Index of the first entry of each of the first {@link #MAX_MERGED_RUNS}
+     * runs.
+     */
+    private int[] runStarts;
+
+    /**
+     * Number of runs.
+     */
+    private int runCount;
+
+    /**
+     * Index of the first entry of the last run (insertion mode only).
+     */
+    private int lastRunStart;
+
+    /**
+     * Whether the last run is strictly decreasing and not yet reversed
+     * (insertion mode only).
+     */
+    private boolean lastRunDescending;
+
+    /**
+     * Strategy chosen by {@code changeToExtractionMode} (extraction mode
+     * only).
+     */
+    private Strategy strategy;
+
+    /**
+     * Index of the next entry of each run ({@link Strategy#MERGE} only).
+     */
+    private int[] cursor;
+
+    /**
+     * Loser tree over the runs ({@link Strategy#MERGE} only): {@code tree[0]}
+     * is the index of the run whose next entry comes first, and
+     * {@code tree[1, k)} hold the losers of the matches at the internal
+     * nodes.
+     */
+    private int[] tree;
+
+    /**
+     * Sifts the entry at index {@code top} of {@code array} down until the
+     * subtree rooted at {@code top}, through index {@code last}, is a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array
+     * @requires <pre>
+     * 0 <= top  and  last < |array|  and
+     * [both subtrees of top are heaps through index last]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * [the subtree rooted at top is a heap through index last]  and
+     * perms(array, #array)
+     * </pre>
+     */
+    private static <T> void siftDown(T[] array, int top, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+
+        T root = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last && order.compare(array[child + 1], array[child]) < 0) {
+                child++;
+            }
+            if (order.compare(array[child], root) >= 0) {
+                break;
+            }
+            array[hole] = array[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+    }
+
+    /**
+     * Checks if the entries of the given {@code array} at indices 0 through
+     * {@code last} form a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if {@code array[0, last]} is a heap; false otherwise
+     * @requires last < |array|
+     * @ensures isHeap = IS_HEAP(array, last, [relation computed by order.compare
+     *          method])
+     */
+    private static <T> boolean isHeap(T[] array, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        for (int i = 1; isHeap && i <= last; i++) {
+            isHeap = order.compare(array[(i - 1) / 2], array[i]) <= 0;
+        }
+        return isHeap;
+    }
+
+    /**
+     * Constructs and returns an array of {@code T} with all entries null.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (T[]) (new Object[capacity]);
+    }
+
+    /**
+     * Returns the strategy for {@code runs} runs.
+     *
+     * @param runs
+     *            the number of runs
+     * @return the strategy
+     * @requires runs >= 0
+     * @ensures <pre>
+     * strategyFor = [SORTED if runs <= 1, MERGE if runs <= MAX_MERGED_RUNS,
+     *                and HEAP otherwise]
+     * </pre>
+     */
+    private static Strategy strategyFor(int runs) {
+        Strategy result;
+        if (runs <= 1) {
+            result = Strategy.SORTED;
+        } else if (runs <= MAX_MERGED_RUNS) {
+            result = Strategy.MERGE;
+        } else {
+            result = Strategy.HEAP;
+        }
+        return result;
+    }
+
+    /**
+     * Ends the last run: reverses it in place if it is strictly decreasing
+     * and it is one of the first {@link #MAX_MERGED_RUNS} runs.
+     *
+     * @updates $this.entries, $this.lastRunDescending
+     * @requires $this.insertionMode
+     * @ensures <pre>
+     * not $this.lastRunDescending  and
+     * [if #$this.lastRunDescending and $this.runCount <= MAX_MERGED_RUNS,
+     *  $this.entries[$this.lastRunStart, $this.length) is reversed]
+     * </pre>
+     */
+    private void endLastRun() {
+        if (this.lastRunDescending) {
+            if (this.runCount <= MAX_MERGED_RUNS) {
+                int lo = this.lastRunStart;
+                int hi = this.length - 1;
+                while (lo < hi) {
+                    T tmp = this.entries[lo];
+                    this.entries[lo] = this.entries[hi];
+                    this.entries[hi] = tmp;
+                    lo++;
+                    hi--;
+                }
+            }
+            this.lastRunDescending = false;
+        }
+    }
+
+    /**
+     * Ends the last run, if any, and starts a new one at index
+     * {@code $this.length}, recording its start if it is one of the first
+     * {@link #MAX_MERGED_RUNS} runs.
+     *
+     * @updates $this.entries, $this.runStarts, $this.runCount,
+     *          $this.lastRunStart, $this.lastRunDescending
+     * @requires $this.insertionMode
+     * @ensures <pre>
+     * $this.runCount = #$this.runCount + 1  and
+     * $this.lastRunStart = $this.length  and  not $this.lastRunDescending
+     * </pre>
+     */
+    private void startRun() {
+        this.endLastRun();
+        if (this.runCount < MAX_MERGED_RUNS) {
+            if (this.runCount == this.runStarts.length) {
+                this.runStarts = Arrays.copyOf(this.runStarts,
+                        Math.min(2 * this.runCount, MAX_MERGED_RUNS));
+            }
+            this.runStarts[this.runCount] = this.length;
+        }
+        this.runCount++;
+        this.lastRunStart = this.length;
+    }
+
+    /**
+     * Returns the index just past the last entry of run {@code r}.
+     *
+     * @param r
+     *            the index of the run
+     * @return the end of the run
+     * @requires 0 <= r < $this.runCount
+     * @ensures runEnd = RUN_END(r)
+     */
+    private int runEnd(int r) {
+        int end = this.length;
+        if (r + 1 < this.runCount) {
+            end = this.runStarts[r + 1];
+        }
+        return end;
+    }
+
+    /**
+     * Reports whether the next entry of run {@code a} comes before the next
+     * entry of run {@code b}; used-up runs come after everything, and ties go
+     * to the earlier run. The index {@code $this.runCount} stands for a
+     * virtual run that comes before everything, used to build the loser tree.
+     *
+     * @param a
+     *            index of one run
+     * @param b
+     *            index of the other run
+     * @return true iff run {@code a}'s next entry comes before run {@code b}'s
+     */
+    private boolean beats(int a, int b) {
+        int k = this.runCount;
+        boolean result;
+        if (a == k || b == k) {
+            result = a == k;
+        } else {
+            boolean aDone = this.cursor[a] == this.runEnd(a);
+            boolean bDone = this.cursor[b] == this.runEnd(b);
+            if (aDone || bDone) {
+                result = bDone && (!aDone || a < b);
+            } else {
+                int c = this.machineOrder.compare(this.entries[this.cursor[a]],
+                        this.entries[this.cursor[b]]);
+                result = c < 0 || (c == 0 && a < b);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replays the matches on the path from run {@code s} to the root of the
+     * loser tree after the next entry of run {@code s} changed.
+     *
+     * @param s
+     *            index of the run whose next entry changed
+     */
+    private void replay(int s) {
+        int k = this.runCount;
+        int winner = s;
+        for (int t = (s + k) / 2; t > 0; t /= 2) {
+            if (this.beats(this.tree[t], winner)) {
+                int loser = winner;
+                winner = this.tree[t];
+                this.tree[t] = loser;
+            }
+        }
+        this.tree[0] = winner;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.size <= $this.length <= |$this.entries|  and
+     * [entries in $this.entries[$this.length, |$this.entries|) are null]  and
+     * [exactly $this.size entries in $this.entries[0, $this.length) are not
+     *  null]  and
+     * 0 <= $this.runCount  and
+     * min($this.runCount, MAX_MERGED_RUNS) <= |$this.runStarts| <=
+     *   MAX_MERGED_RUNS  and
+     * if $this.insertionMode  or  $this.strategy /= HEAP then
+     *   ($this.runCount = 0  iff  $this.length = 0)  and
+     *   [$this.runStarts[0, min($this.runCount, MAX_MERGED_RUNS)) is
+     *    increasing, starting at 0, and below $this.length]  and
+     * if $this.insertionMode then
+     *   $this.size = $this.length  and
+     *   (if $this.runCount > 0 then
+     *     [$this.lastRunStart is the start of the last run])  and
+     *   (if $this.lastRunDescending then
+     *     $this.length - $this.lastRunStart >= 2)
+     * else if $this.strategy = SORTED then
+     *   [the non-null entries of $this.entries are $this.entries[$this.length -
+     *    $this.size, $this.length), and are non-decreasing]
+     * else if $this.strategy = MERGE then
+     *   [$this.tree[0] is the index of a run holding the first remaining
+     *    entry]
+     * else
+     *   $this.size = $this.length  and
+     *   IS_HEAP($this.entries, $this.size - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.size : "Violation of: 0 <= $this.size";
+        assert this.size <= this.length : "Violation of: $this.size <= $this.length";
+        assert this.length <= this.entries.length
+                : "Violation of: $this.length <= |$this.entries|";
+        int nonNull = 0;
+        for (int i = 0; i < this.entries.length; i++) {
+            if (this.entries[i] != null) {
+                assert i < this.length : ""
+                        + "Violation of: entries in $this.entries[$this.length,"
+                        + " |$this.entries|) are null";
+                nonNull++;
+            }
+        }
+        assert nonNull == this.size : "Violation of: [exactly $this.size entries in"
+                + " $this.entries[0, $this.length) are not null]";
+        int recorded = Math.min(this.runCount, MAX_MERGED_RUNS);
+        assert 0 <= this.runCount : "Violation of: 0 <= $this.runCount";
+        assert recorded <= this.runStarts.length
+                && this.runStarts.length <= MAX_MERGED_RUNS : ""
+                        + "Violation of: min($this.runCount, MAX_MERGED_RUNS) <="
+                        + " |$this.runStarts| <= MAX_MERGED_RUNS";
+        if (this.insertionMode || this.strategy != Strategy.HEAP) {
+            assert (this.runCount == 0) == (this.length == 0)
+                    : "Violation of: $this.runCount = 0  iff  $this.length = 0";
+            for (int r = 0; r < recorded; r++) {
+                assert ((r == 0 && this.runStarts[r] == 0)
+                        || (r > 0 && this.runStarts[r - 1] < this.runStarts[r]))
+                        && this.runStarts[r] < this.length : ""
+                                + "Violation of: [$this.runStarts[0,"
+                                + " min($this.runCount, MAX_MERGED_RUNS)) is"
+                                + " increasing, starting at 0, and below"
+                                + " $this.length]";
+            }
+        }
+        if (this.insertionMode) {
+            assert this.size == this.length : ""
+                    + "Violation of: if $this.insertionMode then"
+                    + " $this.size = $this.length";
+            if (0 < this.runCount && this.runCount <= MAX_MERGED_RUNS) {
+                assert this.lastRunStart == this.runStarts[this.runCount - 1] : ""
+                        + "Violation of: [$this.lastRunStart is the start of the"
+                        + " last run]";
+            }
+            if (this.lastRunDescending) {
+                assert this.length - this.lastRunStart >= 2 : ""
+                        + "Violation of: if $this.lastRunDescending then"
+                        + " $this.length - $this.lastRunStart >= 2";
+            }
+        } else if (this.strategy == Strategy.SORTED) {
+            for (int i = this.length - this.size + 1; i < this.length; i++) {
+                assert this.machineOrder.compare(this.entries[i - 1],
+                        this.entries[i]) <= 0 : ""
+                                + "Violation of: [the remaining entries are"
+                                + " non-decreasing]";
+            }
+        } else if (this.strategy == Strategy.MERGE) {
+            for (int r = 0; r < this.runCount; r++) {
+                assert !this.beats(r, this.tree[0]) : ""
+                        + "Violation of: [$this.tree[0] is the index of a run"
+                        + " holding the first remaining entry]";
+            }
+        } else {
+            assert this.size == this.length
+                    : "Violation of: if HEAP then $this.size = $this.length";
+            assert isHeap(this.entries, this.size - 1, this.machineOrder) : ""
+                    + "Violation of: if HEAP then"
+                    + " IS_HEAP($this.entries, $this.size - 1,"
+                    + " [relation computed by $this.machineOrder.compare method])";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * |$this.entries| = |$this.runStarts| = INITIAL_CAPACITY  and
+     * $this.length = 0  and  $this.size = 0  and  $this.runCount = 0  and
+     * $this.lastRunStart = 0  and  not $this.lastRunDescending
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.entries = newArray(INITIAL_CAPACITY);
+        this.length = 0;
+        this.size = 0;
+        this.runStarts = new int[INITIAL_CAPACITY];
+        this.runCount = 0;
+        this.lastRunStart = 0;
+        this.lastRunDescending = false;
+        this.strategy = null;
+        this.cursor = null;
+        this.tree = null;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5r(Comparator<T> order) {
+        this.createNewRep(order);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class)
+                    .newInstance(this.machineOrder);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.machineOrder);
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5r<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5r<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5r<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5r<T> localSource = (SortingMachine5r<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.entries = localSource.entries;
+        this.length = localSource.length;
+        this.size = localSource.size;
+        this.runStarts = localSource.runStarts;
+        this.runCount = localSource.runCount;
+        this.lastRunStart = localSource.lastRunStart;
+        this.lastRunDescending = localSource.lastRunDescending;
+        this.strategy = localSource.strategy;
+        this.cursor = localSource.cursor;
+        this.tree = localSource.tree;
+        localSource.createNewRep(localSource.machineOrder);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        /*
+         * x continues a strictly decreasing run if it comes strictly before
+         * the last entry, and a non-decreasing run otherwise; it makes a run
+         * of one entry strictly decreasing if it comes strictly before that
+         * entry, and starts a new run in every other case
+         */
+        if (this.length == 0) {
+            this.startRun();
+        } else {
+            T last = this.entries[this.length - 1];
+            boolean before = this.machineOrder.compare(last, x) > 0;
+            if (this.lastRunDescending) {
+                if (!before) {
+                    this.startRun();
+                }
+            } else if (before) {
+                if (this.lastRunStart == this.length - 1) {
+                    this.lastRunDescending = true;
+                } else {
+                    this.startRun();
+                }
+            }
+        }
+
+        // double the array when it is full
+        if (this.length == this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, 2 * this.entries.length);
+        }
+        this.entries[this.length] = x;
+        this.length++;
+        this.size++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.endLastRun();
+        this.insertionMode = false;
+        this.strategy = strategyFor(this.runCount);
+
+        if (this.strategy == Strategy.MERGE) {
+            // Build the loser tree: start with the virtual run k (which beats
+            // everything) at every internal node, then play in each real run
+            int k = this.runCount;
+            this.cursor = Arrays.copyOf(this.runStarts, k);
+            this.tree = new int[k];
+            Arrays.fill(this.tree, k);
+            for (int s = k - 1; s >= 0; s--) {
+                this.replay(s);
+            }
+        } else if (this.strategy == Strategy.HEAP) {
+            for (int top = (this.size - 2) / 2; top >= 0; top--) {
+                siftDown(this.entries, top, this.size - 1, this.machineOrder);
+            }
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first;
+        if (this.strategy == Strategy.SORTED) {
+            int front = this.length - this.size;
+            first = this.entries[front];
+            this.entries[front] = null;
+        } else if (this.strategy == Strategy.MERGE) {
+            int winner = this.tree[0];
+            first = this.entries[this.cursor[winner]];
+            this.entries[this.cursor[winner]] = null;
+            this.cursor[winner]++;
+            this.replay(winner);
+        } else {
+            first = this.entries[0];
+            this.length--;
+            this.entries[0] = this.entries[this.length];
+            this.entries[this.length] = null;
+            if (this.length > 0) {
+                siftDown(this.entries, 0, this.length - 1, this.machineOrder);
+            }
+        }
+        this.size--;
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.size;
+    }
+
+    /**
+     * Reports the strategy {@code changeToExtractionMode} chose or, in
+     * insertion mode, would choose for the entries added so far.
+     *
+     * @return the strategy
+     * @ensures <pre>
+     * strategy = [SORTED if the entries, in the order added, form at most one
+     *             run; MERGE if they form at most MAX_MERGED_RUNS; and HEAP
+     *             otherwise]
+     * </pre>
+     */
+    public final Strategy strategy() {
+        assert this.conventionHolds();
+        Strategy result = this.strategy;
+        if (this.insertionMode) {
+            result = strategyFor(this.runCount);
+        }
+        return result;
+    }
+
+    /**
+     * Reports the number of runs in the entries, in the order they were
+     * added: each run is non-decreasing or strictly decreasing, and ends at
+     * the first entry that does not continue it.
+     *
+     * @return the number of runs
+     * @ensures <pre>
+     * runCount = [the number of runs, found from the front as described
+     *             above, in the entries added since this was last cleared]
+     * </pre>
+     */
+    public final int runCount() {
+        assert this.conventionHolds();
+        return this.runCount;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5rIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5r}: the non-null entries of the array.
+     */
+    private final class SortingMachine5rIterator implements Iterator<T> {
+
+        /**
+         * Index of the next entry to examine.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5rIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5r.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            // skip the entries already removed
+            while (this.arrayCurrentIndex < SortingMachine5r.this.length
+                    && SortingMachine5r.this.entries[this.arrayCurrentIndex] == null) {
+                this.arrayCurrentIndex++;
+            }
+            return this.arrayCurrentIndex < SortingMachine5r.this.length;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5r.this.entries[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
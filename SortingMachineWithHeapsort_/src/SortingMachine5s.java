@@ -0,0 +1,527 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * Stable {@code SortingMachine}: entries that tie under the order are removed
+ * in the order in which they were added. Otherwise it is
+ * {@code SortingMachine5a}: a growable array, unordered in insertion mode and
+ * heapified in place by {@code changeToExtractionMode}.
+ *
+ * <p>
+ * Ties are broken by a sequence number kept for each entry in an {@code int[]}
+ * parallel to the heap, so no entry is wrapped. Since entries are appended in
+ * insertion mode, an entry's sequence number is simply its index when
+ * {@code changeToExtractionMode} is called; the numbers then move with the
+ * entries as the heap is rearranged.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on T
+ *  ) : boolean is
+ *  for all x, y, z: T
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * STABLE_ORDER (
+ *   r: binary relation on T
+ *  ) : binary relation on T * integer is
+ *  [the relation that holds for ((x, i), (y, j)) iff not r(y, x), or
+ *   r(x, y) and r(y, x) and i <= j]
+ *
+ * SUBTREE_IS_HEAP (
+ *   a: string of T * integer,
+ *   start: integer,
+ *   stop: integer,
+ *   r: binary relation on T * integer
+ *  ) : boolean is
+ *  [the subtree of a (when a is interpreted as a complete binary tree) rooted
+ *   at index start and only through entry stop of a satisfies the heap
+ *   ordering property according to the relation r]
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.heapSize <= |$this.heap| = |$this.sequence|  and
+ * [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+ * if not $this.insertionMode then
+ *   [$this.sequence[0, $this.heapSize) has no duplicates]  and
+ *   SUBTREE_IS_HEAP([$this.heap[0, $this.heapSize) paired with
+ *                    $this.sequence[0, $this.heapSize)], 0, $this.heapSize - 1,
+ *     STABLE_ORDER([relation computed by $this.machineOrder.compare method]))
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5s<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the arrays allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: an unordered buffer in insertion mode, a heap in extraction
+     * mode.
+     */
+    private T[] heap;
+
+    /**
+     * Sequence number of the entry at each position of {@code heap}
+     * (extraction mode only).
+     */
+    private int[] sequence;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Compares entry {@code i} of {@code array} with entry {@code j}, breaking
+     * ties by sequence number.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the entries
+     * @param sequence
+     *            the sequence numbers of the entries
+     * @param i
+     *            one index
+     * @param j
+     *            the other index
+     * @param order
+     *            total preorder for sorting
+     * @return negative, zero, or positive as entry {@code i} comes before, is,
+     *         or comes after entry {@code j}
+     * @requires 0 <= i < |array| and 0 <= j < |array| and |sequence| =
+     *           |array|
+     * @ensures <pre>
+     * compare < 0 = [STABLE_ORDER(order)((array[i], sequence[i]),
+     *   (array[j], sequence[j])) and not STABLE_ORDER(order)((array[j],
+     *   sequence[j]), (array[i], sequence[i]))]
+     * </pre>
+     */
+    private static <T> int compare(T[] array, int[] sequence, int i, int j,
+            Comparator<T> order) {
+        int result = order.compare(array[i], array[j]);
+        if (result == 0) {
+            result = Integer.compare(sequence[i], sequence[j]);
+        }
+        return result;
+    }
+
+    /**
+     * Given an array that represents a complete binary tree and an index
+     * referring to the root of a subtree that would be a heap except for its
+     * root, sifts the root down to turn that whole subtree into a heap, moving
+     * sequence numbers together with entries.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param sequence
+     *            the sequence numbers of the entries
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array, sequence
+     * @requires <pre>
+     * 0 <= top  and  last < |array| = |sequence|  and
+     * SUBTREE_IS_HEAP([array paired with sequence], 2 * top + 1, last,
+     *     STABLE_ORDER([relation computed by order.compare method]))  and
+     * SUBTREE_IS_HEAP([array paired with sequence], 2 * top + 2, last,
+     *     STABLE_ORDER([relation computed by order.compare method]))
+     * </pre>
+     * @ensures <pre>
+     * SUBTREE_IS_HEAP([array paired with sequence], top, last,
+     *     STABLE_ORDER([relation computed by order.compare method]))  and
+     * [array and sequence are permuted together, within the subtree rooted
+     *  at top]
+     * </pre>
+     */
+    private static <T> void siftDown(T[] array, int[] sequence, int top, int last,
+            Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert sequence != null : "Violation of: sequence is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+        assert array.length == sequence.length : "Violation of: |array| = |sequence|";
+
+        /*
+         * Move a "hole" down from top, as in SortingMachine5a; the root's
+         * sequence number is carried along with it
+         */
+        T root = array[top];
+        int rootSequence = sequence[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last && compare(array, sequence, child + 1, child, order) < 0) {
+                child++;
+            }
+            int c = order.compare(array[child], root);
+            if (c > 0 || (c == 0 && sequence[child] > rootSequence)) {
+                break;
+            }
+            array[hole] = array[child];
+            sequence[hole] = sequence[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+        sequence[hole] = rootSequence;
+    }
+
+    /**
+     * Constructs and returns an array of {@code T} with all entries null.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (T[]) (new Object[capacity]);
+    }
+
+    /**
+     * Checks if the entries of {@code array}, paired with {@code sequence},
+     * at indices 0 through {@code last} form a heap.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param sequence
+     *            the sequence numbers of the entries
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if {@code array[0, last]} is a heap in which no parent ties
+     *         with a child; false otherwise
+     * @requires last < |array| = |sequence|
+     * @ensures <pre>
+     * isHeap = SUBTREE_IS_HEAP([array paired with sequence], 0, last,
+     *     STABLE_ORDER([relation computed by order.compare method]))  and
+     *   [no entry of sequence[1, last] equals that of its parent]
+     * </pre>
+     */
+    private static <T> boolean isHeap(T[] array, int[] sequence, int last,
+            Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        for (int i = 1; isHeap && i <= last; i++) {
+            isHeap = compare(array, sequence, (i - 1) / 2, i, order) < 0;
+        }
+        return isHeap;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.heapSize <= |$this.heap| = |$this.sequence|  and
+     * [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+     * if not $this.insertionMode then
+     *   [$this.sequence[0, $this.heapSize) has no duplicates]  and
+     *   SUBTREE_IS_HEAP([$this.heap[0, $this.heapSize) paired with
+     *                    $this.sequence[0, $this.heapSize)], 0, $this.heapSize - 1,
+     *     STABLE_ORDER([relation computed by $this.machineOrder.compare method]))
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        assert this.heap.length == this.sequence.length
+                : "Violation of: |$this.heap| = |$this.sequence|";
+        for (int i = 0; i < this.heap.length; i++) {
+            assert (this.heap[i] != null) == (i < this.heapSize) : ""
+                    + "Violation of: entries in $this.heap are not null exactly"
+                    + " in [0, $this.heapSize)";
+        }
+        if (!this.insertionMode) {
+            /*
+             * Impractical to check that the sequence numbers have no
+             * duplicates; the strict heap check below catches any parent and
+             * child that share one
+             */
+            assert isHeap(this.heap, this.sequence, this.heapSize - 1,
+                    this.machineOrder) : ""
+                            + "Violation of: if not $this.insertionMode then"
+                            + " SUBTREE_IS_HEAP([$this.heap paired with"
+                            + " $this.sequence], 0, $this.heapSize - 1,"
+                            + " STABLE_ORDER([relation computed by"
+                            + " $this.machineOrder.compare method]))";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * |$this.heap| = |$this.sequence| = INITIAL_CAPACITY  and
+     * $this.heapSize = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<T> order) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.heap = newArray(INITIAL_CAPACITY);
+        this.sequence = new int[INITIAL_CAPACITY];
+        this.heapSize = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5s(Comparator<T> order) {
+        this.createNewRep(order);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass().getConstructor(Comparator.class)
+                    .newInstance(this.machineOrder);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        // Keep the arrays, as SortingMachine5a does
+        Arrays.fill(this.heap, 0, this.heapSize, null);
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5s<?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5s<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5s<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        SortingMachine5s<T> localSource = (SortingMachine5s<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.heap = localSource.heap;
+        this.sequence = localSource.sequence;
+        this.heapSize = localSource.heapSize;
+        localSource.createNewRep(localSource.machineOrder);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // double the arrays when they are full
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+            this.sequence = new int[this.heap.length];
+        }
+        this.heap[this.heapSize] = x;
+        this.heapSize++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+
+        // Entries were appended, so each one's index is its sequence number
+        for (int i = 0; i < this.heapSize; i++) {
+            this.sequence[i] = i;
+        }
+        for (int top = (this.heapSize - 2) / 2; top >= 0; top--) {
+            siftDown(this.heap, this.sequence, top, this.heapSize - 1,
+                    this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.heap[0];
+        this.heapSize--;
+        this.heap[0] = this.heap[this.heapSize];
+        this.sequence[0] = this.sequence[this.heapSize];
+        this.heap[this.heapSize] = null;
+        if (this.heapSize > 0) {
+            siftDown(this.heap, this.sequence, 0, this.heapSize - 1, this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.heapSize;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5sIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5s}.
+     */
+    private final class SortingMachine5sIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5sIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5s.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5s.this.heapSize;
+            assert SortingMachine5s.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5s.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5s.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,670 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine<String>} that compares a packed prefix of each entry
+ * before calling the order. Beside each entry, a {@code long} holds the start
+ * of the entry packed the way the order compares it; prefixes are compared as
+ * unsigned {@code long}s, and the order is called only when two prefixes are
+ * equal. Otherwise it is {@code SortingMachine5a}.
+ *
+ * <p>
+ * Constructed with {@code ignoreCase} false, the prefix is the first four
+ * {@code char}s (eight bytes), as {@code String.compareTo} compares
+ * {@code char}s, and the order must agree with {@code compareTo} whenever the
+ * prefixes of two entries differ. With {@code ignoreCase} true, the order must
+ * agree with {@code String.compareToIgnoreCase} whenever the prefixes differ,
+ * and the prefix is built the way {@code compareToIgnoreCase} folds case on
+ * the running JVM: from Java 16 on it folds and compares whole code points,
+ * so the prefix is the first three case-folded code points (21 bits each);
+ * before that it folds single {@code char}s, so the prefix is the first four
+ * case-folded {@code char}s. From Java 16 on, {@code compareToIgnoreCase}
+ * does not order text with unpaired surrogates by its code points, so an
+ * entry with an unpaired surrogate in its first three code points gets no
+ * prefix, and every comparison with it calls the order. The order may break
+ * the remaining ties any way it likes. Constructed from an order alone, every prefix is zero, so the
+ * machine calls the order for every comparison and accepts any order.
+ *
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on String
+ *  ) : boolean is
+ *  for all x, y, z: String
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * PREFIX (
+ *   s: String,
+ *   usePrefixes: boolean,
+ *   ignoreCase: boolean
+ *  ) : integer is
+ *  [0 if not usePrefixes; otherwise, if ignoreCase and compareToIgnoreCase
+ *   compares code points, NO_PREFIX if one of the first three code points of
+ *   s is an unpaired surrogate, and else those code points, each case-folded
+ *   and in 21 bits, padded with zeros; otherwise the first four chars of s,
+ *   case-folded if ignoreCase and padded with zero chars; read as an unsigned
+ *   64-bit integer with the first code point or char most significant]
+ *
+ * PREFIX_ORDER (
+ *   r: binary relation on String,
+ *   usePrefixes: boolean,
+ *   ignoreCase: boolean
+ *  ) : binary relation on String is
+ *  [the relation that holds for (x, y) iff neither
+ *   PREFIX(x, usePrefixes, ignoreCase) nor PREFIX(y, usePrefixes, ignoreCase)
+ *   is NO_PREFIX and the first is less than the second, or the two are equal
+ *   or one of them is NO_PREFIX and r(x, y)]
+ *
+ * IS_HEAP (
+ *   a: string of String,
+ *   stop: integer,
+ *   r: binary relation on String
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i <= stop)
+ *    (r(a[(i - 1) / 2], a[i]))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * PREFIX_ORDER([relation computed by $this.machineOrder.compare method],
+ *   $this.usePrefixes, $this.ignoreCase) =
+ *   [relation computed by $this.machineOrder.compare method]  and
+ * 0 <= $this.heapSize <= |$this.heap| = |$this.prefixes|  and
+ * [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.heapSize)
+ *   ($this.prefixes[i] = PREFIX($this.heap[i], $this.usePrefixes,
+ *                               $this.ignoreCase))  and
+ * if not $this.insertionMode then
+ *   IS_HEAP($this.heap, $this.heapSize - 1,
+ *     [relation computed by $this.machineOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5t extends SortingMachineSecondary<String> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the arrays allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Number of {@code char}s packed into a prefix.
+     */
+    private static final int PREFIX_CHARS = 4;
+
+    /**
+     * Number of code points packed into a case-folded prefix, when
+     * {@code compareToIgnoreCase} compares code points.
+     */
+    private static final int PREFIX_CODE_POINTS = 3;
+
+    /**
+     * Number of bits for each code point in a prefix: enough for
+     * {@code Character.MAX_CODE_POINT}.
+     */
+    private static final int CODE_POINT_BITS = 21;
+
+    /**
+     * Prefix of an entry whose start no packed prefix can order the way the
+     * order does; comparisons with it always call the order. No other
+     * case-folded code-point prefix has its top bit set.
+     */
+    private static final long NO_PREFIX = -1L;
+
+    /**
+     * Whether {@code String.compareToIgnoreCase} folds and compares whole
+     * code points (Java 16 and later) rather than single {@code char}s:
+     * U+10400 folds to U+10428, which comes after U+FF41 as a code point, but
+     * its first {@code char}, a surrogate, comes before it.
+     */
+    private static final boolean CASE_FOLDS_CODE_POINTS =
+            "\uD801\uDC00".compareToIgnoreCase("\uFF21") > 0;
+
+    /**
+     * Order.
+     */
+    private Comparator<String> machineOrder;
+
+    /**
+     * Whether prefixes are computed at all.
+     */
+    private boolean usePrefixes;
+
+    /**
+     * Whether prefixes are case-folded.
+     */
+    private boolean ignoreCase;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: an unordered buffer in insertion mode, a heap in extraction
+     * mode.
+     */
+    private String[] heap;
+
+    /**
+     * Packed prefix of the entry at each position of {@code heap}.
+     */
+    private long[] prefixes;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * Returns the packed prefix of {@code s}. If {@code ignoreCase} and
+     * {@code compareToIgnoreCase} compares code points, that is its first
+     * three code points, folded as {@code compareToIgnoreCase} folds them and
+     * padded with zeros, with the first one in the most significant 21 bits,
+     * or {@code NO_PREFIX} if one of them is an unpaired surrogate; otherwise it is its first four {@code char}s, folded the same way if
+     * {@code ignoreCase} and padded with zero {@code char}s, with the first
+     * one in the most significant 16 bits.
+     *
+     * @param s
+     *            the {@code String}
+     * @param ignoreCase
+     *            whether to fold case
+     * @return the packed prefix
+     * @ensures prefix = PREFIX(s, true, ignoreCase)
+     */
+    private static long prefix(String s, boolean ignoreCase) {
+        long prefix = 0;
+        if (ignoreCase && CASE_FOLDS_CODE_POINTS) {
+            /*
+             * compareToIgnoreCase pairs a surrogate with the char on either
+             * side of it, depending on where the strings first differ, so
+             * text with an unpaired surrogate is not ordered by its folded
+             * code points; such an entry gets NO_PREFIX
+             */
+            boolean unpaired = false;
+            int i = 0;
+            for (int k = 0; k < PREFIX_CODE_POINTS; k++) {
+                int c = 0;
+                if (i < s.length()) {
+                    c = s.codePointAt(i);
+                    i += Character.charCount(c);
+                    unpaired = unpaired || (Character.MIN_SURROGATE <= c
+                            && c <= Character.MAX_SURROGATE);
+                    c = Character.toLowerCase(Character.toUpperCase(c));
+                }
+                prefix = (prefix << CODE_POINT_BITS) | c;
+            }
+            if (unpaired) {
+                prefix = NO_PREFIX;
+            }
+        } else {
+            int n = Math.min(s.length(), PREFIX_CHARS);
+            for (int i = 0; i < PREFIX_CHARS; i++) {
+                char c = 0;
+                if (i < n) {
+                    c = s.charAt(i);
+                    if (ignoreCase) {
+                        c = Character.toLowerCase(Character.toUpperCase(c));
+                    }
+                }
+                prefix = (prefix << Character.SIZE) | c;
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Compares {@code x} with {@code y}: by prefix, and by {@code order} if
+     * the prefixes are equal or either one is {@code NO_PREFIX}.
+     *
+     * @param x
+     *            one entry
+     * @param xPrefix
+     *            the prefix of {@code x}
+     * @param y
+     *            the other entry
+     * @param yPrefix
+     *            the prefix of {@code y}
+     * @param order
+     *            total preorder for sorting
+     * @return negative, zero, or positive as {@code x} comes before, ties
+     *         with, or comes after {@code y}
+     */
+    private static int compare(String x, long xPrefix, String y, long yPrefix,
+            Comparator<String> order) {
+        int result;
+        if (xPrefix == yPrefix || xPrefix == NO_PREFIX || yPrefix == NO_PREFIX) {
+            result = order.compare(x, y);
+        } else {
+            result = Long.compareUnsigned(xPrefix, yPrefix);
+        }
+        return result;
+    }
+
+    /**
+     * Compares entry {@code i} of {@code array} with entry {@code j}: by
+     * prefix, and by {@code order} if the prefixes are equal or either one is
+     * {@code NO_PREFIX}.
+     *
+     * @param array
+     *            the entries
+     * @param prefixes
+     *            the prefixes of the entries
+     * @param i
+     *            one index
+     * @param j
+     *            the other index
+     * @param order
+     *            total preorder for sorting
+     * @return negative, zero, or positive as entry {@code i} comes before,
+     *         ties with, or comes after entry {@code j}
+     * @requires 0 <= i < |array| and 0 <= j < |array| and |prefixes| =
+     *           |array|
+     */
+    private static int compare(String[] array, long[] prefixes, int i, int j,
+            Comparator<String> order) {
+        return compare(array[i], prefixes[i], array[j], prefixes[j], order);
+    }
+
+    /**
+     * Sifts the entry at index {@code top} of {@code array} down until the
+     * subtree rooted at {@code top}, through index {@code last}, is a heap,
+     * moving prefixes together with entries.
+     *
+     * @param array
+     *            the complete binary tree
+     * @param prefixes
+     *            the prefixes of the entries
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @updates array, prefixes
+     * @requires <pre>
+     * 0 <= top  and  last < |array| = |prefixes|  and
+     * [both subtrees of top are heaps through index last]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * [the subtree rooted at top is a heap through index last]  and
+     * [array and prefixes are permuted together, within the subtree rooted
+     *  at top]
+     * </pre>
+     */
+    private static void siftDown(String[] array, long[] prefixes, int top, int last,
+            Comparator<String> order) {
+        assert array != null : "Violation of: array is not null";
+        assert prefixes != null : "Violation of: prefixes is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+        assert array.length == prefixes.length : "Violation of: |array| = |prefixes|";
+
+        /*
+         * Move a "hole" down from top, as in SortingMachine5a; the root's
+         * prefix is carried along with it
+         */
+        String root = array[top];
+        long rootPrefix = prefixes[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last && compare(array, prefixes, child + 1, child, order) < 0) {
+                child++;
+            }
+            if (compare(array[child], prefixes[child], root, rootPrefix, order) >= 0) {
+                break;
+            }
+            array[hole] = array[child];
+            prefixes[hole] = prefixes[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+        prefixes[hole] = rootPrefix;
+    }
+
+    /**
+     * Checks if the entries of the given {@code array} at indices 0 through
+     * {@code last} form a heap.
+     *
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if {@code array[0, last]} is a heap; false otherwise
+     * @requires last < |array|
+     * @ensures isHeap = IS_HEAP(array, last, [relation computed by order.compare
+     *          method])
+     */
+    private static boolean isHeap(String[] array, int last, Comparator<String> order) {
+        assert array != null : "Violation of: array is not null";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        for (int i = 1; isHeap && i <= last; i++) {
+            isHeap = order.compare(array[(i - 1) / 2], array[i]) <= 0;
+        }
+        return isHeap;
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.heapSize <= |$this.heap| = |$this.prefixes|  and
+     * [entries in $this.heap are not null exactly in [0, $this.heapSize)]  and
+     * for all i: integer
+     *     where (0 <= i  and  i < $this.heapSize)
+     *   ($this.prefixes[i] = PREFIX($this.heap[i], $this.usePrefixes,
+     *                               $this.ignoreCase))  and
+     * if not $this.insertionMode then
+     *   IS_HEAP($this.heap, $this.heapSize - 1,
+     *     [relation computed by $this.machineOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        assert this.heap.length == this.prefixes.length
+                : "Violation of: |$this.heap| = |$this.prefixes|";
+        for (int i = 0; i < this.heap.length; i++) {
+            assert (this.heap[i] != null) == (i < this.heapSize) : ""
+                    + "Violation of: entries in $this.heap are not null exactly"
+                    + " in [0, $this.heapSize)";
+        }
+        for (int i = 0; i < this.heapSize; i++) {
+            long expected = 0;
+            if (this.usePrefixes) {
+                expected = prefix(this.heap[i], this.ignoreCase);
+            }
+            assert this.prefixes[i] == expected : ""
+                    + "Violation of: $this.prefixes[i] = PREFIX($this.heap[i],"
+                    + " $this.usePrefixes, $this.ignoreCase)";
+        }
+        if (!this.insertionMode) {
+            assert isHeap(this.heap, this.heapSize - 1, this.machineOrder) : ""
+                    + "Violation of: if not $this.insertionMode then"
+                    + " IS_HEAP($this.heap, $this.heapSize - 1,"
+                    + " [relation computed by $this.machineOrder.compare method])";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param prefixed
+     *            whether prefixes are computed
+     * @param caseFolded
+     *            whether prefixes are case-folded
+     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.machineOrder = order  and
+     * $this.usePrefixes = prefixed  and
+     * $this.ignoreCase = caseFolded  and
+     * |$this.heap| = |$this.prefixes| = INITIAL_CAPACITY  and
+     * $this.heapSize = 0
+     * </pre>
+     */
+    private void createNewRep(Comparator<String> order, boolean prefixed,
+            boolean caseFolded) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.usePrefixes = prefixed;
+        this.ignoreCase = caseFolded;
+        this.heap = new String[INITIAL_CAPACITY];
+        this.prefixes = new long[INITIAL_CAPACITY];
+        this.heapSize = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order, without prefixes: every comparison calls
+     * {@code order}.
+     *
+     * @param order
+     *            total preorder for sorting
+     */
+    public SortingMachine5t(Comparator<String> order) {
+        this.createNewRep(order, false, false);
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Constructor from order and case sensitivity, comparing prefixes before
+     * calling {@code order}.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param ignoreCase
+     *            whether {@code order} ignores case
+     * @requires <pre>
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])  and
+     * PREFIX_ORDER([relation computed by order.compare method], true,
+     *   ignoreCase) = [relation computed by order.compare method]
+     * </pre>
+     */
+    public SortingMachine5t(Comparator<String> order, boolean ignoreCase) {
+        this.createNewRep(order, true, ignoreCase);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final SortingMachine<String> newInstance() {
+        try {
+            SortingMachine<String> result;
+            if (this.usePrefixes) {
+                result = this.getClass().getConstructor(Comparator.class, boolean.class)
+                        .newInstance(this.machineOrder, this.ignoreCase);
+            } else {
+                result = this.getClass().getConstructor(Comparator.class)
+                        .newInstance(this.machineOrder);
+            }
+            return result;
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        // Keep the arrays, as SortingMachine5a does
+        Arrays.fill(this.heap, 0, this.heapSize, null);
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<String> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5t
+                : "" + "Violation of: source is of dynamic type SortingMachine5t";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case.
+         */
+        SortingMachine5t localSource = (SortingMachine5t) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.usePrefixes = localSource.usePrefixes;
+        this.ignoreCase = localSource.ignoreCase;
+        this.heap = localSource.heap;
+        this.prefixes = localSource.prefixes;
+        this.heapSize = localSource.heapSize;
+        localSource.createNewRep(localSource.machineOrder, localSource.usePrefixes,
+                localSource.ignoreCase);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(String x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // double the arrays when they are full
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+            this.prefixes = Arrays.copyOf(this.prefixes, 2 * this.prefixes.length);
+        }
+        this.heap[this.heapSize] = x;
+        if (this.usePrefixes) {
+            this.prefixes[this.heapSize] = prefix(x, this.ignoreCase);
+        }
+        this.heapSize++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        for (int top = (this.heapSize - 2) / 2; top >= 0; top--) {
+            siftDown(this.heap, this.prefixes, top, this.heapSize - 1,
+                    this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final String removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        String first = this.heap[0];
+        this.heapSize--;
+        this.heap[0] = this.heap[this.heapSize];
+        this.prefixes[0] = this.prefixes[this.heapSize];
+        this.heap[this.heapSize] = null;
+        if (this.heapSize > 0) {
+            siftDown(this.heap, this.prefixes, 0, this.heapSize - 1,
+                    this.machineOrder);
+        }
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<String> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.heapSize;
+    }
+
+    @Override
+    public final Iterator<String> iterator() {
+        return new SortingMachine5tIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5t}.
+     */
+    private final class SortingMachine5tIterator implements Iterator<String> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5tIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5t.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5t.this.heapSize;
+            assert SortingMachine5t.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public String next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            String next = SortingMachine5t.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5t.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
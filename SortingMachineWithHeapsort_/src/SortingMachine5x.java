@@ -0,0 +1,600 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} ordered by a key computed from each entry, for orders
+ * whose comparisons are expensive to compute from the entries themselves
+ * (e.g., {@code String.compareToIgnoreCase}). The key of each entry is
+ * computed once, when it is added, and kept in an array parallel to the
+ * entries; the heap operations compare only the cached keys. Otherwise it is
+ * {@code SortingMachine5a}.
+ *
+ * <p>
+ * The machine's order, as reported by {@code order}, compares two entries by
+ * extracting their keys and comparing those with the key order. A machine
+ * constructed from an order on entries alone uses each entry as its own key
+ * and reports that order.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @param <K>
+ *            type of the keys
+ * @mathdefinitions <pre>
+ * IS_TOTAL_PREORDER (
+ *   r: binary relation on K
+ *  ) : boolean is
+ *  for all x, y, z: K
+ *   ((r(x, y) or r(y, x))  and
+ *    (if (r(x, y) and r(y, z)) then r(x, z)))
+ *
+ * IS_HEAP (
+ *   a: string of K,
+ *   stop: integer,
+ *   r: binary relation on K
+ *  ) : boolean is
+ *  for all i: integer
+ *      where (0 < i  and  i <= stop)
+ *    (r(a[(i - 1) / 2], a[i]))
+ * </pre>
+ * @convention <pre>
+ * IS_TOTAL_PREORDER([relation computed by $this.keyOrder.compare method]  and
+ * [$this.machineOrder compares entries by $this.keyExtractor and
+ *  $this.keyOrder]  and
+ * 0 <= $this.heapSize <= |$this.heap| = |$this.keys|  and
+ * [entries in $this.heap and $this.keys are not null exactly in
+ *  [0, $this.heapSize)]  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.heapSize)
+ *   ($this.keys[i] = $this.keyExtractor($this.heap[i]))  and
+ * if not $this.insertionMode then
+ *   IS_HEAP($this.keys, $this.heapSize - 1,
+ *     [relation computed by $this.keyOrder.compare method])
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
+ * </pre>
+ *
+ * @author Yoora Choi
+ *
+ */
+public class SortingMachine5x<T, K> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Capacity of the arrays allocated for a new representation.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Function computing the key of an entry.
+     */
+    private Function<T, K> keyExtractor;
+
+    /**
+     * Order on keys.
+     */
+    private Comparator<K> keyOrder;
+
+    /**
+     * Order on entries, through their keys.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Entries: an unordered buffer in insertion mode, a heap in extraction
+     * mode.
+     */
+    private T[] heap;
+
+    /**
+     * Key of the entry at each position of {@code heap}.
+     */
+    private K[] keys;
+
+    /**
+     * Number of entries in use at the front of {@code heap}.
+     */
+    private int heapSize;
+
+    /**
+     * {@code Comparator} on entries that compares their keys.
+     *
+     * @param <T>
+     *            type of the entries
+     * @param <K>
+     *            type of the keys
+     */
+    private static final class KeyOrder<T, K> implements Comparator<T> {
+
+        /**
+         * Function computing the key of an entry.
+         */
+        private final Function<T, K> keyExtractor;
+
+        /**
+         * Order on keys.
+         */
+        private final Comparator<K> keyOrder;
+
+        /**
+         * Constructor.
+         *
+         * @param keyExtractor
+         *            function computing the key of an entry
+         * @param keyOrder
+         *            order on keys
+         */
+        private KeyOrder(Function<T, K> keyExtractor, Comparator<K> keyOrder) {
+            this.keyExtractor = keyExtractor;
+            this.keyOrder = keyOrder;
+        }
+
+        @Override
+        public int compare(T x, T y) {
+            return this.keyOrder.compare(this.keyExtractor.apply(x),
+                    this.keyExtractor.apply(y));
+        }
+
+    }
+
+    /**
+     * Key extractor that returns the entry itself, used when the machine is
+     * constructed from an order on entries.
+     *
+     * @param <T>
+     *            type of the entries
+     */
+    private static final class Identity<T> implements Function<T, T> {
+
+        @Override
+        public T apply(T x) {
+            return x;
+        }
+
+    }
+
+    /**
+     * Sifts the entry at index {@code top} of {@code array} down until the
+     * subtree rooted at {@code top}, through index {@code last}, is a heap
+     * of keys, moving the entries of {@code array} together with their keys.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param <K>
+     *            type of the keys
+     * @param array
+     *            the entries
+     * @param keys
+     *            the keys of the entries: the complete binary tree
+     * @param top
+     *            the index of the root of the "subtree"
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder on keys
+     * @updates array, keys
+     * @requires <pre>
+     * 0 <= top  and  last < |array| = |keys|  and
+     * [both subtrees of top are heaps of keys through index last]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     * @ensures <pre>
+     * [the subtree of keys rooted at top is a heap through index last]  and
+     * [array and keys are permuted together, within the subtree rooted at
+     *  top]
+     * </pre>
+     */
+    private static <T, K> void siftDown(T[] array, K[] keys, int top, int last,
+            Comparator<K> order) {
+        assert array != null : "Violation of: array is not null";
+        assert keys != null : "Violation of: keys is not null";
+        assert order != null : "Violation of: order is not null";
+        assert 0 <= top : "Violation of: 0 <= top";
+        assert last < array.length : "Violation of: last < |array|";
+        assert array.length == keys.length : "Violation of: |array| = |keys|";
+
+        /*
+         * Move a "hole" down from top, as in SortingMachine5a, comparing only
+         * keys; each entry moves along with its key
+         */
+        T root = array[top];
+        K rootKey = keys[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+
+        while (child <= last) {
+            if (child < last && order.compare(keys[child + 1], keys[child]) < 0) {
+                child++;
+            }
+            if (order.compare(keys[child], rootKey) >= 0) {
+                break;
+            }
+            array[hole] = array[child];
+            keys[hole] = keys[child];
+            hole = child;
+            child = 2 * hole + 1;
+        }
+
+        array[hole] = root;
+        keys[hole] = rootKey;
+    }
+
+    /**
+     * Checks if the entries of the given {@code array} at indices 0 through
+     * {@code last} form a heap.
+     *
+     * @param <K>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if {@code array[0, last]} is a heap; false otherwise
+     * @requires last < |array|
+     * @ensures isHeap = IS_HEAP(array, last, [relation computed by order.compare
+     *          method])
+     */
+    private static <K> boolean isHeap(K[] array, int last, Comparator<K> order) {
+        assert array != null : "Violation of: array is not null";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        for (int i = 1; isHeap && i <= last; i++) {
+            isHeap = order.compare(array[(i - 1) / 2], array[i]) <= 0;
+        }
+        return isHeap;
+    }
+
+    /**
+     * Constructs and returns an array of {@code E} with all entries null.
+     *
+     * @param <E>
+     *            type of array entries
+     * @param capacity
+     *            the length of the new array
+     * @return the new array
+     * @requires capacity >= 0
+     * @ensures <pre>
+     * |newArray| = capacity  and
+     * [every entry in newArray is null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E[] newArray(int capacity) {
+        assert capacity >= 0 : "Violation of: capacity >= 0";
+        /*
+         * With "new E[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        return (E[]) (new Object[capacity]);
+    }
+
+    /**
+     * Checks that the part of the convention repeated below holds for the
+     * current representation.
+     *
+     * @return true if the convention holds (or if assertion checking is off);
+     *         otherwise reports a violated assertion
+     * @convention <pre>
+     * 0 <= $this.heapSize <= |$this.heap| = |$this.keys|  and
+     * [entries in $this.heap and $this.keys are not null exactly in
+     *  [0, $this.heapSize)]  and
+     * if not $this.insertionMode then
+     *   IS_HEAP($this.keys, $this.heapSize - 1,
+     *     [relation computed by $this.keyOrder.compare method])
+     * </pre>
+     */
+    private boolean conventionHolds() {
+        assert 0 <= this.heapSize : "Violation of: 0 <= $this.heapSize";
+        assert this.heapSize <= this.heap.length
+                : "Violation of: $this.heapSize <= |$this.heap|";
+        assert this.heap.length == this.keys.length
+                : "Violation of: |$this.heap| = |$this.keys|";
+        for (int i = 0; i < this.heap.length; i++) {
+            assert (this.heap[i] != null) == (i < this.heapSize)
+                    && (this.keys[i] != null) == (i < this.heapSize) : ""
+                            + "Violation of: entries in $this.heap and $this.keys"
+                            + " are not null exactly in [0, $this.heapSize)";
+        }
+        /*
+         * Impractical to check that each key is that of its entry, since that
+         * would mean computing every key again
+         */
+        if (!this.insertionMode) {
+            assert isHeap(this.keys, this.heapSize - 1, this.keyOrder) : ""
+                    + "Violation of: if not $this.insertionMode then"
+                    + " IS_HEAP($this.keys, $this.heapSize - 1,"
+                    + " [relation computed by $this.keyOrder.compare method])";
+        }
+        return true;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param extractor
+     *            function computing the key of an entry
+     * @param order
+     *            total preorder on keys
+     * @param entryOrder
+     *            order on entries, through their keys
+     * @requires <pre>
+     * IS_TOTAL_PREORDER([relation computed by order.compare method]  and
+     * [entryOrder compares entries by extractor and order]
+     * </pre>
+     * @ensures <pre>
+     * $this.insertionMode = true  and
+     * $this.keyExtractor = extractor  and
+     * $this.keyOrder = order  and
+     * $this.machineOrder = entryOrder  and
+     * |$this.heap| = |$this.keys| = INITIAL_CAPACITY  and
+     * $this.heapSize = 0
+     * </pre>
+     */
+    private void createNewRep(Function<T, K> extractor, Comparator<K> order,
+            Comparator<T> entryOrder) {
+
+        // Create the initial representation by post-condition
+        this.insertionMode = true;
+        this.keyExtractor = extractor;
+        this.keyOrder = order;
+        this.machineOrder = entryOrder;
+        this.heap = newArray(INITIAL_CAPACITY);
+        this.keys = newArray(INITIAL_CAPACITY);
+        this.heapSize = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from key extractor and key order.
+     *
+     * @param keyExtractor
+     *            function computing the key of an entry
+     * @param keyOrder
+     *            total preorder on keys
+     * @requires <pre>
+     * [keyExtractor.apply returns a non-null key, and always the same one for
+     *  the same entry]  and
+     * IS_TOTAL_PREORDER([relation computed by keyOrder.compare method])
+     * </pre>
+     */
+    public SortingMachine5x(Function<T, K> keyExtractor, Comparator<K> keyOrder) {
+        assert keyExtractor != null : "Violation of: keyExtractor is not null";
+        assert keyOrder != null : "Violation of: keyOrder is not null";
+        this.createNewRep(keyExtractor, keyOrder,
+                new KeyOrder<T, K>(keyExtractor, keyOrder));
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Constructor from order, for entries that are their own keys; then the
+     * machine behaves like {@code SortingMachine5a}. {@code K} must be
+     * {@code T}.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @requires <pre>
+     * [K = T]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public SortingMachine5x(Comparator<T> order) {
+        assert order != null : "Violation of: order is not null";
+        /*
+         * These casts cannot fail at run time, since K is erased; they are
+         * correct as long as K = T, as required
+         */
+        this.createNewRep((Function<T, K>) new Identity<T>(), (Comparator<K>) order,
+                order);
+        assert this.conventionHolds();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            SortingMachine<T> result;
+            if (this.keyExtractor instanceof Identity<?>) {
+                result = this.getClass().getConstructor(Comparator.class)
+                        .newInstance(this.machineOrder);
+            } else {
+                result = this.getClass().getConstructor(Function.class, Comparator.class)
+                        .newInstance(this.keyExtractor, this.keyOrder);
+            }
+            return result;
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        // Keep the arrays, as SortingMachine5a does
+        Arrays.fill(this.heap, 0, this.heapSize, null);
+        Arrays.fill(this.keys, 0, this.heapSize, null);
+        this.heapSize = 0;
+        this.insertionMode = true;
+        assert this.conventionHolds();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof SortingMachine5x<?, ?>
+                : "" + "Violation of: source is of dynamic type SortingMachine5x<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * SortingMachine5x<?,?>, and the first ? must be T or the call would
+         * not have compiled. The key type cannot be checked; it results in a
+         * warning about an unchecked cast.
+         */
+        SortingMachine5x<T, K> localSource = (SortingMachine5x<T, K>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.keyExtractor = localSource.keyExtractor;
+        this.keyOrder = localSource.keyOrder;
+        this.machineOrder = localSource.machineOrder;
+        this.heap = localSource.heap;
+        this.keys = localSource.keys;
+        this.heapSize = localSource.heapSize;
+        localSource.createNewRep(localSource.keyExtractor, localSource.keyOrder,
+                localSource.machineOrder);
+        assert this.conventionHolds();
+        assert localSource.conventionHolds();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        // double the arrays when they are full
+        if (this.heapSize == this.heap.length) {
+            this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+            this.keys = Arrays.copyOf(this.keys, 2 * this.keys.length);
+        }
+        this.heap[this.heapSize] = x;
+        this.keys[this.heapSize] = this.keyExtractor.apply(x);
+        this.heapSize++;
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        this.insertionMode = false;
+        for (int top = (this.heapSize - 2) / 2; top >= 0; top--) {
+            siftDown(this.heap, this.keys, top, this.heapSize - 1, this.keyOrder);
+        }
+
+        assert this.conventionHolds();
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this.isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.heap[0];
+        this.heapSize--;
+        this.heap[0] = this.heap[this.heapSize];
+        this.keys[0] = this.keys[this.heapSize];
+        this.heap[this.heapSize] = null;
+        this.keys[this.heapSize] = null;
+        if (this.heapSize > 0) {
+            siftDown(this.heap, this.keys, 0, this.heapSize - 1, this.keyOrder);
+        }
+
+        assert this.conventionHolds();
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        assert this.conventionHolds();
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        assert this.conventionHolds();
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        assert this.conventionHolds();
+        return this.heapSize;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new SortingMachine5xIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code SortingMachine5x}.
+     */
+    private final class SortingMachine5xIterator implements Iterator<T> {
+
+        /**
+         * Representation iterator count.
+         */
+        private int arrayCurrentIndex;
+
+        /**
+         * No-argument constructor.
+         */
+        private SortingMachine5xIterator() {
+            this.arrayCurrentIndex = 0;
+            assert SortingMachine5x.this.conventionHolds();
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5x.this.heapSize;
+            assert SortingMachine5x.this.conventionHolds();
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T next = SortingMachine5x.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
+            assert SortingMachine5x.this.conventionHolds();
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,1209 @@
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.sortingmachine.SortingMachine;
+
+/**
+ * Micro-benchmarks for the {@code SortingMachine} implementations. Each
+ * benchmark is run a few times to warm up the JIT and then measured; reported
+ * times are the mean of the measured runs. Run with assertion checking off
+ * (no {@code -ea}), since the kernel's convention checks are far more
+ * expensive than the code being measured.
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class SortingMachineBenchmark {
+
+    /**
+     * Number of unmeasured runs before each benchmark.
+     */
+    private static final int WARMUP_RUNS = 3;
+
+    /**
+     * Number of measured runs for each benchmark.
+     */
+    private static final int MEASURED_RUNS = 5;
+
+    /**
+     * Default input sizes.
+     */
+    private static final int[] SIZES = { 1_000, 100_000, 1_000_000 };
+
+    /**
+     * Seed for the pseudo-random inputs, so runs are reproducible.
+     */
+    private static final long SEED = 42L;
+
+    /**
+     * Largest number of producer threads in the concurrent {@code add}
+     * benchmark.
+     */
+    private static final int MAX_PRODUCERS = 32;
+
+    /**
+     * Number of distinct values in the inputs with many ties.
+     */
+    private static final int DISTINCT_KEYS = 100;
+
+    /**
+     * Number of runs in the "few runs" input of the adaptive benchmark.
+     */
+    private static final int FEW_RUNS = 8;
+
+    /**
+     * Largest step between consecutive entries of a run, exclusive.
+     */
+    private static final int RUN_STEP = 4;
+
+    /**
+     * Number of shards merged by the meld benchmark.
+     */
+    private static final int SHARDS = 16;
+
+    /**
+     * Text whose words are sorted by the words benchmark.
+     */
+    private static final String WORDS_FILE =
+            "../TagCloudGenerator_project/data/lesmiz.txt";
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Nanoseconds per microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachineBenchmark() {
+    }
+
+    /**
+     * {@code Comparator<Integer>} that counts how many times it is called.
+     */
+    private static final class CountingOrder implements Comparator<Integer> {
+
+        /**
+         * Number of calls to {@code compare} so far.
+         */
+        private long count = 0;
+
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            this.count++;
+            return o1.compareTo(o2);
+        }
+
+    }
+
+    /**
+     * {@code Comparator<Integer>} in increasing order.
+     */
+    private static final class IntegerLT implements Comparator<Integer> {
+
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return o1.compareTo(o2);
+        }
+
+    }
+
+    /**
+     * {@code Comparator<String>} ignoring case, as
+     * {@code TagCloudGenerator.MapPairKeyLT} orders words.
+     */
+    private static final class StringCaseInsensitiveLT implements Comparator<String> {
+
+        @Override
+        public int compare(String o1, String o2) {
+            return o1.compareToIgnoreCase(o2);
+        }
+
+    }
+
+    /**
+     * {@code Comparator<String>} in increasing order.
+     */
+    private static final class StringLT implements Comparator<String> {
+
+        @Override
+        public int compare(String o1, String o2) {
+            return o1.compareTo(o2);
+        }
+
+    }
+
+    /**
+     * {@code Comparator<long[]>} ordering arrays by their first entry, as an
+     * unsigned number.
+     */
+    private static final class UnsignedFirstLT implements Comparator<long[]> {
+
+        @Override
+        public int compare(long[] o1, long[] o2) {
+            return Long.compareUnsigned(o1[0], o2[0]);
+        }
+
+    }
+
+    /**
+     * Key extractor that folds the case of a {@code String} one
+     * {@code char} at a time, as {@code compareToIgnoreCase} does, so that
+     * comparing the keys with {@code compareTo} orders the strings as
+     * {@code compareToIgnoreCase} does.
+     */
+    private static final class FoldCase implements Function<String, String> {
+
+        @Override
+        public String apply(String s) {
+            char[] folded = new char[s.length()];
+            for (int i = 0; i < folded.length; i++) {
+                folded[i] = Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+            }
+            return new String(folded);
+        }
+
+    }
+
+    /**
+     * Recursive heap construction that {@code SortingMachine5a} used before
+     * it switched to the iterative bottom-up build; kept here only as the
+     * baseline for {@link #benchmarkBuildHeap}.
+     */
+    private static final class RecursiveHeap {
+
+        /**
+         * Private constructor so this utility class cannot be instantiated.
+         */
+        private RecursiveHeap() {
+        }
+
+        /**
+         * Sifts {@code array[top]} down, exchanging it with its smaller child
+         * and recursing, until the subtree rooted at {@code top} is a heap.
+         *
+         * @param <T>
+         *            type of array entries
+         * @param array
+         *            the complete binary tree
+         * @param top
+         *            the index of the root of the "subtree"
+         * @param last
+         *            the index of the last entry in the heap
+         * @param order
+         *            total preorder for sorting
+         * @updates array
+         */
+        private static <T> void siftDown(T[] array, int top, int last,
+                Comparator<T> order) {
+            int left = 2 * top + 1;
+            int right = left + 1;
+            if (left <= last) {
+                int minIdx = left;
+                if (right <= last && order.compare(array[left], array[right]) >= 0) {
+                    minIdx = right;
+                }
+                if (order.compare(array[minIdx], array[top]) < 0) {
+                    T temp = array[top];
+                    array[top] = array[minIdx];
+                    array[minIdx] = temp;
+                    siftDown(array, minIdx, last, order);
+                }
+            }
+        }
+
+        /**
+         * Heapifies the subtree rooted at {@code top} by heapifying both
+         * children recursively and then sifting {@code top} down.
+         *
+         * @param <T>
+         *            type of array entries
+         * @param array
+         *            the complete binary tree
+         * @param top
+         *            the index of the root of the "subtree" to heapify
+         * @param order
+         *            total preorder for sorting
+         * @updates array
+         */
+        private static <T> void heapify(T[] array, int top, Comparator<T> order) {
+            int left = 2 * top + 1;
+            int right = left + 1;
+            int last = array.length - 1;
+            if (left <= last) {
+                heapify(array, left, order);
+            }
+            if (right <= last) {
+                heapify(array, right, order);
+            }
+            siftDown(array, top, last, order);
+        }
+
+    }
+
+    /**
+     * Returns {@code n} pseudo-random {@code Integer}s.
+     *
+     * @param n
+     *            number of entries
+     * @return the entries
+     */
+    private static Integer[] randomInput(int n) {
+        Random rnd = new Random(SEED);
+        Integer[] input = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            input[i] = rnd.nextInt();
+        }
+        return input;
+    }
+
+    /**
+     * Compares heap construction in {@code SortingMachine5a} (iterative,
+     * bottom-up, in place) with the former recursive construction, which also
+     * paid for copying the entries out of a {@code Queue}: reports
+     * comparisons per entry and wall time of {@code changeToExtractionMode}.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkBuildHeap(SimpleWriter out, int n) {
+        Integer[] input = randomInput(n);
+        long recursiveNanos = 0;
+        long recursiveCompares = 0;
+        long iterativeNanos = 0;
+        long iterativeCompares = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            boolean measured = run >= WARMUP_RUNS;
+
+            CountingOrder order = new CountingOrder();
+            Queue<Integer> q = new Queue1L<>();
+            for (Integer x : input) {
+                q.enqueue(x);
+            }
+            long start = System.nanoTime();
+            Integer[] array = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = q.dequeue();
+            }
+            RecursiveHeap.heapify(array, 0, order);
+            long elapsed = System.nanoTime() - start;
+            if (measured) {
+                recursiveNanos += elapsed;
+                recursiveCompares += order.count;
+            }
+
+            order = new CountingOrder();
+            SortingMachine5a<Integer> m = new SortingMachine5a<>(order);
+            for (Integer x : input) {
+                m.add(x);
+            }
+            start = System.nanoTime();
+            m.changeToExtractionMode();
+            elapsed = System.nanoTime() - start;
+            if (measured) {
+                iterativeNanos += elapsed;
+                iterativeCompares += order.count;
+            }
+        }
+        report(out, "buildHeap/recursive", n, recursiveNanos, recursiveCompares);
+        report(out, "buildHeap/iterative", n, iterativeNanos, iterativeCompares);
+    }
+
+    /**
+     * Times a full drain by {@code removeFirst} of a machine in extraction mode
+     * holding {@code n} random entries, for {@code SortingMachine5a} (one
+     * entry at a time and in one batch) and for {@code SortingMachine5d} at
+     * each supported arity. Only the drain is timed, since that is where the
+     * heap's depth matters.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkRemoveFirst(SimpleWriter out, int n) {
+        final int[] arities = { 2, 4, 8 };
+        Integer[] input = randomInput(n);
+
+        long nanos = 0;
+        long compares = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            CountingOrder order = new CountingOrder();
+            SortingMachine<Integer> m = new SortingMachine5a<>(order);
+            long elapsed = timeDrain(m, input, order);
+            if (run >= WARMUP_RUNS) {
+                nanos += elapsed;
+                compares += order.count;
+            }
+        }
+        report(out, "removeFirst/5a", n, nanos, compares);
+
+        nanos = 0;
+        compares = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            CountingOrder order = new CountingOrder();
+            SortingMachine5a<Integer> m = new SortingMachine5a<>(order);
+            for (Integer x : input) {
+                m.add(x);
+            }
+            m.changeToExtractionMode();
+            order.count = 0;
+            Integer[] dest = new Integer[n];
+            long start = System.nanoTime();
+            m.removeFirst(n, dest);
+            long elapsed = System.nanoTime() - start;
+            if (run >= WARMUP_RUNS) {
+                nanos += elapsed;
+                compares += order.count;
+            }
+        }
+        report(out, "removeFirst/5a-batch", n, nanos, compares);
+
+        for (int d : arities) {
+            nanos = 0;
+            compares = 0;
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                CountingOrder order = new CountingOrder();
+                SortingMachine<Integer> m = new SortingMachine5d<>(order, d);
+                long elapsed = timeDrain(m, input, order);
+                if (run >= WARMUP_RUNS) {
+                    nanos += elapsed;
+                    compares += order.count;
+                }
+            }
+            report(out, "removeFirst/5d-" + d, n, nanos, compares);
+        }
+    }
+
+    /**
+     * Loads {@code input} into {@code m}, switches it to extraction mode, and
+     * returns the time taken to remove every entry. Comparisons made before
+     * the drain are not counted.
+     *
+     * @param m
+     *            the machine, empty and in insertion mode
+     * @param input
+     *            the entries
+     * @param order
+     *            the counting comparator used by {@code m}
+     * @return nanoseconds spent draining {@code m}
+     * @updates m, order
+     */
+    private static long timeDrain(SortingMachine<Integer> m, Integer[] input,
+            CountingOrder order) {
+        for (Integer x : input) {
+            m.add(x);
+        }
+        m.changeToExtractionMode();
+        order.count = 0;
+        long start = System.nanoTime();
+        while (m.size() > 0) {
+            m.removeFirst();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Times a full sort (add every entry, {@code changeToExtractionMode}, and
+     * drain by {@code removeFirst}) of {@code n} random {@code int}s with the
+     * boxed {@code SortingMachine5a<Integer>} and with
+     * {@code IntSortingMachine}.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkPrimitive(SimpleWriter out, int n) {
+        Integer[] input = randomInput(n);
+        int[] primitiveInput = new int[n];
+        for (int i = 0; i < n; i++) {
+            primitiveInput[i] = input[i];
+        }
+
+        long boxedNanos = 0;
+        long primitiveNanos = 0;
+        long checksum = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            boolean measured = run >= WARMUP_RUNS;
+
+            long start = System.nanoTime();
+            SortingMachine<Integer> boxed = new SortingMachine5a<>(new IntegerLT());
+            for (int x : primitiveInput) {
+                boxed.add(x);
+            }
+            boxed.changeToExtractionMode();
+            while (boxed.size() > 0) {
+                checksum += boxed.removeFirst();
+            }
+            long elapsed = System.nanoTime() - start;
+            if (measured) {
+                boxedNanos += elapsed;
+            }
+
+            start = System.nanoTime();
+            IntSortingMachine primitive = new IntSortingMachine();
+            for (int x : primitiveInput) {
+                primitive.add(x);
+            }
+            primitive.changeToExtractionMode();
+            while (primitive.size() > 0) {
+                checksum -= primitive.removeFirst();
+            }
+            elapsed = System.nanoTime() - start;
+            if (measured) {
+                primitiveNanos += elapsed;
+            }
+        }
+        assert checksum == 0 : "Violation of: both machines return the same entries";
+        reportTime(out, "sort/5a<Integer>", n, boxedNanos);
+        reportTime(out, "sort/IntSortingMachine", n, primitiveNanos);
+    }
+
+    /**
+     * Times {@code changeToExtractionMode} followed by a full drain of
+     * {@code n} random entries with {@code SortingMachine5a} and with
+     * {@code SortingMachine5p} sorting in fork/join pools of parallelism 1, 2,
+     * 4, ... up to the number of available processors.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkParallel(SimpleWriter out, int n) {
+        Integer[] input = randomInput(n);
+        Comparator<Integer> order = new IntegerLT();
+
+        long nanos = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            long elapsed = timeSort(new SortingMachine5a<>(order), input);
+            if (run >= WARMUP_RUNS) {
+                nanos += elapsed;
+            }
+        }
+        reportTime(out, "sortDrain/5a", n, nanos);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int p = 1; p <= cores; p *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(p);
+            nanos = 0;
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                long elapsed = timeSort(new SortingMachine5p<>(order, pool), input);
+                if (run >= WARMUP_RUNS) {
+                    nanos += elapsed;
+                }
+            }
+            pool.shutdown();
+            reportTime(out, "sortDrain/5p-" + p + "cores", n, nanos);
+        }
+    }
+
+    /**
+     * Returns {@code n} pseudo-random {@code Integer}s drawn from only
+     * {@link #DISTINCT_KEYS} distinct values, so most entries tie.
+     *
+     * @param n
+     *            number of entries
+     * @return the entries
+     */
+    private static Integer[] duplicateInput(int n) {
+        Random rnd = new Random(SEED);
+        Integer[] input = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            input[i] = rnd.nextInt(DISTINCT_KEYS);
+        }
+        return input;
+    }
+
+    /**
+     * Returns the {@code Integer}s {@code n}, {@code n - 1}, ..., 1.
+     *
+     * @param n
+     *            number of entries
+     * @return the entries
+     */
+    private static Integer[] decreasingInput(int n) {
+        Integer[] input = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            input[i] = n - i;
+        }
+        return input;
+    }
+
+    /**
+     * Returns {@code n} pseudo-random {@code Integer}s in {@code runs}
+     * increasing runs of about equal length.
+     *
+     * @param n
+     *            number of entries
+     * @param runs
+     *            number of runs
+     * @return the entries
+     * @requires 1 <= runs <= n
+     */
+    private static Integer[] runsInput(int n, int runs) {
+        Random rnd = new Random(SEED);
+        Integer[] input = new Integer[n];
+        int value = 0;
+        for (int i = 0; i < n; i++) {
+            if ((long) i * runs % n < runs) {
+                // first entry of a run
+                value = rnd.nextInt(n);
+            }
+            value += rnd.nextInt(RUN_STEP);
+            input[i] = value;
+        }
+        return input;
+    }
+
+    /**
+     * Times {@code add}, {@code changeToExtractionMode}, and a full drain of
+     * {@code n} entries with {@code SortingMachine5a} and with the adaptive
+     * {@code SortingMachine5r}, on sorted input, strictly decreasing input,
+     * input in a few runs, and random input.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkAdaptive(SimpleWriter out, int n) {
+        Comparator<Integer> order = new IntegerLT();
+        Integer[][] inputs = { runsInput(n, 1), decreasingInput(n),
+                runsInput(n, FEW_RUNS), randomInput(n) };
+        String[] names = { "sorted", "decreasing", FEW_RUNS + "runs", "random" };
+
+        for (int k = 0; k < inputs.length; k++) {
+            long heapNanos = 0;
+            long adaptiveNanos = 0;
+            SortingMachine5r.Strategy strategy = null;
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                SortingMachine5r<Integer> adaptive = new SortingMachine5r<>(order);
+                long heap = timeAddSort(new SortingMachine5a<>(order), inputs[k]);
+                long elapsed = timeAddSort(adaptive, inputs[k]);
+                strategy = adaptive.strategy();
+                if (run >= WARMUP_RUNS) {
+                    heapNanos += heap;
+                    adaptiveNanos += elapsed;
+                }
+            }
+            reportTime(out, "addSort/5a-" + names[k], n, heapNanos);
+            reportTime(out, "addSort/5r-" + names[k] + "-" + strategy, n,
+                    adaptiveNanos);
+        }
+    }
+
+    /**
+     * Times a full sort of {@code n} random 16-byte key+value records: as
+     * {@code long[]} pairs in a {@code SortingMachine5a}, and copied through
+     * one reused buffer into and out of a {@code RecordSortingMachine}.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkRecords(SimpleWriter out, int n) {
+        final int recordSize = 2 * Long.BYTES;
+        Integer[] input = randomInput(n);
+        Comparator<long[]> order = new UnsignedFirstLT();
+
+        long objectNanos = 0;
+        long recordNanos = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            long start = System.nanoTime();
+            SortingMachine<long[]> objects = new SortingMachine5a<>(order);
+            for (int i = 0; i < n; i++) {
+                objects.add(new long[] { input[i], i });
+            }
+            objects.changeToExtractionMode();
+            while (objects.size() > 0) {
+                objects.removeFirst();
+            }
+            long sortedObjects = System.nanoTime();
+
+            RecordSortingMachine records = new RecordSortingMachine(recordSize, 0,
+                    Long.BYTES);
+            for (int i = 0; i < n; i++) {
+                buffer.clear();
+                buffer.putLong(input[i]).putLong(i).flip();
+                records.add(buffer);
+            }
+            records.changeToExtractionMode();
+            while (records.size() > 0) {
+                buffer.clear();
+                records.removeFirst(buffer);
+            }
+            long sortedRecords = System.nanoTime();
+
+            if (run >= WARMUP_RUNS) {
+                objectNanos += sortedObjects - start;
+                recordNanos += sortedRecords - sortedObjects;
+            }
+        }
+        reportTime(out, "records/5a-long[]", n, objectNanos);
+        reportTime(out, "records/offHeap", n, recordNanos);
+    }
+
+    /**
+     * Times {@code changeToExtractionMode} followed by a full drain of
+     * {@code n} random entries with {@code SortingMachine5a}, with metrics
+     * disabled and enabled, and prints the enabled machine's metrics.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkMetrics(SimpleWriter out, int n) {
+        Comparator<Integer> order = new IntegerLT();
+        Integer[] input = randomInput(n);
+
+        long plainNanos = 0;
+        long meteredNanos = 0;
+        SortingMachine5a<Integer> metered = null;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            long plain = timeSort(new SortingMachine5a<>(order), input);
+            metered = new SortingMachine5a<>(order);
+            metered.enableMetrics();
+            long elapsed = timeSort(metered, input);
+            if (run >= WARMUP_RUNS) {
+                plainNanos += plain;
+                meteredNanos += elapsed;
+            }
+        }
+        reportTime(out, "sortDrain/5a-noMetrics", n, plainNanos);
+        reportTime(out, "sortDrain/5a-metrics", n, meteredNanos);
+        out.println("  " + metered.metrics());
+    }
+
+    /**
+     * Times merging {@code SHARDS} machines in extraction mode, holding
+     * {@code n} random entries between them, into one machine: for
+     * {@code SortingMachine5a} by draining each shard into the target with
+     * {@code removeFirst} and {@code add}, and for {@code SortingMachine5m}
+     * by {@code meld}.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkMeld(SimpleWriter out, int n) {
+        Comparator<Integer> order = new IntegerLT();
+        Integer[] input = randomInput(n);
+
+        long drainNanos = 0;
+        long meldNanos = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            List<SortingMachine<Integer>> heapShards = new ArrayList<>();
+            List<SortingMachine5m<Integer>> pairingShards = new ArrayList<>();
+            for (int k = 0; k < SHARDS; k++) {
+                heapShards.add(new SortingMachine5a<>(order));
+                pairingShards.add(new SortingMachine5m<>(order));
+            }
+            for (int i = 0; i < n; i++) {
+                heapShards.get(i % SHARDS).add(input[i]);
+                pairingShards.get(i % SHARDS).add(input[i]);
+            }
+            for (int k = 0; k < SHARDS; k++) {
+                heapShards.get(k).changeToExtractionMode();
+                pairingShards.get(k).changeToExtractionMode();
+            }
+
+            long start = System.nanoTime();
+            SortingMachine<Integer> heapTarget = new SortingMachine5a<>(order);
+            for (SortingMachine<Integer> shard : heapShards) {
+                while (shard.size() > 0) {
+                    heapTarget.add(shard.removeFirst());
+                }
+            }
+            long drained = System.nanoTime();
+            SortingMachine5m<Integer> pairingTarget = new SortingMachine5m<>(order);
+            for (SortingMachine5m<Integer> shard : pairingShards) {
+                pairingTarget.meld(shard);
+            }
+            long melded = System.nanoTime();
+
+            if (run >= WARMUP_RUNS) {
+                drainNanos += drained - start;
+                meldNanos += melded - drained;
+            }
+        }
+        reportTime(out, "merge" + SHARDS + "/5a-drain", n, drainNanos);
+        reportTime(out, "merge" + SHARDS + "/5m-meld", n, meldNanos);
+    }
+
+    /**
+     * Times loading {@code n} random entries, and separately the latency from
+     * {@code changeToExtractionMode} to the first entry returned by
+     * {@code removeFirst}, with {@code SortingMachine5a}, which builds its heap
+     * on the switch, and {@code SortingMachine5l}, which builds it while
+     * adding.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkFirstEntry(SimpleWriter out, int n) {
+        Comparator<Integer> order = new IntegerLT();
+        Integer[] input = randomInput(n);
+        List<SortingMachine<Integer>> machines = new ArrayList<>();
+        machines.add(new SortingMachine5a<>(order));
+        machines.add(new SortingMachine5l<>(order));
+        String[] names = { "5a", "5l" };
+
+        for (int k = 0; k < names.length; k++) {
+            SortingMachine<Integer> m = machines.get(k);
+            long addNanos = 0;
+            long firstNanos = 0;
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                m.clear();
+                long start = System.nanoTime();
+                for (Integer x : input) {
+                    m.add(x);
+                }
+                long switched = System.nanoTime();
+                m.changeToExtractionMode();
+                m.removeFirst();
+                long first = System.nanoTime();
+                if (run >= WARMUP_RUNS) {
+                    addNanos += switched - start;
+                    firstNanos += first - switched;
+                }
+            }
+            reportTime(out, "add/" + names[k], n, addNanos);
+            reportTime(out, "firstEntry/" + names[k], n, firstNanos);
+        }
+    }
+
+    /**
+     * Times {@code changeToExtractionMode} followed by a full drain of
+     * {@code n} entries with the unstable {@code SortingMachine5a} and the
+     * stable {@code SortingMachine5s}, on distinct random entries and on
+     * entries with many ties.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkStable(SimpleWriter out, int n) {
+        Comparator<Integer> order = new IntegerLT();
+        Integer[][] inputs = { randomInput(n), duplicateInput(n) };
+        String[] names = { "random", "ties" };
+
+        for (int k = 0; k < inputs.length; k++) {
+            long unstableNanos = 0;
+            long stableNanos = 0;
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                long unstable = timeSort(new SortingMachine5a<>(order), inputs[k]);
+                long stable = timeSort(new SortingMachine5s<>(order), inputs[k]);
+                if (run >= WARMUP_RUNS) {
+                    unstableNanos += unstable;
+                    stableNanos += stable;
+                }
+            }
+            reportTime(out, "sortDrain/5a-" + names[k], n, unstableNanos);
+            reportTime(out, "sortDrain/5s-" + names[k], n, stableNanos);
+        }
+    }
+
+    /**
+     * Reads the words, maximal runs of letters and apostrophes, of the file
+     * named {@code fileName}.
+     *
+     * @param fileName
+     *            the name of the file
+     * @return the words, in the order they appear
+     * @requires [fileName names a readable file]
+     */
+    private static String[] readWords(String fileName) {
+        List<String> words = new ArrayList<>();
+        SimpleReader in = new SimpleReader1L(fileName);
+        while (!in.atEOS()) {
+            for (String word : in.nextLine().split("[^A-Za-z']+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        in.close();
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Times {@code add}, {@code changeToExtractionMode}, and a full drain of
+     * the words of {@link #WORDS_FILE} ordered ignoring case, comparing with
+     * {@code compareToIgnoreCase} in {@code SortingMachine5a}, with keys
+     * cached by {@code SortingMachine5x}, and with prefixes compared first by
+     * {@code SortingMachine5t}.
+     *
+     * @param out
+     *            the output stream
+     * @updates out.content
+     */
+    private static void benchmarkWords(SimpleWriter out) {
+        if (!new File(WORDS_FILE).canRead()) {
+            out.println("skipping words benchmark: cannot read " + WORDS_FILE);
+            return;
+        }
+        String[] words = readWords(WORDS_FILE);
+        Comparator<String> ignoreCase = new StringCaseInsensitiveLT();
+        Function<String, String> foldCase = new FoldCase();
+        Comparator<String> natural = new StringLT();
+
+        long plainNanos = 0;
+        long cachedNanos = 0;
+        long prefixNanos = 0;
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            long plain = timeAddSort(new SortingMachine5a<>(ignoreCase), words);
+            long cached = timeAddSort(new SortingMachine5x<>(foldCase, natural), words);
+            long prefix = timeAddSort(new SortingMachine5t(ignoreCase, true), words);
+            if (run >= WARMUP_RUNS) {
+                plainNanos += plain;
+                cachedNanos += cached;
+                prefixNanos += prefix;
+            }
+        }
+        reportTime(out, "words/5a-ignoreCase", words.length, plainNanos);
+        reportTime(out, "words/5x-cachedKey", words.length, cachedNanos);
+        reportTime(out, "words/5t-prefix", words.length, prefixNanos);
+    }
+
+    /**
+     * Returns the time taken to load {@code input} into {@code m}, switch it
+     * to extraction mode, and remove every entry.
+     *
+     * @param <T>
+     *            type of the entries
+     * @param m
+     *            the machine, empty and in insertion mode
+     * @param input
+     *            the entries
+     * @return nanoseconds spent in {@code add}, {@code changeToExtractionMode},
+     *         and the drain
+     * @updates m
+     */
+    private static <T> long timeAddSort(SortingMachine<T> m, T[] input) {
+        long start = System.nanoTime();
+        for (T x : input) {
+            m.add(x);
+        }
+        m.changeToExtractionMode();
+        while (m.size() > 0) {
+            m.removeFirst();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Adds a slice of an input array to a machine once a start signal is
+     * given, optionally holding the machine's monitor around each
+     * {@code add}.
+     */
+    private static final class Producer implements Runnable {
+
+        /**
+         * The machine.
+         */
+        private final SortingMachine<Integer> machine;
+
+        /**
+         * The entries.
+         */
+        private final Integer[] input;
+
+        /**
+         * Index of the first entry of the slice.
+         */
+        private final int from;
+
+        /**
+         * Index just past the last entry of the slice.
+         */
+        private final int to;
+
+        /**
+         * Whether to synchronize on {@code machine} around each {@code add}.
+         */
+        private final boolean locked;
+
+        /**
+         * Start signal.
+         */
+        private final CountDownLatch start;
+
+        /**
+         * Constructor.
+         *
+         * @param machine
+         *            the machine
+         * @param input
+         *            the entries
+         * @param from
+         *            index of the first entry of the slice
+         * @param to
+         *            index just past the last entry of the slice
+         * @param locked
+         *            whether to synchronize on {@code machine}
+         * @param start
+         *            start signal
+         */
+        private Producer(SortingMachine<Integer> machine, Integer[] input, int from,
+                int to, boolean locked, CountDownLatch start) {
+            this.machine = machine;
+            this.input = input;
+            this.from = from;
+            this.to = to;
+            this.locked = locked;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.start.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (int i = this.from; i < this.to; i++) {
+                if (this.locked) {
+                    synchronized (this.machine) {
+                        this.machine.add(this.input[i]);
+                    }
+                } else {
+                    this.machine.add(this.input[i]);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Times adding {@code n} random entries from 1, 2, 4, ... up to
+     * {@link #MAX_PRODUCERS} threads at once, each adding an equal share,
+     * into {@code SortingMachine5c} and into a {@code SortingMachine5a}
+     * guarded by a single lock. Reports throughput in adds per microsecond.
+     *
+     * @param out
+     *            the output stream
+     * @param n
+     *            number of entries
+     * @updates out.content
+     */
+    private static void benchmarkConcurrentAdd(SimpleWriter out, int n) {
+        Integer[] input = randomInput(n);
+        Comparator<Integer> order = new IntegerLT();
+
+        for (int threads = 1; threads <= MAX_PRODUCERS; threads *= 2) {
+            long lockedNanos = 0;
+            long stripedNanos = 0;
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                long locked = timeConcurrentAdd(new SortingMachine5a<>(order), input,
+                        threads, true);
+                long striped = timeConcurrentAdd(new SortingMachine5c<>(order), input,
+                        threads, false);
+                if (run >= WARMUP_RUNS) {
+                    lockedNanos += locked;
+                    stripedNanos += striped;
+                }
+            }
+            reportThroughput(out, "add/5a-locked-" + threads + "threads", n,
+                    lockedNanos);
+            reportThroughput(out, "add/5c-" + threads + "threads", n, stripedNanos);
+        }
+    }
+
+    /**
+     * Returns the time taken for {@code threads} threads, released together,
+     * to add all of {@code input} to {@code m}.
+     *
+     * @param m
+     *            the machine, empty and in insertion mode
+     * @param input
+     *            the entries
+     * @param threads
+     *            number of producer threads
+     * @param locked
+     *            whether each {@code add} synchronizes on {@code m}
+     * @return nanoseconds from the start signal until every producer has
+     *         finished
+     * @updates m
+     */
+    private static long timeConcurrentAdd(SortingMachine<Integer> m, Integer[] input,
+            int threads, boolean locked) {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) input.length * t / threads);
+            int to = (int) ((long) input.length * (t + 1) / threads);
+            producers[t] = new Thread(new Producer(m, input, from, to, locked, start));
+            producers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while timing producers", e);
+        }
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Loads {@code input} into {@code m} and returns the time taken to switch
+     * it to extraction mode and remove every entry.
+     *
+     * @param m
+     *            the machine, empty and in insertion mode
+     * @param input
+     *            the entries
+     * @return nanoseconds spent in {@code changeToExtractionMode} and the
+     *         drain
+     * @updates m
+     */
+    private static long timeSort(SortingMachine<Integer> m, Integer[] input) {
+        for (Integer x : input) {
+            m.add(x);
+        }
+        long start = System.nanoTime();
+        m.changeToExtractionMode();
+        while (m.size() > 0) {
+            m.removeFirst();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Prints one result line: mean time per run and comparisons per entry.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            the benchmark name
+     * @param n
+     *            number of entries
+     * @param nanos
+     *            total nanoseconds over the measured runs
+     * @param compares
+     *            total comparisons over the measured runs
+     * @updates out.content
+     */
+    private static void report(SimpleWriter out, String name, int n, long nanos,
+            long compares) {
+        double millis = nanos / NANOS_PER_MILLI / MEASURED_RUNS;
+        double perEntry = (double) compares / MEASURED_RUNS / n;
+        out.println(String.format("%-28s n=%-9d %10.3f ms  %6.3f compares/entry",
+                name, n, millis, perEntry));
+    }
+
+    /**
+     * Prints one result line: mean time per run.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            the benchmark name
+     * @param n
+     *            number of entries
+     * @param nanos
+     *            total nanoseconds over the measured runs
+     * @updates out.content
+     */
+    private static void reportTime(SimpleWriter out, String name, int n, long nanos) {
+        double millis = nanos / NANOS_PER_MILLI / MEASURED_RUNS;
+        out.println(String.format("%-28s n=%-9d %10.3f ms", name, n, millis));
+    }
+
+    /**
+     * Prints one result line: mean time per run and throughput.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            the benchmark name
+     * @param n
+     *            number of operations per run
+     * @param nanos
+     *            total nanoseconds over the measured runs
+     * @updates out.content
+     */
+    private static void reportThroughput(SimpleWriter out, String name, int n,
+            long nanos) {
+        double millis = nanos / NANOS_PER_MILLI / MEASURED_RUNS;
+        double perMicro = (double) n * MEASURED_RUNS / (nanos / NANOS_PER_MICRO);
+        out.println(String.format("%-28s n=%-9d %10.3f ms  %8.2f ops/us", name, n,
+                millis, perMicro));
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments: optional input sizes
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int n : sizes) {
+            benchmarkBuildHeap(out, n);
+            benchmarkRemoveFirst(out, n);
+            benchmarkPrimitive(out, n);
+            benchmarkParallel(out, n);
+            benchmarkConcurrentAdd(out, n);
+            benchmarkStable(out, n);
+            benchmarkAdaptive(out, n);
+            benchmarkFirstEntry(out, n);
+            benchmarkMeld(out, n);
+            benchmarkRecords(out, n);
+            benchmarkMetrics(out, n);
+        }
+        benchmarkWords(out);
+        out.close();
+    }
+
+}
@@ -0,0 +1,486 @@
+import java.util.Comparator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters for the work done by a {@code SortingMachine5a} with metrics
+ * enabled: comparator calls, swaps, sift-down depths, and the time spent in
+ * {@code changeToExtractionMode} and in {@code removeFirst}. Sift-downs are
+ * counted both while the heap is built and after each removal. The sift-downs
+ * move a "hole" rather than exchanging entries, so swaps are counted as the
+ * exchanges they stand for: one per level a sift-down moves its entry, and
+ * one per removal that puts the last entry of the heap in place of the root.
+ * The machine calls the {@code record} methods; clients read the counters
+ * through {@link #snapshot}.
+ *
+ * <p>
+ * Each recorded operation is also reported to Java Flight Recorder as a
+ * {@link ExtractionModeEvent} or {@link RemoveFirstEvent}, when a recording
+ * has those events enabled.
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class SortingMachineMetrics {
+
+    /**
+     * JFR event for one {@code changeToExtractionMode}.
+     */
+    @Name("SortingMachine.ChangeToExtractionMode")
+    @Label("Change To Extraction Mode")
+    @Category("Sorting Machine")
+    @Description("Heap construction by changeToExtractionMode")
+    public static final class ExtractionModeEvent extends Event {
+
+        /**
+         * Number of entries in the heap built.
+         */
+        @Label("Entries")
+        private int entries;
+
+        /**
+         * Number of comparator calls.
+         */
+        @Label("Comparisons")
+        private long comparisons;
+
+        /**
+         * Time spent.
+         */
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long time;
+
+    }
+
+    /**
+     * JFR event for one {@code removeFirst}.
+     */
+    @Name("SortingMachine.RemoveFirst")
+    @Label("Remove First")
+    @Category("Sorting Machine")
+    @Description("Removal of the root of the heap by removeFirst")
+    public static final class RemoveFirstEvent extends Event {
+
+        /**
+         * Number of entries left in the heap.
+         */
+        @Label("Entries Left")
+        private int entriesLeft;
+
+        /**
+         * Number of comparator calls.
+         */
+        @Label("Comparisons")
+        private long comparisons;
+
+        /**
+         * Number of levels the sift-down moved the hole.
+         */
+        @Label("Sift Depth")
+        private int siftDepth;
+
+        /**
+         * Time spent.
+         */
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long time;
+
+    }
+
+    /**
+     * Immutable copy of the counters at some moment.
+     */
+    public static final class Snapshot {
+
+        /**
+         * Comparator calls.
+         */
+        private final long comparisons;
+
+        /**
+         * Swaps, counted as exchanges.
+         */
+        private final long swaps;
+
+        /**
+         * Sift-downs, while building the heap and after {@code removeFirst}.
+         */
+        private final long siftDowns;
+
+        /**
+         * Total levels moved by those sift-downs.
+         */
+        private final long siftLevels;
+
+        /**
+         * Most levels moved by one of those sift-downs.
+         */
+        private final int maxSiftDepth;
+
+        /**
+         * {@code changeToExtractionMode} calls.
+         */
+        private final long extractionModeCalls;
+
+        /**
+         * Nanoseconds spent in {@code changeToExtractionMode}.
+         */
+        private final long extractionModeNanos;
+
+        /**
+         * {@code removeFirst} calls.
+         */
+        private final long removeFirstCalls;
+
+        /**
+         * Nanoseconds spent in {@code removeFirst}.
+         */
+        private final long removeFirstNanos;
+
+        /**
+         * Constructor from the counters of {@code m}.
+         *
+         * @param m
+         *            the metrics to copy
+         */
+        private Snapshot(SortingMachineMetrics m) {
+            this.comparisons = m.comparisons;
+            this.swaps = m.swaps;
+            this.siftDowns = m.siftDowns;
+            this.siftLevels = m.siftLevels;
+            this.maxSiftDepth = m.maxSiftDepth;
+            this.extractionModeCalls = m.extractionModeCalls;
+            this.extractionModeNanos = m.extractionModeNanos;
+            this.removeFirstCalls = m.removeFirstCalls;
+            this.removeFirstNanos = m.removeFirstNanos;
+        }
+
+        /**
+         * Reports the number of comparator calls.
+         *
+         * @return the number of comparator calls
+         */
+        public long comparisons() {
+            return this.comparisons;
+        }
+
+        /**
+         * Reports the number of swaps: the levels moved by all sift-downs,
+         * plus the removals that put the last entry of the heap in place of
+         * the root.
+         *
+         * @return the number of swaps
+         */
+        public long swaps() {
+            return this.swaps;
+        }
+
+        /**
+         * Reports the number of sift-downs done by
+         * {@code changeToExtractionMode} and {@code removeFirst}.
+         *
+         * @return the number of sift-downs
+         */
+        public long siftDowns() {
+            return this.siftDowns;
+        }
+
+        /**
+         * Reports the mean number of levels moved by the sift-downs done by
+         * {@code changeToExtractionMode} and {@code removeFirst}.
+         *
+         * @return the mean sift-down depth, or 0 if there were none
+         */
+        public double meanSiftDepth() {
+            double mean = 0;
+            if (this.siftDowns > 0) {
+                mean = (double) this.siftLevels / this.siftDowns;
+            }
+            return mean;
+        }
+
+        /**
+         * Reports the most levels moved by a sift-down done by
+         * {@code changeToExtractionMode} or {@code removeFirst}.
+         *
+         * @return the largest sift-down depth
+         */
+        public int maxSiftDepth() {
+            return this.maxSiftDepth;
+        }
+
+        /**
+         * Reports the number of {@code changeToExtractionMode} calls.
+         *
+         * @return the number of calls
+         */
+        public long extractionModeCalls() {
+            return this.extractionModeCalls;
+        }
+
+        /**
+         * Reports the time spent in {@code changeToExtractionMode}.
+         *
+         * @return the time in nanoseconds
+         */
+        public long extractionModeNanos() {
+            return this.extractionModeNanos;
+        }
+
+        /**
+         * Reports the number of {@code removeFirst} calls.
+         *
+         * @return the number of calls
+         */
+        public long removeFirstCalls() {
+            return this.removeFirstCalls;
+        }
+
+        /**
+         * Reports the time spent in {@code removeFirst}.
+         *
+         * @return the time in nanoseconds
+         */
+        public long removeFirstNanos() {
+            return this.removeFirstNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "comparisons=%d swaps=%d siftDowns=%d meanSiftDepth=%.2f"
+                            + " maxSiftDepth=%d extractionMode=%d/%dns"
+                            + " removeFirst=%d/%dns",
+                    this.comparisons, this.swaps, this.siftDowns,
+                    this.meanSiftDepth(), this.maxSiftDepth,
+                    this.extractionModeCalls, this.extractionModeNanos,
+                    this.removeFirstCalls, this.removeFirstNanos);
+        }
+
+    }
+
+    /**
+     * {@code Comparator} that counts its calls into a
+     * {@code SortingMachineMetrics} and otherwise defers to another.
+     *
+     * @param <T>
+     *            type of the compared entries
+     */
+    private static final class CountingOrder<T> implements Comparator<T> {
+
+        /**
+         * The metrics to count into.
+         */
+        private final SortingMachineMetrics metrics;
+
+        /**
+         * The order deferred to.
+         */
+        private final Comparator<T> order;
+
+        /**
+         * Constructor from metrics and order.
+         *
+         * @param metrics
+         *            the metrics to count into
+         * @param order
+         *            the order deferred to
+         */
+        private CountingOrder(SortingMachineMetrics metrics, Comparator<T> order) {
+            this.metrics = metrics;
+            this.order = order;
+        }
+
+        @Override
+        public int compare(T o1, T o2) {
+            this.metrics.comparisons++;
+            return this.order.compare(o1, o2);
+        }
+
+    }
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Comparator calls.
+     */
+    private long comparisons;
+
+    /**
+     * Comparator calls when the current operation started.
+     */
+    private long comparisonsAtStart;
+
+    /**
+     * Swaps, counted as exchanges.
+     */
+    private long swaps;
+
+    /**
+     * Sift-downs, while building the heap and after {@code removeFirst}.
+     */
+    private long siftDowns;
+
+    /**
+     * Total levels moved by those sift-downs.
+     */
+    private long siftLevels;
+
+    /**
+     * Most levels moved by one of those sift-downs.
+     */
+    private int maxSiftDepth;
+
+    /**
+     * {@code changeToExtractionMode} calls.
+     */
+    private long extractionModeCalls;
+
+    /**
+     * Nanoseconds spent in {@code changeToExtractionMode}.
+     */
+    private long extractionModeNanos;
+
+    /**
+     * {@code removeFirst} calls.
+     */
+    private long removeFirstCalls;
+
+    /**
+     * Nanoseconds spent in {@code removeFirst}.
+     */
+    private long removeFirstNanos;
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor: all counters zero.
+     */
+    public SortingMachineMetrics() {
+    }
+
+    /*
+     * Public methods ---------------------------------------------------------
+     */
+
+    /**
+     * Returns a {@code Comparator} that behaves as {@code order} and counts
+     * each call into {@code this}.
+     *
+     * @param <T>
+     *            type of the compared entries
+     * @param order
+     *            the order to count
+     * @return the counting order
+     */
+    public <T> Comparator<T> counting(Comparator<T> order) {
+        assert order != null : "Violation of: order is not null";
+        return new CountingOrder<T>(this, order);
+    }
+
+    /**
+     * Marks the start of an operation to be recorded.
+     *
+     * @return the start time, to be passed to the matching {@code record}
+     *         method
+     */
+    public long start() {
+        this.comparisonsAtStart = this.comparisons;
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a {@code changeToExtractionMode} that started at {@code start}.
+     *
+     * @param start
+     *            the time returned by {@link #start}
+     * @param entries
+     *            the number of entries in the heap built
+     */
+    public void recordExtractionMode(long start, int entries) {
+        long time = System.nanoTime() - start;
+        this.extractionModeCalls++;
+        this.extractionModeNanos += time;
+
+        ExtractionModeEvent event = new ExtractionModeEvent();
+        if (event.shouldCommit()) {
+            event.entries = entries;
+            event.comparisons = this.comparisons - this.comparisonsAtStart;
+            event.time = time;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a {@code removeFirst} that started at {@code start}.
+     *
+     * @param start
+     *            the time returned by {@link #start}
+     * @param entriesLeft
+     *            the number of entries left in the heap
+     * @param swapped
+     *            whether the last entry of the heap was put in place of the
+     *            root
+     * @param siftDepth
+     *            the number of levels the sift-down moved, or -1 if there was
+     *            no sift-down
+     */
+    public void recordRemoveFirst(long start, int entriesLeft, boolean swapped,
+            int siftDepth) {
+        long time = System.nanoTime() - start;
+        this.removeFirstCalls++;
+        this.removeFirstNanos += time;
+        if (swapped) {
+            this.swaps++;
+        }
+        if (siftDepth >= 0) {
+            this.recordSiftDown(siftDepth);
+        }
+
+        RemoveFirstEvent event = new RemoveFirstEvent();
+        if (event.shouldCommit()) {
+            event.entriesLeft = entriesLeft;
+            event.comparisons = this.comparisons - this.comparisonsAtStart;
+            event.siftDepth = Math.max(siftDepth, 0);
+            event.time = time;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a sift-down that moved its entry {@code depth} levels, which
+     * stands for {@code depth} swaps.
+     *
+     * @param depth
+     *            the number of levels the sift-down moved
+     * @requires depth >= 0
+     */
+    public void recordSiftDown(int depth) {
+        assert depth >= 0 : "Violation of: depth >= 0";
+        this.siftDowns++;
+        this.siftLevels += depth;
+        this.maxSiftDepth = Math.max(this.maxSiftDepth, depth);
+        this.swaps += depth;
+    }
+
+    /**
+     * Returns a copy of the counters as they are now.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+}
@@ -0,0 +1,585 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Reproducible benchmark suite comparing {@code SortingMachine5a} with the
+ * OSU {@code SortingMachine1L} and with {@code java.util.PriorityQueue} on a
+ * full sort: every entry added, {@code changeToExtractionMode}, and every
+ * entry removed in order.
+ *
+ * <p>
+ * The suite covers every combination of size (1e3 to 1e7 by default, or the
+ * sizes given as arguments), input shape (random, sorted, reverse sorted,
+ * many duplicates) and comparator (cheap {@code Integer} comparison,
+ * expensive case-insensitive {@code String} comparison). As in a JMH
+ * average-time benchmark, each combination is run a few times to warm up the
+ * JIT and then measured; reported times are the mean and standard deviation
+ * of the measured runs, and removed entries feed a checksum so the work
+ * cannot be optimized away. The bytes allocated by each run, as counted by
+ * the JVM for the benchmark thread, give the allocation rate.
+ *
+ * <p>
+ * Results are printed as a table and written to {@link #JSON_FILE} in the
+ * layout of JMH's JSON result format, so runs can be compared across
+ * commits. Run without {@code -ea}, and with a heap large enough for the
+ * largest size (about 2 GB for 1e7).
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class SortingMachineSuite {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachineSuite() {
+    }
+
+    /**
+     * Number of unmeasured runs before each benchmark.
+     */
+    private static final int WARMUP_RUNS = 3;
+
+    /**
+     * Number of measured runs for each benchmark.
+     */
+    private static final int MEASURED_RUNS = 5;
+
+    /**
+     * Default input sizes.
+     */
+    private static final int[] SIZES = { 1_000, 10_000, 100_000, 1_000_000,
+            10_000_000 };
+
+    /**
+     * Seed for the pseudo-random inputs, so that runs are repeatable.
+     */
+    private static final long SEED = 42L;
+
+    /**
+     * Number of distinct keys in the "many duplicates" inputs.
+     */
+    private static final int DISTINCT_KEYS = 100;
+
+    /**
+     * Length of the generated strings.
+     */
+    private static final int STRING_LENGTH = 10;
+
+    /**
+     * Letters the generated strings are made of.
+     */
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * File the JSON results are written to.
+     */
+    private static final String JSON_FILE = "sortingmachine-suite.json";
+
+    /**
+     * Machines compared.
+     */
+    private static final String[] MACHINES = { "SortingMachine5a",
+            "SortingMachine1L", "PriorityQueue" };
+
+    /**
+     * Input shapes.
+     */
+    private static final String[] SHAPES = { "random", "sorted", "reverse",
+            "duplicates" };
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Bytes per megabyte.
+     */
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Checksum of the removed entries, so that the JIT cannot discard them.
+     */
+    private static volatile int sink;
+
+    /**
+     * {@code Comparator<Integer>} in increasing order.
+     */
+    private static final class IntegerLT implements Comparator<Integer> {
+
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return o1.compareTo(o2);
+        }
+
+    }
+
+    /**
+     * {@code Comparator<String>} in increasing order, ignoring case.
+     */
+    private static final class StringCaseInsensitiveLT implements Comparator<String> {
+
+        @Override
+        public int compare(String o1, String o2) {
+            return o1.compareToIgnoreCase(o2);
+        }
+
+    }
+
+    /**
+     * Measurements of one benchmark: a machine, an input shape, a comparator,
+     * and a size.
+     */
+    private static final class Result {
+
+        /**
+         * Machine name.
+         */
+        private final String machine;
+
+        /**
+         * Input shape.
+         */
+        private final String shape;
+
+        /**
+         * Comparator name.
+         */
+        private final String comparator;
+
+        /**
+         * Number of entries.
+         */
+        private final int n;
+
+        /**
+         * Nanoseconds taken by each measured run.
+         */
+        private final long[] nanos;
+
+        /**
+         * Bytes allocated by each measured run, or -1 if not known.
+         */
+        private final long[] bytes;
+
+        /**
+         * Constructor.
+         *
+         * @param machine
+         *            machine name
+         * @param shape
+         *            input shape
+         * @param comparator
+         *            comparator name
+         * @param n
+         *            number of entries
+         */
+        private Result(String machine, String shape, String comparator, int n) {
+            this.machine = machine;
+            this.shape = shape;
+            this.comparator = comparator;
+            this.n = n;
+            this.nanos = new long[MEASURED_RUNS];
+            this.bytes = new long[MEASURED_RUNS];
+        }
+
+    }
+
+    /**
+     * Returns the mean of {@code values}.
+     *
+     * @param values
+     *            the values
+     * @return the mean
+     * @requires |values| > 0
+     */
+    private static double mean(long[] values) {
+        double sum = 0;
+        for (long v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Returns the sample standard deviation of {@code values}.
+     *
+     * @param values
+     *            the values
+     * @return the standard deviation, or 0 if there is only one value
+     * @requires |values| > 0
+     */
+    private static double stdDev(long[] values) {
+        double stdDev = 0;
+        if (values.length > 1) {
+            double mean = mean(values);
+            double sum = 0;
+            for (long v : values) {
+                sum += (v - mean) * (v - mean);
+            }
+            stdDev = Math.sqrt(sum / (values.length - 1));
+        }
+        return stdDev;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or
+     * -1 if the JVM cannot tell.
+     *
+     * @return bytes allocated by the current thread
+     */
+    private static long allocatedBytes() {
+        long bytes = -1;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotSpotBean =
+                    (com.sun.management.ThreadMXBean) bean;
+            if (hotSpotBean.isThreadAllocatedMemorySupported()
+                    && hotSpotBean.isThreadAllocatedMemoryEnabled()) {
+                bytes = hotSpotBean.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns {@code n} {@code Integer}s of the given shape.
+     *
+     * @param shape
+     *            one of {@link #SHAPES}
+     * @param n
+     *            number of entries
+     * @return the input
+     */
+    private static Integer[] integerInput(String shape, int n) {
+        Random rnd = new Random(SEED);
+        Integer[] input = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            switch (shape) {
+                case "sorted":
+                    input[i] = i;
+                    break;
+                case "reverse":
+                    input[i] = n - i;
+                    break;
+                case "duplicates":
+                    input[i] = rnd.nextInt(DISTINCT_KEYS);
+                    break;
+                default:
+                    input[i] = rnd.nextInt();
+                    break;
+            }
+        }
+        return input;
+    }
+
+    /**
+     * Returns a pseudo-random string of {@link #STRING_LENGTH} letters, each
+     * upper or lower case at random.
+     *
+     * @param rnd
+     *            the source of randomness
+     * @return the string
+     */
+    private static String randomString(Random rnd) {
+        StringBuilder s = new StringBuilder(STRING_LENGTH);
+        for (int k = 0; k < STRING_LENGTH; k++) {
+            char c = LETTERS.charAt(rnd.nextInt(LETTERS.length()));
+            if (rnd.nextBoolean()) {
+                c = Character.toUpperCase(c);
+            }
+            s.append(c);
+        }
+        return s.toString();
+    }
+
+    /**
+     * Returns {@code n} mixed-case {@code String}s of the given shape; in the
+     * "duplicates" shape, strings equal ignoring case recur with different
+     * cases.
+     *
+     * @param shape
+     *            one of {@link #SHAPES}
+     * @param n
+     *            number of entries
+     * @param order
+     *            the order for the sorted shapes
+     * @return the input
+     */
+    private static String[] stringInput(String shape, int n, Comparator<String> order) {
+        Random rnd = new Random(SEED);
+        String[] input = new String[n];
+        if (shape.equals("duplicates")) {
+            String[] keys = new String[DISTINCT_KEYS];
+            for (int k = 0; k < DISTINCT_KEYS; k++) {
+                keys[k] = randomString(rnd);
+            }
+            for (int i = 0; i < n; i++) {
+                String key = keys[rnd.nextInt(DISTINCT_KEYS)];
+                if (rnd.nextBoolean()) {
+                    key = key.toUpperCase();
+                }
+                input[i] = key;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                input[i] = randomString(rnd);
+            }
+            if (shape.equals("sorted")) {
+                Arrays.sort(input, order);
+            } else if (shape.equals("reverse")) {
+                Arrays.sort(input, Collections.reverseOrder(order));
+            }
+        }
+        return input;
+    }
+
+    /**
+     * Sorts {@code input} once with the named machine and returns a checksum
+     * of the entries in the order removed.
+     *
+     * @param <T>
+     *            type of the entries
+     * @param machine
+     *            one of {@link #MACHINES}
+     * @param input
+     *            the entries
+     * @param order
+     *            the order
+     * @return checksum of the removed entries
+     */
+    private static <T> int sortOnce(String machine, T[] input, Comparator<T> order) {
+        int checksum = 0;
+        if (machine.equals("PriorityQueue")) {
+            PriorityQueue<T> q = new PriorityQueue<>(order);
+            for (T x : input) {
+                q.add(x);
+            }
+            while (!q.isEmpty()) {
+                checksum = 31 * checksum + q.poll().hashCode();
+            }
+        } else {
+            SortingMachine<T> m;
+            if (machine.equals("SortingMachine1L")) {
+                m = new SortingMachine1L<>(order);
+            } else {
+                m = new SortingMachine5a<>(order);
+            }
+            for (T x : input) {
+                m.add(x);
+            }
+            m.changeToExtractionMode();
+            while (m.size() > 0) {
+                checksum = 31 * checksum + m.removeFirst().hashCode();
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Runs one benchmark: warm-up runs, then measured runs recording time and
+     * allocation.
+     *
+     * @param <T>
+     *            type of the entries
+     * @param result
+     *            the result to fill in
+     * @param input
+     *            the entries
+     * @param order
+     *            the order
+     * @updates result
+     */
+    private static <T> void run(Result result, T[] input, Comparator<T> order) {
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink += sortOnce(result.machine, input, order);
+            long elapsed = System.nanoTime() - start;
+            long bytesAfter = allocatedBytes();
+            if (run >= WARMUP_RUNS) {
+                result.nanos[run - WARMUP_RUNS] = elapsed;
+                result.bytes[run - WARMUP_RUNS] = -1;
+                if (bytesBefore >= 0) {
+                    result.bytes[run - WARMUP_RUNS] = bytesAfter - bytesBefore;
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints one result line: mean and standard deviation of the time per
+     * run, allocation rate, and bytes allocated per entry.
+     *
+     * @param out
+     *            the output stream
+     * @param r
+     *            the result
+     * @updates out.content
+     */
+    private static void report(SimpleWriter out, Result r) {
+        double millis = mean(r.nanos) / NANOS_PER_MILLI;
+        double error = stdDev(r.nanos) / NANOS_PER_MILLI;
+        double bytes = mean(r.bytes);
+        double rate = bytes / BYTES_PER_MB / (mean(r.nanos) / NANOS_PER_SECOND);
+        out.println(String.format(
+                "%-17s %-10s %-8s n=%-9d %11.3f +- %8.3f ms %9.1f MB/s %7.1f B/entry",
+                r.machine, r.shape, r.comparator, r.n, millis, error, rate,
+                bytes / r.n));
+    }
+
+    /**
+     * Returns {@code values}, divided by {@code scale}, as a JSON array.
+     *
+     * @param values
+     *            the values
+     * @param scale
+     *            the divisor
+     * @return the JSON array
+     */
+    private static String jsonArray(long[] values, double scale) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append(values[i] / scale);
+        }
+        return json.append("]").toString();
+    }
+
+    /**
+     * Returns a JSON object for one metric, in JMH's layout.
+     *
+     * @param values
+     *            the measured values
+     * @param scale
+     *            the divisor converting them to {@code unit}
+     * @param unit
+     *            the unit
+     * @param indent
+     *            indentation of the object's closing brace
+     * @return the JSON object
+     */
+    private static String jsonMetric(long[] values, double scale, String unit,
+            String indent) {
+        String inner = indent + "    ";
+        return "{\n" + inner + "\"score\": " + mean(values) / scale + ",\n" + inner
+                + "\"scoreError\": " + stdDev(values) / scale + ",\n" + inner
+                + "\"scoreUnit\": \"" + unit + "\",\n" + inner + "\"rawData\": [ "
+                + jsonArray(values, scale) + " ]\n" + indent + "}";
+    }
+
+    /**
+     * Writes {@code results} to {@code fileName} in the layout of JMH's JSON
+     * result format: "avgt" mode in ms/op, with the allocation rate and
+     * bytes per operation as "gc.alloc.rate" and "gc.alloc.rate.norm"
+     * secondary metrics. "scoreError" is the standard deviation of the
+     * measured runs.
+     *
+     * @param fileName
+     *            the file to write
+     * @param results
+     *            the results
+     */
+    private static void writeJson(String fileName, List<Result> results) {
+        SimpleWriter json = new SimpleWriter1L(fileName);
+        json.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            long[] rates = new long[MEASURED_RUNS];
+            for (int k = 0; k < MEASURED_RUNS; k++) {
+                rates[k] = (long) (r.bytes[k] * NANOS_PER_SECOND / r.nanos[k]);
+            }
+            json.println("    {");
+            json.println("        \"benchmark\": \"SortingMachineSuite.sort\",");
+            json.println("        \"mode\": \"avgt\",");
+            json.println("        \"threads\": 1,");
+            json.println("        \"warmupIterations\": " + WARMUP_RUNS + ",");
+            json.println("        \"measurementIterations\": " + MEASURED_RUNS + ",");
+            json.println("        \"params\": {");
+            json.println("            \"machine\": \"" + r.machine + "\",");
+            json.println("            \"input\": \"" + r.shape + "\",");
+            json.println("            \"comparator\": \"" + r.comparator + "\",");
+            json.println("            \"n\": \"" + r.n + "\"");
+            json.println("        },");
+            json.println("        \"primaryMetric\": "
+                    + jsonMetric(r.nanos, NANOS_PER_MILLI, "ms/op", "        ") + ",");
+            json.println("        \"secondaryMetrics\": {");
+            json.println("            \"gc.alloc.rate\": "
+                    + jsonMetric(rates, BYTES_PER_MB, "MB/sec", "            ") + ",");
+            json.println("            \"gc.alloc.rate.norm\": "
+                    + jsonMetric(r.bytes, 1, "B/op", "            "));
+            json.println("        }");
+            if (i < results.size() - 1) {
+                json.println("    },");
+            } else {
+                json.println("    }");
+            }
+        }
+        json.println("]");
+        json.close();
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments: optional input sizes
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        Comparator<Integer> integerOrder = new IntegerLT();
+        Comparator<String> stringOrder = new StringCaseInsensitiveLT();
+
+        List<Result> results = new ArrayList<>();
+        for (int n : sizes) {
+            for (String shape : SHAPES) {
+                Integer[] integers = integerInput(shape, n);
+                for (String machine : MACHINES) {
+                    Result r = new Result(machine, shape, "Integer", n);
+                    run(r, integers, integerOrder);
+                    report(out, r);
+                    results.add(r);
+                }
+                String[] strings = stringInput(shape, n, stringOrder);
+                for (String machine : MACHINES) {
+                    Result r = new Result(machine, shape, "String", n);
+                    run(r, strings, stringOrder);
+                    report(out, r);
+                    results.add(r);
+                }
+            }
+        }
+        writeJson(JSON_FILE, results);
+        out.println("results written to " + JSON_FILE + " (checksum " + sink + ")");
+        out.close();
+    }
+
+}
@@ -0,0 +1,35 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * {@code EntrySerializer} for {@code String}s of any length, written as their
+ * length followed by their UTF-16 characters.
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class StringSerializer implements EntrySerializer<String> {
+
+    @Override
+    public void write(String x, DataOutput out) throws IOException {
+        assert x != null : "Violation of: x is not null";
+        assert out != null : "Violation of: out is not null";
+
+        out.writeInt(x.length());
+        out.writeChars(x);
+    }
+
+    @Override
+    public String read(DataInput in) throws IOException {
+        assert in != null : "Violation of: in is not null";
+
+        int length = in.readInt();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,145 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.function.IntBinaryOperator;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code IntSortingMachine}.
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class IntSortingMachineTest {
+
+    /**
+     * Creates and returns an {@code IntSortingMachine} with the given order,
+     * entries and mode.
+     *
+     * @param order
+     *            the order
+     * @param insertionMode
+     *            flag indicating the machine mode
+     * @param args
+     *            the entries for the machine
+     * @return the constructed machine
+     */
+    private static IntSortingMachine createFromArgs(IntBinaryOperator order,
+            boolean insertionMode, int... args) {
+        IntSortingMachine m = new IntSortingMachine(order);
+        for (int x : args) {
+            m.add(x);
+        }
+        if (!insertionMode) {
+            m.changeToExtractionMode();
+        }
+        return m;
+    }
+
+    /**
+     * Orders {@code int}s by absolute value, used to test a custom order.
+     */
+    private static final class AbsoluteValueLT implements IntBinaryOperator {
+
+        @Override
+        public int applyAsInt(int x, int y) {
+            return Integer.compare(Math.abs(x), Math.abs(y));
+        }
+
+    }
+
+    /*
+     * Test for the no-argument constructor.
+     */
+    @Test
+    public void testConstructor() {
+        IntSortingMachine m = new IntSortingMachine();
+        assertEquals(true, m.isInInsertionMode());
+        assertEquals(IntSortingMachine.NATURAL_ORDER, m.order());
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for add : past the initial capacity.
+     */
+    @Test
+    public void testAddMany() {
+        final int n = 100;
+        IntSortingMachine m = createFromArgs(IntSortingMachine.NATURAL_ORDER, true);
+        for (int i = 0; i < n; i++) {
+            m.add(i);
+        }
+        assertEquals(true, m.isInInsertionMode());
+        assertEquals(n, m.size());
+    }
+
+    /*
+     * Test cases for changeToExtractionMode : empty machine.
+     */
+    @Test
+    public void testChangeToExtractionModeEmpty() {
+        IntSortingMachine m = createFromArgs(IntSortingMachine.NATURAL_ORDER, true);
+        m.changeToExtractionMode();
+        assertEquals(false, m.isInInsertionMode());
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for removeFirst : natural order, with duplicates.
+     */
+    @Test
+    public void testRemoveFirstNatural() {
+        IntSortingMachine m = createFromArgs(IntSortingMachine.NATURAL_ORDER, false, 5,
+                -3, 9, 0, 5, Integer.MIN_VALUE, Integer.MAX_VALUE, 2);
+        int[] expected = { Integer.MIN_VALUE, -3, 0, 2, 5, 5, 9, Integer.MAX_VALUE };
+        for (int x : expected) {
+            assertEquals(x, m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for removeFirst : reverse order.
+     */
+    @Test
+    public void testRemoveFirstReverse() {
+        IntSortingMachine m = createFromArgs(IntSortingMachine.REVERSE_ORDER, false, 5,
+                -3, 9, 0, 2);
+        int[] expected = { 9, 5, 2, 0, -3 };
+        for (int x : expected) {
+            assertEquals(x, m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for removeFirst : custom order.
+     */
+    @Test
+    public void testRemoveFirstCustom() {
+        IntSortingMachine m = createFromArgs(new AbsoluteValueLT(), false, -7, 3, -1,
+                4);
+        int[] expected = { -1, 3, 4, -7 };
+        for (int x : expected) {
+            assertEquals(x, m.removeFirst());
+        }
+    }
+
+    /*
+     * Test cases for clear : from extraction mode, then reuse.
+     */
+    @Test
+    public void testClearReuse() {
+        IntSortingMachine m = createFromArgs(IntSortingMachine.NATURAL_ORDER, false, 3,
+                1, 2);
+        m.clear();
+        assertEquals(true, m.isInInsertionMode());
+        assertEquals(0, m.size());
+        m.add(7);
+        m.add(6);
+        m.changeToExtractionMode();
+        assertEquals(6, m.removeFirst());
+        assertEquals(7, m.removeFirst());
+    }
+
+}
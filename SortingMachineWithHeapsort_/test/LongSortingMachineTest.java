@@ -0,0 +1,145 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.function.LongBinaryOperator;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code LongSortingMachine}.
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class LongSortingMachineTest {
+
+    /**
+     * Creates and returns an {@code LongSortingMachine} with the given order,
+     * entries and mode.
+     *
+     * @param order
+     *            the order
+     * @param insertionMode
+     *            flag indicating the machine mode
+     * @param args
+     *            the entries for the machine
+     * @return the constructed machine
+     */
+    private static LongSortingMachine createFromArgs(LongBinaryOperator order,
+            boolean insertionMode, long... args) {
+        LongSortingMachine m = new LongSortingMachine(order);
+        for (long x : args) {
+            m.add(x);
+        }
+        if (!insertionMode) {
+            m.changeToExtractionMode();
+        }
+        return m;
+    }
+
+    /**
+     * Orders {@code long}s by absolute value, used to test a custom order.
+     */
+    private static final class AbsoluteValueLT implements LongBinaryOperator {
+
+        @Override
+        public long applyAsLong(long x, long y) {
+            return Long.compare(Math.abs(x), Math.abs(y));
+        }
+
+    }
+
+    /*
+     * Test for the no-argument constructor.
+     */
+    @Test
+    public void testConstructor() {
+        LongSortingMachine m = new LongSortingMachine();
+        assertEquals(true, m.isInInsertionMode());
+        assertEquals(LongSortingMachine.NATURAL_ORDER, m.order());
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for add : past the initial capacity.
+     */
+    @Test
+    public void testAddMany() {
+        final int n = 100;
+        LongSortingMachine m = createFromArgs(LongSortingMachine.NATURAL_ORDER, true);
+        for (int i = 0; i < n; i++) {
+            m.add(i);
+        }
+        assertEquals(true, m.isInInsertionMode());
+        assertEquals(n, m.size());
+    }
+
+    /*
+     * Test cases for changeToExtractionMode : empty machine.
+     */
+    @Test
+    public void testChangeToExtractionModeEmpty() {
+        LongSortingMachine m = createFromArgs(LongSortingMachine.NATURAL_ORDER, true);
+        m.changeToExtractionMode();
+        assertEquals(false, m.isInInsertionMode());
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for removeFirst : natural order, with duplicates.
+     */
+    @Test
+    public void testRemoveFirstNatural() {
+        LongSortingMachine m = createFromArgs(LongSortingMachine.NATURAL_ORDER, false, 5,
+                -3, 9, 0, 5, Long.MIN_VALUE, Long.MAX_VALUE, 2);
+        long[] expected = { Long.MIN_VALUE, -3, 0, 2, 5, 5, 9, Long.MAX_VALUE };
+        for (long x : expected) {
+            assertEquals(x, m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for removeFirst : reverse order.
+     */
+    @Test
+    public void testRemoveFirstReverse() {
+        LongSortingMachine m = createFromArgs(LongSortingMachine.REVERSE_ORDER, false, 5,
+                -3, 9, 0, 2);
+        long[] expected = { 9, 5, 2, 0, -3 };
+        for (long x : expected) {
+            assertEquals(x, m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for removeFirst : custom order.
+     */
+    @Test
+    public void testRemoveFirstCustom() {
+        LongSortingMachine m = createFromArgs(new AbsoluteValueLT(), false, -7, 3, -1,
+                4);
+        long[] expected = { -1, 3, 4, -7 };
+        for (long x : expected) {
+            assertEquals(x, m.removeFirst());
+        }
+    }
+
+    /*
+     * Test cases for clear : from extraction mode, then reuse.
+     */
+    @Test
+    public void testClearReuse() {
+        LongSortingMachine m = createFromArgs(LongSortingMachine.NATURAL_ORDER, false, 3,
+                1, 2);
+        m.clear();
+        assertEquals(true, m.isInInsertionMode());
+        assertEquals(0, m.size());
+        m.add(7);
+        m.add(6);
+        m.changeToExtractionMode();
+        assertEquals(6, m.removeFirst());
+        assertEquals(7, m.removeFirst());
+    }
+
+}
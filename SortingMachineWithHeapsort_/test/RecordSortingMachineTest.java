@@ -0,0 +1,178 @@
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code RecordSortingMachine}.
+ *
+ * @author Yoora Choi
+ *
+ */
+public final class RecordSortingMachineTest {
+
+    /**
+     * Number of bytes in a key+value record.
+     */
+    private static final int RECORD_SIZE = 16;
+
+    /**
+     * Creates and returns a 16-byte record buffer holding {@code key} and
+     * then {@code value}, big-endian, ready to be read.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the record
+     */
+    private static ByteBuffer record(long key, long value) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putLong(key).putLong(value);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Creates and returns a {@code RecordSortingMachine} of key+value records
+     * keyed by their first eight bytes, holding the given keys, each with its
+     * index as value.
+     *
+     * @param insertionMode
+     *            flag indicating the machine mode
+     * @param keys
+     *            the keys of the records
+     * @return the constructed machine
+     */
+    private static RecordSortingMachine createFromArgs(boolean insertionMode,
+            long... keys) {
+        RecordSortingMachine m = new RecordSortingMachine(RECORD_SIZE, 0, Long.BYTES);
+        for (int i = 0; i < keys.length; i++) {
+            m.add(record(keys[i], i));
+        }
+        if (!insertionMode) {
+            m.changeToExtractionMode();
+        }
+        return m;
+    }
+
+    /*
+     * Test cases for add : copies the record and advances the source.
+     */
+    @Test
+    public void testAdd() {
+        RecordSortingMachine m = createFromArgs(true);
+        ByteBuffer src = ByteBuffer.allocate(2 * RECORD_SIZE + 1);
+        src.putLong(2).putLong(20).putLong(1).putLong(10).put((byte) 0);
+        src.flip();
+        m.add(src);
+        assertEquals(RECORD_SIZE, src.position());
+        m.add(src);
+        assertEquals(1, src.remaining());
+        assertEquals(2, m.size());
+        src.clear();
+        src.putLong(0);
+        m.changeToExtractionMode();
+        ByteBuffer dest = ByteBuffer.allocate(RECORD_SIZE);
+        m.removeFirst(dest);
+        assertEquals(1, dest.getLong(0));
+        assertEquals(10, dest.getLong(Long.BYTES));
+    }
+
+    /*
+     * Test cases for removeFirst : keys compared as unsigned.
+     */
+    @Test
+    public void testRemoveFirstUnsigned() {
+        long[] keys = { 5, -1, 0, Long.MIN_VALUE, Long.MAX_VALUE, 5 };
+        RecordSortingMachine m = createFromArgs(false, keys);
+        long[] expected = { 0, 5, 5, Long.MAX_VALUE, Long.MIN_VALUE, -1 };
+        ByteBuffer dest = ByteBuffer.allocate(RECORD_SIZE * expected.length);
+        for (int i = 0; i < expected.length; i++) {
+            m.removeFirst(dest);
+            assertEquals((i + 1) * RECORD_SIZE, dest.position());
+            long key = dest.getLong(i * RECORD_SIZE);
+            long value = dest.getLong(i * RECORD_SIZE + Long.BYTES);
+            assertEquals(expected[i], key);
+            assertEquals(key, keys[(int) value]);
+        }
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for removeFirst : key not a multiple of eight bytes, not at
+     * the start of the record.
+     */
+    @Test
+    public void testRemoveFirstOddKey() {
+        final int recordSize = 13;
+        final int keyOffset = 1;
+        final int keyLength = 11;
+        RecordSortingMachine m = new RecordSortingMachine(recordSize, keyOffset,
+                keyLength);
+        byte[][] records = { { 0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, (byte) 0x80, 9 },
+                { 9, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0x7f, 0 },
+                { 5, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0x7f, 1 },
+                { 3, 0, (byte) 0xff, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 } };
+        for (byte[] r : records) {
+            m.add(ByteBuffer.wrap(r));
+        }
+        m.changeToExtractionMode();
+        final int[] expectedFirstBytes = { 3, 9, 5, 0 };
+        ByteBuffer dest = ByteBuffer.allocate(recordSize);
+        for (int expected : expectedFirstBytes) {
+            dest.clear();
+            m.removeFirst(dest);
+            assertEquals(expected, dest.get(0));
+        }
+    }
+
+    /*
+     * Test cases for add and removeFirst : records large enough that each
+     * chunk holds only two, so the records span many chunks.
+     */
+    @Test
+    public void testManyChunks() {
+        final int recordSize = RecordSortingMachine.CHUNK_BYTES / 4 + 1;
+        final int n = 41;
+        RecordSortingMachine m = new RecordSortingMachine(recordSize, 0, Long.BYTES);
+        ByteBuffer src = ByteBuffer.allocate(recordSize);
+        for (int i = 0; i < n; i++) {
+            long key = (i * 17) % n;
+            src.clear();
+            src.putLong(0, key);
+            src.putLong(recordSize - Long.BYTES, -key);
+            m.add(src);
+        }
+        m.changeToExtractionMode();
+        ByteBuffer dest = ByteBuffer.allocate(recordSize);
+        for (int i = 0; i < n; i++) {
+            dest.clear();
+            m.removeFirst(dest);
+            assertEquals(i, dest.getLong(0));
+            assertEquals(-i, dest.getLong(recordSize - Long.BYTES));
+        }
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for clear : from extraction mode, then reuse.
+     */
+    @Test
+    public void testClearReuse() {
+        RecordSortingMachine m = createFromArgs(false, 3, 1, 2);
+        m.clear();
+        assertEquals(true, m.isInInsertionMode());
+        assertEquals(0, m.size());
+        m.add(record(7, 0));
+        m.add(record(6, 1));
+        m.changeToExtractionMode();
+        ByteBuffer dest = ByteBuffer.allocate(2 * RECORD_SIZE);
+        m.removeFirst(dest);
+        m.removeFirst(dest);
+        assertEquals(6, dest.getLong(0));
+        assertEquals(7, dest.getLong(RECORD_SIZE));
+    }
+
+}
@@ -1,5 +1,17 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
 
+import components.queue.Queue;
+import components.queue.Queue1L;
 import components.sortingmachine.SortingMachine;
 import components.sortingmachine.SortingMachine1L;
 
@@ -18,4 +30,369 @@ public final class SortingMachine5aTest extends SortingMachineTest {
         return new SortingMachine1L<String>(order);
     }
 
+    /**
+     * Adds the same {@code n} two-digit entries, with ties, to {@code m} and
+     * {@code mExpected}, and switches both to extraction mode.
+     *
+     * @param m
+     *            the test machine
+     * @param mExpected
+     *            the reference machine
+     * @param n
+     *            the number of entries
+     */
+    private static void load(SortingMachine<String> m,
+            SortingMachine<String> mExpected, int n) {
+        for (int i = 0; i < n; i++) {
+            String s = String.format("%02d", (i * 37) % 50);
+            m.add(s);
+            mExpected.add(s);
+        }
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+    }
+
+    /*
+     * Test cases for removeFirst(k, dest)
+     */
+    @Test
+    public final void testRemoveFirstBatch() {
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        load(m, mExpected, 100);
+        String[] dest = new String[40];
+        m.removeFirst(30, dest);
+        for (int i = 0; i < 30; i++) {
+            assertEquals(mExpected.removeFirst(), dest[i]);
+        }
+        assertEquals(null, dest[30]);
+        assertEquals(mExpected, m);
+        m.removeFirst(0, dest);
+        m.removeFirst(70, new String[70]);
+        assertEquals(0, m.size());
+        assertEquals(false, m.isInInsertionMode());
+    }
+
+    /*
+     * Test cases for drainTo(Consumer)
+     */
+    @Test
+    public final void testDrainToConsumer() {
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        final SortingMachine<String> mExpected = new SortingMachine1L<String>(
+                ORDER);
+        load(m, mExpected, 100);
+        m.drainTo(new Consumer<String>() {
+            @Override
+            public void accept(String s) {
+                assertEquals(mExpected.removeFirst(), s);
+            }
+        });
+        assertEquals(0, mExpected.size());
+        assertEquals(mExpected, m);
+    }
+
+    /*
+     * Test case for drainTo with a consumer of a supertype of the entries
+     */
+    @Test
+    public final void testDrainToConsumerOfObject() {
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        load(m, mExpected, 100);
+        final List<Object> drained = new ArrayList<>();
+        m.drainTo(new Consumer<Object>() {
+            @Override
+            public void accept(Object x) {
+                drained.add(x);
+            }
+        });
+        assertEquals(100, drained.size());
+        for (Object x : drained) {
+            assertEquals(mExpected.removeFirst(), x);
+        }
+        assertEquals(mExpected, m);
+    }
+
+    /*
+     * Test cases for drainTo(Queue)
+     */
+    @Test
+    public final void testDrainToQueue() {
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        load(m, mExpected, 100);
+        Queue<String> q = new Queue1L<>();
+        q.enqueue("first");
+        m.drainTo(q);
+        assertEquals(101, q.length());
+        assertEquals("first", q.dequeue());
+        while (q.length() > 0) {
+            assertEquals(mExpected.removeFirst(), q.dequeue());
+        }
+        assertEquals(mExpected, m);
+    }
+
+    /*
+     * Test cases for sortedIterator
+     */
+    @Test
+    public final void testSortedIterator() {
+        for (int n = 0; n <= 40; n++) {
+            SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+            SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+            SortingMachine<String> mCopy = new SortingMachine1L<String>(ORDER);
+            load(m, mExpected, n);
+            load(mCopy, new SortingMachine1L<String>(ORDER), n);
+            Iterator<String> it = m.sortedIterator();
+            while (mCopy.size() > 0) {
+                assertEquals(true, it.hasNext());
+                assertEquals(mCopy.removeFirst(), it.next());
+            }
+            assertEquals(false, it.hasNext());
+            assertEquals(mExpected, m);
+        }
+    }
+
+    @Test
+    public final void testSortedIteratorPartial() {
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        load(m, mExpected, 100);
+        Iterator<String> it = m.sortedIterator();
+        assertEquals("00", it.next());
+        assertEquals("00", it.next());
+        assertEquals("01", it.next());
+        assertEquals(mExpected, m);
+        assertEquals("00", m.removeFirst());
+        assertEquals("00", m.sortedIterator().next());
+    }
+
+    /*
+     * Test cases for stream
+     */
+    @Test
+    public final void testStreamExtractionMode() {
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        load(m, mExpected, 100);
+        Spliterator<String> spliterator = m.stream().spliterator();
+        assertEquals(true, spliterator.hasCharacteristics(
+                Spliterator.SORTED | Spliterator.SIZED | Spliterator.ORDERED));
+        assertEquals(ORDER, spliterator.getComparator());
+        assertEquals(100, spliterator.getExactSizeIfKnown());
+        Iterator<String> it = m.stream().limit(10).iterator();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(mExpected.removeFirst(), it.next());
+        }
+        assertEquals(mExpected, m);
+        List<String> rest = m.stream().collect(Collectors.toList());
+        for (String s : rest) {
+            assertEquals(mExpected.removeFirst(), s);
+        }
+        assertEquals(0, m.size());
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testStreamInsertionMode() {
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        for (int i = 0; i < 1000; i++) {
+            String s = String.format("%03d", (i * 37) % 500);
+            m.add(s);
+            mExpected.add(s);
+        }
+        assertEquals(1000, m.stream().parallel().count());
+        List<String> entries = m.stream().parallel().collect(Collectors.toList());
+        SortingMachine<String> mStreamed = new SortingMachine1L<String>(ORDER);
+        for (String s : entries) {
+            mStreamed.add(s);
+        }
+        assertEquals(mExpected, mStreamed);
+        assertEquals(mExpected, m);
+    }
+
+    /*
+     * Test cases for clear of a machine that grew, in extraction mode and in
+     * insertion mode: it keeps its array and is reused
+     */
+    @Test
+    public final void testClearReuse() {
+        final int n = 100;
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        load(m, mExpected, n);
+        for (int i = 0; i < n / 2; i++) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        m.clear();
+        mExpected.clear();
+        assertEquals(mExpected, m);
+        assertEquals(true, m.isInInsertionMode());
+
+        for (int i = 0; i < n / 2; i++) {
+            m.add("x" + i);
+            mExpected.add("x" + i);
+        }
+        m.clear();
+        mExpected.clear();
+        assertEquals(mExpected, m);
+
+        load(m, mExpected, 2 * n);
+        assertEquals(mExpected, m);
+        while (mExpected.size() > 0) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Sifts {@code a[top]} down through {@code a[0, last]} by exchanging it
+     * with its smaller child, as the hole-based sift-down of
+     * {@code SortingMachine5a} stands for, and returns the number of
+     * exchanges.
+     *
+     * @param a
+     *            the complete binary tree
+     * @param top
+     *            the index of the root of the subtree
+     * @param last
+     *            the index of the last entry in the heap
+     * @return the number of exchanges
+     */
+    private static int siftByExchanges(String[] a, int top, int last) {
+        int exchanges = 0;
+        int node = top;
+        int child = 2 * node + 1;
+        while (child <= last) {
+            if (child < last && ORDER.compare(a[child + 1], a[child]) < 0) {
+                child++;
+            }
+            if (ORDER.compare(a[child], a[node]) >= 0) {
+                break;
+            }
+            String tmp = a[node];
+            a[node] = a[child];
+            a[child] = tmp;
+            exchanges++;
+            node = child;
+            child = 2 * node + 1;
+        }
+        return exchanges;
+    }
+
+    /**
+     * Returns the exchanges an exchange-based heapsort makes on the entries
+     * {@code load} adds: to build the heap, and to then remove every entry.
+     *
+     * @param n
+     *            the number of entries
+     * @return the exchanges to build the heap and the exchanges to remove
+     *         the entries
+     */
+    private static int[] exchangeCounts(int n) {
+        String[] a = new String[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = String.format("%02d", (i * 37) % 50);
+        }
+        int[] counts = new int[2];
+        for (int top = (n - 2) / 2; top >= 0; top--) {
+            counts[0] += siftByExchanges(a, top, n - 1);
+        }
+        for (int last = n - 1; last > 0; last--) {
+            a[0] = a[last];
+            counts[1] += 1 + siftByExchanges(a, 0, last - 1);
+        }
+        return counts;
+    }
+
+    /*
+     * Test cases for metrics
+     */
+    @Test
+    public final void testMetrics() {
+        final int n = 100;
+        final int maxDepth = 6;
+        int[] exchanges = exchangeCounts(n);
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        m.enableMetrics();
+        load(m, mExpected, n);
+        SortingMachineMetrics.Snapshot built = m.metrics();
+        assertEquals(1, built.extractionModeCalls());
+        assertEquals(true, built.comparisons() >= n / 2);
+        assertEquals(0, built.removeFirstCalls());
+        assertEquals(exchanges[0], built.swaps());
+        assertEquals(n / 2, built.siftDowns());
+        assertEquals(true, built.maxSiftDepth() <= maxDepth);
+        for (int i = 0; i < n / 2; i++) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        m.drainTo(new Queue1L<String>());
+        SortingMachineMetrics.Snapshot drained = m.metrics();
+        assertEquals(n, drained.removeFirstCalls());
+        assertEquals(exchanges[0] + exchanges[1], drained.swaps());
+        assertEquals(n / 2 + n - 1, drained.siftDowns());
+        assertEquals(true, drained.maxSiftDepth() <= maxDepth);
+        assertEquals(true, drained.meanSiftDepth() > 0);
+        assertEquals(true, drained.comparisons() > built.comparisons());
+        assertEquals(built.extractionModeNanos(), drained.extractionModeNanos());
+    }
+
+    /*
+     * Test cases for metrics of removeFirst and of the batch methods: each
+     * way of removing all the entries counts the same swaps and sift-downs
+     */
+    @Test
+    public final void testMetricsBatchMethods() {
+        final int n = 100;
+        int[] exchanges = exchangeCounts(n);
+        SortingMachineMetrics.Snapshot[] drained = new SortingMachineMetrics.Snapshot[4];
+        for (int way = 0; way < drained.length; way++) {
+            SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+            SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+            load(m, mExpected, n);
+            m.enableMetrics();
+            if (way == 0) {
+                while (m.size() > 0) {
+                    m.removeFirst();
+                }
+            } else if (way == 1) {
+                m.drainTo(new Queue1L<String>());
+            } else if (way == 2) {
+                m.removeFirst(n, new String[n]);
+            } else {
+                assertEquals(n, m.stream().collect(Collectors.toList()).size());
+            }
+            drained[way] = m.metrics();
+            assertEquals(n, drained[way].removeFirstCalls());
+            assertEquals(exchanges[1], drained[way].swaps());
+            assertEquals(n - 1, drained[way].siftDowns());
+        }
+        for (int way = 1; way < drained.length; way++) {
+            assertEquals(drained[0].comparisons(), drained[way].comparisons());
+            assertEquals(drained[0].maxSiftDepth(), drained[way].maxSiftDepth());
+        }
+    }
+
+    @Test
+    public final void testMetricsDisabled() {
+        SortingMachine5a<String> m = new SortingMachine5a<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        m.enableMetrics();
+        m.add("b");
+        m.disableMetrics();
+        m.add("a");
+        m.changeToExtractionMode();
+        mExpected.add("a");
+        mExpected.add("b");
+        mExpected.changeToExtractionMode();
+        assertEquals(mExpected, m);
+        m.enableMetrics();
+        assertEquals("a", m.removeFirst());
+        assertEquals(0, m.metrics().extractionModeCalls());
+        assertEquals(1, m.metrics().removeFirstCalls());
+    }
+
 }
@@ -0,0 +1,133 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5c}.
+ */
+public final class SortingMachine5cTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5c<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for add from several threads at once, then
+     * changeToExtractionMode and removeFirst of every entry.
+     */
+    @Test
+    public final void testAddConcurrent() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 1000;
+        final SortingMachine<String> m = this.constructorTest(ORDER);
+        SortingMachine<String> mExpected = this.constructorRef(ORDER);
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            producers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        m.add(String.format("%04d-%d", i, id));
+                    }
+                }
+            });
+            producers[t].start();
+            for (int i = 0; i < perThread; i++) {
+                mExpected.add(String.format("%04d-%d", i, id));
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(threads * perThread, m.size());
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        while (mExpected.size() > 0) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Has each of {@code threads} tasks on {@code pool} add {@code perThread}
+     * entries, tagged with {@code tag}, to {@code m}, and waits for them.
+     *
+     * @param pool
+     *            the thread pool
+     * @param m
+     *            the machine
+     * @param threads
+     *            number of tasks
+     * @param perThread
+     *            entries added by each task
+     * @param tag
+     *            suffix of every entry
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    private static void fillFromPool(ExecutorService pool,
+            final SortingMachine<String> m, int threads, final int perThread,
+            final String tag) throws InterruptedException {
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            tasks.add(Executors.callable(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        m.add(String.format("%04d-%d-%s", i, id, tag));
+                    }
+                }
+            }));
+        }
+        pool.invokeAll(tasks);
+    }
+
+    /*
+     * Test case for clear of a machine filled from pool threads, which
+     * outlive the clear, then reuse from the same threads
+     */
+    @Test
+    public final void testClearFilledFromPool() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 1000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        SortingMachine<String> m = this.constructorTest(ORDER);
+        fillFromPool(pool, m, threads, perThread, "old");
+        assertEquals(threads * perThread, m.size());
+        m.clear();
+        assertEquals(0, m.size());
+
+        fillFromPool(pool, m, threads, perThread, "new");
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        assertEquals(threads * perThread, m.size());
+        m.changeToExtractionMode();
+        String previous = "";
+        while (m.size() > 0) {
+            String x = m.removeFirst();
+            assertEquals(true, x.endsWith("-new"));
+            assertEquals(true, ORDER.compare(previous, x) <= 0);
+            previous = x;
+        }
+    }
+
+}
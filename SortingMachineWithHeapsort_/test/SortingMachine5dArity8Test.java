@@ -0,0 +1,44 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5d} with a heap of
+ * arity 8.
+ */
+public final class SortingMachine5dArity8Test extends SortingMachineTest {
+
+    /**
+     * Arity of the heaps under test.
+     */
+    private static final int ARITY = 8;
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5d<String>(order, ARITY);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test case for arity, which newInstance and transferFrom keep
+     */
+    @Test
+    public final void testArity() {
+        SortingMachine5d<String> m = new SortingMachine5d<String>(ORDER, ARITY);
+        SortingMachine5d<String> n = (SortingMachine5d<String>) m.newInstance();
+        SortingMachine5d<String> p = new SortingMachine5d<String>(ORDER);
+        p.transferFrom(n);
+        assertEquals(ARITY, m.arity());
+        assertEquals(ARITY, p.arity());
+    }
+
+}
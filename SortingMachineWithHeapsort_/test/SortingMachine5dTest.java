@@ -0,0 +1,42 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5d}.
+ */
+public final class SortingMachine5dTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5d<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for the constructor with an unsupported arity
+     */
+    @Test
+    public final void testConstructorRejectsArity() {
+        final int[] arities = { 0, 1, 3, 16 };
+        for (int d : arities) {
+            boolean rejected = false;
+            try {
+                new SortingMachine5d<String>(ORDER, d);
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            }
+            assertEquals(true, rejected);
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5e}. The memory
+ * budget is tiny, so that the inherited test cases spill and merge runs.
+ */
+public final class SortingMachine5eTest extends SortingMachineTest {
+
+    /**
+     * Memory budget for the machines under test.
+     */
+    private static final int BUDGET = 2;
+
+    /**
+     * Machines under test created by this test case, cleared afterwards so
+     * they do not leave run files behind.
+     */
+    private final List<SortingMachine<String>> created = new ArrayList<>();
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        SortingMachine<String> m = new SortingMachine5e<String>(order, BUDGET,
+                new StringSerializer());
+        this.created.add(m);
+        return m;
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /**
+     * Deletes the run files of the machines created by the test case.
+     */
+    @After
+    public void clearCreated() {
+        for (SortingMachine<String> m : this.created) {
+            m.clear();
+        }
+    }
+
+    /*
+     * Test cases for removeFirst : entries that tie under the order come out
+     * in the order they were added, across runs.
+     */
+    @Test
+    public void testRemoveFirstTiesAcrossRuns() {
+        Comparator<String> byLength = new Comparator<String>() {
+            @Override
+            public int compare(String s1, String s2) {
+                return Integer.compare(s1.length(), s2.length());
+            }
+        };
+        SortingMachine<String> m = this.constructorTest(byLength);
+        String[] args = { "ccc", "a1", "b", "a2", "dddd", "a3", "e", "a4" };
+        for (String s : args) {
+            m.add(s);
+        }
+        m.changeToExtractionMode();
+        String[] expected = { "b", "e", "a1", "a2", "a3", "a4", "ccc", "dddd" };
+        for (String s : expected) {
+            assertEquals(s, m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    /**
+     * Returns the number of files in {@code directory}.
+     *
+     * @param directory
+     *            the directory
+     * @return the number of files in it
+     * @throws IOException
+     *             if the directory cannot be listed
+     */
+    private static long fileCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Returns a new machine under test that spills its runs to
+     * {@code directory}, with entries "00" to "19" added.
+     *
+     * @param directory
+     *            the directory for run files
+     * @return the machine
+     */
+    private static SortingMachine<String> spilledMachine(Path directory) {
+        final int n = 20;
+        SortingMachine<String> m = new SortingMachine5e<String>(ORDER, BUDGET,
+                new StringSerializer(), directory);
+        for (int i = n - 1; i >= 0; i--) {
+            m.add(String.format("%02d", i));
+        }
+        return m;
+    }
+
+    /*
+     * Test case for clear while the runs are partly read: every run file is
+     * deleted
+     */
+    @Test
+    public void testClearDeletesPartlyReadRuns() throws IOException {
+        Path directory = Files.createTempDirectory("sortingmachine5etest");
+        SortingMachine<String> m = spilledMachine(directory);
+        m.changeToExtractionMode();
+        assertEquals("00", m.removeFirst());
+        assertEquals("01", m.removeFirst());
+        assertEquals(true, fileCount(directory) > 0);
+        m.clear();
+        assertEquals(0, fileCount(directory));
+        Files.delete(directory);
+    }
+
+}
@@ -0,0 +1,117 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5i}.
+ */
+public final class SortingMachine5iTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5i<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for addWithHandle and contains
+     */
+    @Test
+    public final void testAddWithHandleContains() {
+        SortingMachine5i<String> m = new SortingMachine5i<String>(ORDER);
+        int hm = m.addWithHandle("m");
+        int hc = m.addWithHandle("c");
+        assertEquals(true, hm != hc);
+        assertEquals(true, m.contains(hm));
+        assertEquals(true, m.contains(hc));
+        assertEquals(false, m.contains(hc + hm + 1));
+        m.changeToExtractionMode();
+        assertEquals("c", m.removeFirst());
+        assertEquals(false, m.contains(hc));
+        assertEquals(true, m.contains(hm));
+    }
+
+    /*
+     * Test cases for changeKey in both modes, up and down the heap
+     */
+    @Test
+    public final void testChangeKey() {
+        SortingMachine5i<String> m = new SortingMachine5i<String>(ORDER);
+        int hm = m.addWithHandle("m");
+        m.addWithHandle("f");
+        int hc = m.addWithHandle("c");
+        assertEquals("c", m.changeKey(hc, "d"));
+        m.changeToExtractionMode();
+        int hx = m.addWithHandle("x");
+        assertEquals("x", m.changeKey(hx, "a"));
+        assertEquals("m", m.changeKey(hm, "b"));
+        assertEquals("d", m.changeKey(hc, "z"));
+        assertEquals("a", m.removeFirst());
+        assertEquals("b", m.removeFirst());
+        assertEquals("f", m.removeFirst());
+        assertEquals("z", m.removeFirst());
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for remove by handle, from the middle of the heap
+     */
+    @Test
+    public final void testRemoveHandle() {
+        SortingMachine5i<String> m = new SortingMachine5i<String>(ORDER);
+        SortingMachine<String> mExpected = this.constructorRef(ORDER);
+        int[] handles = new int[40];
+        for (int i = 0; i < handles.length; i++) {
+            String s = String.format("%02d", (i * 17) % 40);
+            handles[i] = m.addWithHandle(s);
+            if (i % 3 != 0) {
+                mExpected.add(s);
+            }
+        }
+        assertEquals("00", m.remove(handles[0]));
+        m.changeToExtractionMode();
+        for (int i = 3; i < handles.length; i += 3) {
+            assertEquals(String.format("%02d", (i * 17) % 40), m.remove(handles[i]));
+            assertEquals(false, m.contains(handles[i]));
+        }
+        mExpected.changeToExtractionMode();
+        while (mExpected.size() > 0) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for handles of removed entries being given out again, so
+     * handles stay below the largest number of entries held at once
+     */
+    @Test
+    public final void testHandlesReused() {
+        SortingMachine5i<String> m = new SortingMachine5i<String>(ORDER);
+        final int peak = 3;
+        final int rounds = 1000;
+        for (int i = 0; i < peak; i++) {
+            assertEquals(true, m.addWithHandle("k" + i) < peak);
+        }
+        m.changeToExtractionMode();
+        for (int i = 0; i < rounds; i++) {
+            String first = m.removeFirst();
+            int h = m.addWithHandle(first + "+");
+            assertEquals(true, h < peak);
+            assertEquals(first + "+", m.remove(h));
+            assertEquals(false, m.contains(h));
+            assertEquals(true, m.addWithHandle(first + "+") < peak);
+        }
+        assertEquals(peak, m.size());
+    }
+
+}
@@ -0,0 +1,55 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5k}. The capacity is
+ * large enough that none of the inherited test cases drop an entry.
+ */
+public final class SortingMachine5kTest extends SortingMachineTest {
+
+    /**
+     * Capacity for the machines under test in the inherited test cases.
+     */
+    private static final int CAPACITY = 64;
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5k<String>(order, CAPACITY);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for add past capacity : only the first 3 entries under the
+     * order are kept, and come out sorted.
+     */
+    @Test
+    public final void testAddPastCapacity() {
+        SortingMachine<String> m = new SortingMachine5k<String>(ORDER, 3);
+        SortingMachine<String> mExpected = this.constructorRef(ORDER);
+        String[] args = { "m", "c", "x", "a", "q", "b", "z", "c" };
+        for (String s : args) {
+            m.add(s);
+        }
+        mExpected.add("a");
+        mExpected.add("b");
+        mExpected.add("c");
+        assertEquals(mExpected, m);
+
+        m.changeToExtractionMode();
+        assertEquals("a", m.removeFirst());
+        assertEquals("b", m.removeFirst());
+        assertEquals("c", m.removeFirst());
+        assertEquals(0, m.size());
+    }
+
+}
@@ -0,0 +1,48 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5l}.
+ */
+public final class SortingMachine5lTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5l<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for removeFirst on forests of every shape up to 100 entries
+     */
+    @Test
+    public final void testRemoveFirstAllSizes() {
+        for (int n = 0; n <= 100; n++) {
+            SortingMachine<String> m = this.constructorTest(ORDER);
+            SortingMachine<String> mExpected = this.constructorRef(ORDER);
+            for (int i = 0; i < n; i++) {
+                String s = String.format("%02d", (i * 37) % 100);
+                m.add(s);
+                mExpected.add(s);
+            }
+            m.changeToExtractionMode();
+            mExpected.changeToExtractionMode();
+            assertEquals(mExpected, m);
+            while (mExpected.size() > 0) {
+                assertEquals(mExpected.removeFirst(), m.removeFirst());
+            }
+            assertEquals(mExpected, m);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5m}.
+ */
+public final class SortingMachine5mTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5m<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for meld
+     */
+    @Test
+    public final void testMeldInsertionMode() {
+        SortingMachine5m<String> m = new SortingMachine5m<String>(ORDER);
+        SortingMachine5m<String> other = new SortingMachine5m<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        for (int i = 0; i < 100; i++) {
+            String s = String.format("%02d", (i * 37) % 50);
+            if (i % 3 == 0) {
+                m.add(s);
+            } else {
+                other.add(s);
+            }
+            mExpected.add(s);
+        }
+        m.meld(other);
+        assertEquals(100, m.size());
+        assertEquals(0, other.size());
+        assertEquals(true, other.isInInsertionMode());
+        assertEquals(mExpected, m);
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        while (mExpected.size() > 0) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testMeldExtractionMode() {
+        SortingMachine5m<String> m = new SortingMachine5m<String>(ORDER);
+        SortingMachine5m<String> other = new SortingMachine5m<String>(ORDER);
+        SortingMachine<String> mExpected = new SortingMachine1L<String>(ORDER);
+        m.add("m");
+        m.add("c");
+        other.add("x");
+        other.add("a");
+        other.add("m");
+        mExpected.add("m");
+        mExpected.add("x");
+        mExpected.add("m");
+        m.changeToExtractionMode();
+        other.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        assertEquals("c", m.removeFirst());
+        assertEquals("a", other.removeFirst());
+        m.meld(other);
+        assertEquals(false, m.isInInsertionMode());
+        assertEquals(true, other.isInInsertionMode());
+        assertEquals(0, other.size());
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public final void testMeldEmpty() {
+        SortingMachine5m<String> m = new SortingMachine5m<String>(ORDER);
+        SortingMachine5m<String> other = new SortingMachine5m<String>(ORDER);
+        m.meld(other);
+        assertEquals(0, m.size());
+        other.add("a");
+        m.meld(other);
+        assertEquals(1, m.size());
+        m.meld(other);
+        assertEquals(1, m.size());
+        assertEquals(0, other.size());
+    }
+
+}
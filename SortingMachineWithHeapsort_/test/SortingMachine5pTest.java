@@ -0,0 +1,53 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5p}.
+ */
+public final class SortingMachine5pTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5p<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for changeToExtractionMode : enough entries (with
+     * duplicates) to be sorted by the fork/join merge sort rather than
+     * sequentially.
+     */
+    @Test
+    public void testChangeToExtractionModeParallel() {
+        final int n = 20_000;
+        final int distinct = 5_000;
+        final int checked = 100;
+        Random rnd = new Random(1);
+        SortingMachine<String> m = this.constructorTest(ORDER);
+        String[] expected = new String[n];
+        for (int i = 0; i < n; i++) {
+            expected[i] = Integer.toString(rnd.nextInt(distinct));
+            m.add(expected[i]);
+        }
+        m.changeToExtractionMode();
+        Arrays.sort(expected, ORDER);
+
+        assertEquals(n, m.size());
+        for (int i = 0; i < checked; i++) {
+            assertEquals(expected[i], m.removeFirst());
+        }
+    }
+
+}
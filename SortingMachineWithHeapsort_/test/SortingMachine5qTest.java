@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5q}.
+ */
+public final class SortingMachine5qTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5q<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for add in extraction mode, interleaved with removeFirst
+     */
+    @Test
+    public final void testAddExtractionMode() {
+        SortingMachine<String> m = this.constructorTest(ORDER);
+        m.add("m");
+        m.add("c");
+        m.changeToExtractionMode();
+        m.add("x");
+        m.add("a");
+        assertEquals("a", m.removeFirst());
+        m.add("b");
+        m.add("c");
+        assertEquals("b", m.removeFirst());
+        assertEquals("c", m.removeFirst());
+        m.add("d");
+        assertEquals("c", m.removeFirst());
+        assertEquals("d", m.removeFirst());
+        assertEquals("m", m.removeFirst());
+        assertEquals("x", m.removeFirst());
+        assertEquals(0, m.size());
+        m.add("z");
+        assertEquals(false, m.isInInsertionMode());
+        assertEquals(1, m.size());
+        assertEquals("z", m.removeFirst());
+    }
+
+    /*
+     * Test cases for add in extraction mode past the initial capacity
+     */
+    @Test
+    public final void testAddExtractionModeGrows() {
+        SortingMachine<String> m = this.constructorTest(ORDER);
+        SortingMachine<String> mExpected = this.constructorRef(ORDER);
+        m.changeToExtractionMode();
+        for (int i = 99; i >= 0; i--) {
+            String s = String.format("%02d", (i * 37) % 100);
+            m.add(s);
+            mExpected.add(s);
+        }
+        mExpected.changeToExtractionMode();
+        while (mExpected.size() > 0) {
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(mExpected, m);
+    }
+
+}
@@ -0,0 +1,123 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5r}.
+ */
+public final class SortingMachine5rTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5r<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /**
+     * Adds {@code args} to a new {@code SortingMachine5r}, checks the number
+     * of runs and the strategy, and checks that removeFirst returns the
+     * entries in order.
+     *
+     * @param runs
+     *            the expected number of runs
+     * @param strategy
+     *            the expected strategy
+     * @param args
+     *            the entries
+     */
+    private void checkStrategy(int runs, SortingMachine5r.Strategy strategy,
+            String... args) {
+        SortingMachine5r<String> m = new SortingMachine5r<String>(ORDER);
+        SortingMachine<String> mExpected = this.constructorRef(ORDER);
+        for (String s : args) {
+            m.add(s);
+            mExpected.add(s);
+        }
+        assertEquals(runs, m.runCount());
+        assertEquals(strategy, m.strategy());
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        assertEquals(strategy, m.strategy());
+        while (mExpected.size() > 0) {
+            assertEquals(mExpected, m);
+            assertEquals(mExpected.removeFirst(), m.removeFirst());
+        }
+        assertEquals(mExpected, m);
+    }
+
+    /*
+     * Test cases for strategy with sorted entries
+     */
+    @Test
+    public final void testStrategySorted() {
+        this.checkStrategy(1, SortingMachine5r.Strategy.SORTED, "a", "b", "b", "c",
+                "x");
+    }
+
+    /*
+     * Test cases for strategy with a few runs
+     */
+    @Test
+    public final void testStrategyMerge() {
+        this.checkStrategy(3, SortingMachine5r.Strategy.MERGE, "c", "d", "m", "a",
+                "m", "z", "b", "b", "m");
+    }
+
+    /*
+     * Test cases for strategy with strictly decreasing entries, which form
+     * one run once reversed
+     */
+    @Test
+    public final void testStrategyDecreasing() {
+        this.checkStrategy(1, SortingMachine5r.Strategy.SORTED, "x", "m", "c", "b",
+                "a");
+    }
+
+    /*
+     * Test cases for strategy with decreasing runs: equal entries end a
+     * strictly decreasing run, and a reversed run may be followed by a run
+     * that would have continued it
+     */
+    @Test
+    public final void testStrategyDecreasingRuns() {
+        this.checkStrategy(4, SortingMachine5r.Strategy.MERGE, "c", "b", "b", "a",
+                "d", "e", "z", "y", "y");
+    }
+
+    /*
+     * Test cases for strategy with many runs
+     */
+    @Test
+    public final void testStrategyHeap() {
+        String[] args = new String[2 * SortingMachine5r.MAX_MERGED_RUNS + 2];
+        for (int i = 0; i < args.length; i++) {
+            // pairs of increasing entries, each pair before the one before it
+            args[i] = String.format("%03d", args.length - i + 2 * (i % 2));
+        }
+        this.checkStrategy(args.length / 2, SortingMachine5r.Strategy.HEAP, args);
+    }
+
+    /*
+     * Test cases for strategy with far more runs than are merged: they are
+     * still all counted
+     */
+    @Test
+    public final void testStrategyHeapManyRuns() {
+        final int runs = 4 * SortingMachine5r.MAX_MERGED_RUNS;
+        String[] args = new String[2 * runs];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = String.format("%04d", args.length - i + 2 * (i % 2));
+        }
+        this.checkStrategy(runs, SortingMachine5r.Strategy.HEAP, args);
+    }
+
+}
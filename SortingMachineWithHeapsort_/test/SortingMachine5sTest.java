@@ -0,0 +1,54 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5s}.
+ */
+public final class SortingMachine5sTest extends SortingMachineTest {
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5s<String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for removeFirst of entries that tie: they must come out in
+     * the order they were added
+     */
+    @Test
+    public final void testRemoveFirstStable() {
+        Comparator<String> byFirstChar = new Comparator<String>() {
+            @Override
+            public int compare(String s1, String s2) {
+                return Character.compare(s1.charAt(0), s2.charAt(0));
+            }
+        };
+        SortingMachine<String> m = this.constructorTest(byFirstChar);
+        String[] args = new String[60];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = "" + (char) ('a' + (i * 7) % 3) + i;
+            m.add(args[i]);
+        }
+        m.changeToExtractionMode();
+        for (char c = 'a'; c <= 'c'; c++) {
+            for (String s : args) {
+                if (s.charAt(0) == c) {
+                    assertEquals(s, m.removeFirst());
+                }
+            }
+        }
+        assertEquals(0, m.size());
+    }
+
+}
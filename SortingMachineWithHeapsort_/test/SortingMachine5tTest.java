@@ -0,0 +1,185 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5t}.
+ */
+public final class SortingMachine5tTest extends SortingMachineTest {
+
+    /**
+     * Characters the random test entries are made of: upper and lower case
+     * letters, including some outside ASCII whose case folding is unusual.
+     */
+    private static final String[] ALPHABET = { "a", "A", "b", "B", "z", "Z", "_",
+        "\u00e9", "\u00c9", "\u00df", "\u0130", "\u0131", "i", "I" };
+
+    /**
+     * Code points the random test entries with surrogates are made of,
+     * including letters outside the Basic Multilingual Plane, whose first
+     * {@code char}s (surrogates) come before the full-width letters but whose
+     * code points come after them.
+     */
+    private static final String[] SUPPLEMENTARY = { "a", "A", "z", "\uFF21",
+        "\uFF41", "\uD801\uDC00", "\uD801\uDC28", "\uD83D\uDE00" };
+
+    /**
+     * Orders strings by {@code compareTo}, for the machines whose prefixes
+     * do not fold case.
+     */
+    private static final Comparator<String> CASE_SENSITIVE = new Comparator<String>() {
+        @Override
+        public int compare(String s1, String s2) {
+            return s1.compareTo(s2);
+        }
+    };
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        /*
+         * The order used by SortingMachineTest is compareToIgnoreCase
+         */
+        return new SortingMachine5t(order, true);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /**
+     * Adds the same pseudo-random entries, many sharing long prefixes, to a
+     * {@code SortingMachine5t} and a {@code SortingMachine5a} with the same
+     * order, and checks that they come out in the same order.
+     *
+     * @param order
+     *            the order
+     * @param ignoreCase
+     *            whether {@code order} ignores case
+     * @param units
+     *            the strings the entries are made of
+     */
+    private static void checkSameAs5a(Comparator<String> order, boolean ignoreCase,
+            String[] units) {
+        SortingMachine<String> m = new SortingMachine5t(order, ignoreCase);
+        SortingMachine<String> mExpected = new SortingMachine5a<String>(order);
+        Random rnd = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder s = new StringBuilder();
+            int length = rnd.nextInt(7);
+            for (int j = 0; j < length; j++) {
+                s.append(units[rnd.nextInt(units.length)]);
+            }
+            m.add(s.toString());
+            mExpected.add(s.toString());
+        }
+        m.changeToExtractionMode();
+        mExpected.changeToExtractionMode();
+        while (mExpected.size() > 0) {
+            String expected = mExpected.removeFirst();
+            String actual = m.removeFirst();
+            assertEquals(expected + " ~ " + actual, 0, order.compare(expected, actual));
+        }
+        assertEquals(0, m.size());
+    }
+
+    /*
+     * Test cases for prefixes with a case-sensitive order
+     */
+    @Test
+    public final void testPrefixCaseSensitive() {
+        checkSameAs5a(CASE_SENSITIVE, false, ALPHABET);
+    }
+
+    /*
+     * Test cases for prefixes with a case-insensitive order
+     */
+    @Test
+    public final void testPrefixCaseInsensitive() {
+        checkSameAs5a(ORDER, true, ALPHABET);
+    }
+
+    /*
+     * Test cases for prefixes of entries with surrogates, with a
+     * case-sensitive order
+     */
+    @Test
+    public final void testPrefixSurrogatesCaseSensitive() {
+        checkSameAs5a(CASE_SENSITIVE, false, SUPPLEMENTARY);
+    }
+
+    /*
+     * Test cases for prefixes of entries with surrogates, with a
+     * case-insensitive order
+     */
+    @Test
+    public final void testPrefixSurrogatesCaseInsensitive() {
+        checkSameAs5a(ORDER, true, SUPPLEMENTARY);
+    }
+
+    /*
+     * Test case for letters outside the Basic Multilingual Plane with a
+     * case-insensitive order: they come after the full-width letters
+     */
+    @Test
+    public final void testPrefixSupplementaryOrder() {
+        SortingMachine<String> m = new SortingMachine5t(ORDER, true);
+        m.add("\uD801\uDC00b");
+        m.add("\uD801\uDC28a");
+        m.add("\uFF21");
+        m.add("z");
+        m.add("A");
+        m.changeToExtractionMode();
+        assertEquals("A", m.removeFirst());
+        assertEquals("z", m.removeFirst());
+        assertEquals("\uFF21", m.removeFirst());
+        assertEquals("\uD801\uDC28a", m.removeFirst());
+        assertEquals("\uD801\uDC00b", m.removeFirst());
+    }
+
+    /*
+     * Test case for an unpaired surrogate with a case-insensitive order: as
+     * a code point it comes before U+10400, but compareToIgnoreCase pairs it
+     * with the surrogates after it
+     */
+    @Test
+    public final void testPrefixUnpairedSurrogate() {
+        SortingMachine<String> m = new SortingMachine5t(ORDER, true);
+        m.add("\uD801\uD83D\uDE00");
+        m.add("\uD801\uDC00");
+        m.add("A");
+        m.changeToExtractionMode();
+        assertEquals("A", m.removeFirst());
+        assertEquals("\uD801\uDC00", m.removeFirst());
+        assertEquals("\uD801\uD83D\uDE00", m.removeFirst());
+    }
+
+    /*
+     * Test cases for a machine without prefixes, with an order that does not
+     * agree with compareTo on any prefix
+     */
+    @Test
+    public final void testNoPrefixes() {
+        Comparator<String> byLength = new Comparator<String>() {
+            @Override
+            public int compare(String s1, String s2) {
+                return Integer.compare(s1.length(), s2.length());
+            }
+        };
+        SortingMachine<String> m = new SortingMachine5t(byLength);
+        m.add("ccc");
+        m.add("a");
+        m.add("bb");
+        m.changeToExtractionMode();
+        assertEquals("a", m.removeFirst());
+        assertEquals("bb", m.removeFirst());
+        assertEquals("ccc", m.removeFirst());
+    }
+
+}
@@ -0,0 +1,69 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5x}.
+ */
+public final class SortingMachine5xTest extends SortingMachineTest {
+
+    /**
+     * Key extractor returning the entry in lower case, and counting how many
+     * times it is called.
+     */
+    private static final class CountingLowerCase implements Function<String, String> {
+
+        /**
+         * Number of calls to {@code apply} so far.
+         */
+        private int calls = 0;
+
+        @Override
+        public String apply(String s) {
+            this.calls++;
+            return s.toLowerCase();
+        }
+
+    }
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5x<String, String>(order);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /*
+     * Test cases for ordering by extracted key, computing each key once
+     */
+    @Test
+    public final void testKeyExtractedOnce() {
+        CountingLowerCase extractor = new CountingLowerCase();
+        SortingMachine<String> m = new SortingMachine5x<String, String>(extractor,
+                ORDER);
+        String[] args = { "Delta", "alpha", "Echo", "charlie", "Bravo", "foxtrot",
+                "Golf" };
+        for (String s : args) {
+            m.add(s);
+        }
+        m.changeToExtractionMode();
+        assertEquals("alpha", m.removeFirst());
+        assertEquals("Bravo", m.removeFirst());
+        assertEquals("charlie", m.removeFirst());
+        assertEquals("Delta", m.removeFirst());
+        assertEquals("Echo", m.removeFirst());
+        assertEquals("foxtrot", m.removeFirst());
+        assertEquals("Golf", m.removeFirst());
+        assertEquals(args.length, extractor.calls);
+    }
+
+}
@@ -101,7 +101,7 @@ public abstract class SortingMachineTest {
      * Comparator<String> implementation to be used in all test cases. Compare
      * {@code String}s in lexicographic order.
      */
-    private static class StringLT implements Comparator<String> {
+    protected static class StringLT implements Comparator<String> {
 
         @Override
         public int compare(String s1, String s2) {
@@ -113,7 +113,7 @@ public abstract class SortingMachineTest {
     /**
      * Comparator instance to be used in all test cases.
      */
-    private static final StringLT ORDER = new StringLT();
+    protected static final StringLT ORDER = new StringLT();
 
     /*
      * Sample test cases.
@@ -249,6 +249,25 @@ public abstract class SortingMachineTest {
 
     }
 
+    /*
+     * Test cases for removeFirst : enough entries (with duplicates) to need
+     * several heap levels, removed one at a time until empty.
+     */
+    @Test
+    public final void testRemoveFirstManyLevels() {
+        String[] args = { "q", "w", "e", "r", "t", "y", "u", "i", "o", "p", "a", "s",
+            "d", "f", "g", "h", "j", "k", "l", "z", "x", "c", "v", "b", "n", "m", "E",
+            "t", "A" };
+        SortingMachine<String> m = this.createFromArgsTest(ORDER, false, args);
+        SortingMachine<String> mExpected = this.createFromArgsRef(ORDER, false, args);
+
+        while (mExpected.size() > 0) {
+            assertEquals(0, ORDER.compare(mExpected.removeFirst(), m.removeFirst()));
+        }
+
+        assertEquals(mExpected, m);
+    }
+
 // Test
 
     /**